@@ -22,9 +22,18 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
 /**
  * Simple JavaBean domain object with an id property. Used as a base class for objects
  * needing this property.
+ * <p>
+ * Ids come from one sequence per entity (for example {@code Owner_seq}), which is
+ * incremented by {@value #ID_ALLOCATION_SIZE} so that Hibernate can hand out a block of
+ * ids without a round trip per insert and batch the inserts themselves. On databases
+ * without sequences Hibernate emulates them with a table of the same name.
  *
  * @author Ken Krebs
  * @author Juergen Hoeller
@@ -32,8 +41,19 @@ import javax.persistence.MappedSuperclass;
 @MappedSuperclass
 public class BaseEntity implements Serializable {
 
+	/**
+	 * Number of ids reserved with each call to an entity's sequence.
+	 */
+	public static final int ID_ALLOCATION_SIZE = 50;
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pooled")
+	@GenericGenerator(name = "pooled", strategy = "enhanced-sequence",
+			parameters = { @Parameter(name = SequenceStyleGenerator.CONFIG_PREFER_SEQUENCE_PER_ENTITY, value = "true"),
+					@Parameter(name = SequenceStyleGenerator.CONFIG_SEQUENCE_PER_ENTITY_SUFFIX, value = "_seq"),
+					@Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled"),
+					@Parameter(name = SequenceStyleGenerator.INITIAL_PARAM, value = "100"),
+					@Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "" + ID_ALLOCATION_SIZE) })
 	private Integer id;
 
 	public Integer getId() {
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.samples.petclinic.model.NamedEntity;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.visit.Visit;
+
+/**
+ * Compact binary form of the clinic's entity graphs, for storing them outside the heap
+ * where Java serialization would be slow and several times larger.
+ * <p>
+ * Every field is written in declaration order without names or type descriptors:
+ * <ul>
+ * <li>ids and counts as unsigned varints, seven bits per byte, with ids shifted up by one
+ * so that {@code 0} stands for {@code null};</li>
+ * <li>strings as the varint length of their UTF-8 bytes plus one, followed by the
+ * bytes;</li>
+ * <li>dates as the zigzag varint of their epoch day plus one;</li>
+ * <li>{@link PetType}s and {@link Specialty}s through a dictionary built up while the
+ * graph is written: the first reference to a type writes {@code 1} followed by its id
+ * and name, later ones write the index of that entry plus {@code 2}. Decoding hands out
+ * one instance per type.</li>
+ * </ul>
+ * Reads work on a {@link ByteBuffer} in place, heap or direct, and leave its position
+ * after the graph. The form carries no version, so it is only meant for data written by
+ * the same build, such as a cache tier.
+ * <p>
+ * A pet is written with its owner, but not with the owner's other pets, so the decoded
+ * owner only knows that one pet. An owner is written with all of its pets, and visits
+ * with the pet they belong to.
+ */
+public final class ClinicCodec {
+
+	private ClinicCodec() {
+	}
+
+	public static byte[] encode(Pet pet) {
+		Encoder encoder = new Encoder();
+		encoder.pet(pet);
+		Owner owner = pet.getOwner();
+		encoder.varint(owner == null ? 0 : 1);
+		if (owner != null) {
+			encoder.person(owner);
+		}
+		return encoder.toByteArray();
+	}
+
+	public static Pet decodePet(ByteBuffer buffer) {
+		Decoder decoder = new Decoder(buffer);
+		Pet pet = decoder.pet();
+		if (decoder.varint() != 0) {
+			addPet(decoder.owner(), pet);
+		}
+		return pet;
+	}
+
+	public static byte[] encode(Owner owner) {
+		Encoder encoder = new Encoder();
+		encoder.person(owner);
+		List<Pet> pets = owner.getPets();
+		encoder.varint(pets.size());
+		for (Pet pet : pets) {
+			encoder.pet(pet);
+		}
+		return encoder.toByteArray();
+	}
+
+	public static Owner decodeOwner(ByteBuffer buffer) {
+		Decoder decoder = new Decoder(buffer);
+		Owner owner = decoder.owner();
+		for (int i = decoder.varint(); i > 0; i--) {
+			addPet(owner, decoder.pet());
+		}
+		return owner;
+	}
+
+	/**
+	 * Add a decoded pet to its owner. {@link Owner#addPet(Pet)} leaves persisted pets for
+	 * the persistence provider to fill in, so the pet is added to the set directly.
+	 */
+	private static void addPet(Owner owner, Pet pet) {
+		owner.getPetsInternal().add(pet);
+		pet.setOwner(owner);
+	}
+
+	public static byte[] encode(Collection<Vet> vets) {
+		Encoder encoder = new Encoder();
+		encoder.varint(vets.size());
+		for (Vet vet : vets) {
+			encoder.id(vet.getId());
+			encoder.string(vet.getFirstName());
+			encoder.string(vet.getLastName());
+			List<Specialty> specialties = vet.getSpecialties();
+			encoder.varint(specialties.size());
+			for (Specialty specialty : specialties) {
+				encoder.reference(specialty);
+			}
+		}
+		return encoder.toByteArray();
+	}
+
+	public static List<Vet> decodeVets(ByteBuffer buffer) {
+		Decoder decoder = new Decoder(buffer);
+		int count = decoder.varint();
+		List<Vet> vets = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Vet vet = new Vet();
+			vet.setId(decoder.id());
+			vet.setFirstName(decoder.string());
+			vet.setLastName(decoder.string());
+			for (int j = decoder.varint(); j > 0; j--) {
+				vet.addSpecialty(decoder.reference(Specialty::new));
+			}
+			vets.add(vet);
+		}
+		return vets;
+	}
+
+	private static final class Encoder {
+
+		private byte[] bytes = new byte[256];
+
+		private int length;
+
+		private final Map<NamedEntity, Integer> dictionary = new IdentityHashMap<>();
+
+		void pet(Pet pet) {
+			id(pet.getId());
+			string(pet.getName());
+			date(pet.getBirthDate());
+			reference(pet.getType());
+			List<Visit> visits = pet.getVisits();
+			varint(visits.size());
+			for (Visit visit : visits) {
+				id(visit.getId());
+				date(visit.getDate());
+				string(visit.getDescription());
+			}
+		}
+
+		void person(Owner owner) {
+			id(owner.getId());
+			string(owner.getFirstName());
+			string(owner.getLastName());
+			string(owner.getAddress());
+			string(owner.getCity());
+			string(owner.getTelephone());
+		}
+
+		void reference(NamedEntity entity) {
+			if (entity == null) {
+				varint(0);
+				return;
+			}
+			Integer index = this.dictionary.get(entity);
+			if (index != null) {
+				varint(index + 2);
+				return;
+			}
+			this.dictionary.put(entity, this.dictionary.size());
+			varint(1);
+			id(entity.getId());
+			string(entity.getName());
+		}
+
+		void id(Integer id) {
+			varint(id == null ? 0 : id + 1);
+		}
+
+		void date(LocalDate date) {
+			if (date == null) {
+				varlong(0);
+				return;
+			}
+			long epochDay = date.toEpochDay();
+			varlong(((epochDay << 1) ^ (epochDay >> 63)) + 1);
+		}
+
+		void string(String value) {
+			if (value == null) {
+				varint(0);
+				return;
+			}
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			varint(utf8.length + 1);
+			ensureCapacity(utf8.length);
+			System.arraycopy(utf8, 0, this.bytes, this.length, utf8.length);
+			this.length += utf8.length;
+		}
+
+		void varint(int value) {
+			varlong(value & 0xFFFFFFFFL);
+		}
+
+		void varlong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				this.bytes[this.length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.bytes[this.length++] = (byte) value;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.bytes, this.length);
+		}
+
+		private void ensureCapacity(int extra) {
+			if (this.length + extra > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.length + extra));
+			}
+		}
+
+	}
+
+	private static final class Decoder {
+
+		private final ByteBuffer buffer;
+
+		private final List<NamedEntity> dictionary = new ArrayList<>();
+
+		/** Holds string bytes read from a direct buffer. */
+		private byte[] scratch;
+
+		Decoder(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		Pet pet() {
+			Pet pet = new Pet();
+			pet.setId(id());
+			pet.setName(string());
+			pet.setBirthDate(date());
+			pet.setType(reference(PetType::new));
+			for (int i = varint(); i > 0; i--) {
+				Visit visit = new Visit();
+				visit.setId(id());
+				visit.setDate(date());
+				visit.setDescription(string());
+				pet.addVisit(visit);
+			}
+			return pet;
+		}
+
+		Owner owner() {
+			Owner owner = new Owner();
+			owner.setId(id());
+			owner.setFirstName(string());
+			owner.setLastName(string());
+			owner.setAddress(string());
+			owner.setCity(string());
+			owner.setTelephone(string());
+			return owner;
+		}
+
+		@SuppressWarnings("unchecked")
+		<T extends NamedEntity> T reference(Supplier<T> factory) {
+			int tag = varint();
+			if (tag == 0) {
+				return null;
+			}
+			if (tag > 1) {
+				return (T) this.dictionary.get(tag - 2);
+			}
+			T entity = factory.get();
+			entity.setId(id());
+			entity.setName(string());
+			this.dictionary.add(entity);
+			return entity;
+		}
+
+		Integer id() {
+			int id = varint();
+			return id == 0 ? null : id - 1;
+		}
+
+		LocalDate date() {
+			long zigzag = varlong();
+			if (zigzag == 0) {
+				return null;
+			}
+			zigzag--;
+			return LocalDate.ofEpochDay((zigzag >>> 1) ^ -(zigzag & 1));
+		}
+
+		String string() {
+			int length = varint() - 1;
+			if (length < 0) {
+				return null;
+			}
+			ByteBuffer buffer = this.buffer;
+			String value;
+			if (buffer.hasArray()) {
+				value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+						StandardCharsets.UTF_8);
+				buffer.position(buffer.position() + length);
+			}
+			else {
+				if (this.scratch == null || this.scratch.length < length) {
+					this.scratch = new byte[Math.max(64, length)];
+				}
+				buffer.get(this.scratch, 0, length);
+				value = new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+			}
+			return value;
+		}
+
+		int varint() {
+			return (int) varlong();
+		}
+
+		long varlong() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = this.buffer.get();
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("Malformed varint");
+		}
+
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.samples.petclinic.system.MethodCallEvent;
+import org.springframework.samples.petclinic.system.MethodTimer;
+import org.springframework.samples.petclinic.system.MethodTimers;
+import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Export of all owners with their pets and visits, followed by all vets with their
+ * specialties, in the record order that {@link ClinicImporter} reads back: each owner is
+ * followed by its pets and each pet by its visits.
+ * <p>
+ * The owners are read from a database cursor rather than loaded up front, and the
+ * persistence context is cleared every {@code batchSize} rows, so memory use does not
+ * grow with the number of visits. The vets are read from a second cursor once the first
+ * one is closed. The output is flushed every {@code batchSize} rows.
+ */
+@Service
+public class ClinicExporter {
+
+	private final OwnerRepository owners;
+
+	private final VetRepository vets;
+
+	private final EntityManager entityManager;
+
+	private final TransactionTemplate transactions;
+
+	private final int batchSize;
+
+	private final MethodTimer exportRecordsTimer;
+
+	public ClinicExporter(OwnerRepository owners, VetRepository vets, EntityManager entityManager,
+			PlatformTransactionManager transactionManager, @Value("${petclinic.export.batch-size:500}") int batchSize,
+			ObjectProvider<MethodTimers> timers) {
+		this.owners = owners;
+		this.vets = vets;
+		this.entityManager = entityManager;
+		this.transactions = new TransactionTemplate(transactionManager);
+		this.transactions.setReadOnly(true);
+		this.batchSize = batchSize;
+		this.exportRecordsTimer = timers.getIfAvailable(() -> MethodTimers.NONE).timer(ClinicExporter.class,
+				"exportRecords");
+	}
+
+	/**
+	 * Write every owner, pet, visit and vet.
+	 * @param writer where to write the records; flushed but not closed
+	 * @return the number of records written
+	 */
+	public long exportRecords(ImportRecordWriter writer) throws IOException {
+		MethodCallEvent event = this.exportRecordsTimer.begin();
+		long start = this.exportRecordsTimer.start();
+		long records;
+		try {
+			records = doExportRecords(writer);
+		}
+		catch (IOException | RuntimeException | Error ex) {
+			this.exportRecordsTimer.record(start, event, ex);
+			throw ex;
+		}
+		this.exportRecordsTimer.record(start, event, null);
+		return records;
+	}
+
+	private long doExportRecords(ImportRecordWriter writer) throws IOException {
+		try {
+			return this.transactions.execute(status -> {
+				long records;
+				try (Stream<Object[]> rows = this.owners.streamAllWithPetsAndVisits()) {
+					records = exportRows(rows.iterator(), writer);
+				}
+				catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+				try (Stream<Object[]> rows = this.vets.streamAllSummaryRows()) {
+					return records + exportVetRows(rows.iterator(), writer);
+				}
+				catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			});
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	private long exportRows(Iterator<Object[]> rows, ImportRecordWriter writer) throws IOException {
+		long records = 0;
+		long read = 0;
+		// rows are grouped by owner and pet, so a record is due whenever the id changes
+		Integer ownerId = null;
+		Integer petId = null;
+		while (rows.hasNext()) {
+			Object[] row = rows.next();
+			Owner owner = (Owner) row[0];
+			Pet pet = (Pet) row[1];
+			Visit visit = (Visit) row[2];
+			if (!owner.getId().equals(ownerId)) {
+				writer.write(ImportRecord.Kind.OWNER, owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+						owner.getCity(), owner.getTelephone());
+				ownerId = owner.getId();
+				petId = null;
+				records++;
+			}
+			if (pet != null && !pet.getId().equals(petId)) {
+				writer.write(ImportRecord.Kind.PET, pet.getName(), pet.getBirthDate(),
+						pet.getType() == null ? null : pet.getType().getName());
+				petId = pet.getId();
+				records++;
+			}
+			if (visit != null) {
+				writer.write(ImportRecord.Kind.VISIT, visit.getDate(), visit.getDescription());
+				records++;
+			}
+			if (++read % this.batchSize == 0) {
+				this.entityManager.clear();
+				writer.flush();
+			}
+		}
+		writer.flush();
+		return records;
+	}
+
+	private long exportVetRows(Iterator<Object[]> rows, ImportRecordWriter writer) throws IOException {
+		long records = 0;
+		long read = 0;
+		// rows are grouped by vet, so a record is due whenever the id changes
+		Object[] vet = null;
+		StringBuilder specialties = new StringBuilder();
+		while (rows.hasNext()) {
+			Object[] row = rows.next();
+			if (vet == null || !vet[0].equals(row[0])) {
+				if (vet != null) {
+					writeVet(vet, specialties, writer);
+					records++;
+				}
+				vet = row;
+				specialties.setLength(0);
+			}
+			if (row[3] != null) {
+				if (specialties.length() > 0) {
+					specialties.append(ImportRecord.SPECIALTY_SEPARATOR);
+				}
+				specialties.append(row[3]);
+			}
+			if (++read % this.batchSize == 0) {
+				writer.flush();
+			}
+		}
+		if (vet != null) {
+			writeVet(vet, specialties, writer);
+			records++;
+		}
+		writer.flush();
+		return records;
+	}
+
+	private static void writeVet(Object[] vet, StringBuilder specialties, ImportRecordWriter writer)
+			throws IOException {
+		writer.write(ImportRecord.Kind.VET, vet[1], vet[2], specialties.length() == 0 ? null : specialties);
+	}
+
+}
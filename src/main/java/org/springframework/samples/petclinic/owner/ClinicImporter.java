@@ -0,0 +1,328 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.system.MethodCallEvent;
+import org.springframework.samples.petclinic.system.MethodTimer;
+import org.springframework.samples.petclinic.system.MethodTimers;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+
+/**
+ * Bulk import of owners, pets, visits and vets from an {@link ImportRecordReader}.
+ * <p>
+ * A pet belongs to the closest owner above it and a visit to the closest pet above it,
+ * so only the current owner and pet have to be remembered between records. Records are
+ * written in transactions of {@code batchSize} records, and the persistence context is
+ * flushed and cleared after each one, so memory use does not grow with the size of the
+ * input. Records that fail validation are reported and skipped; if a whole batch fails
+ * to commit, its records are reported as rejected and the import carries on with the
+ * next batch.
+ */
+@Service
+public class ClinicImporter {
+
+	/**
+	 * Callback for the progress of an import.
+	 */
+	interface Listener {
+
+		/**
+		 * Called after each batch, whether it was committed or rolled back.
+		 */
+		void progress(ImportProgress progress);
+
+		void rejected(long line, String message);
+
+	}
+
+	private final OwnerRepository owners;
+
+	private final PetRepository pets;
+
+	private final VisitRepository visits;
+
+	private final VetRepository vets;
+
+	private final PetTypeDictionary petTypes;
+
+	private final Validator validator;
+
+	private final EntityManager entityManager;
+
+	private final TransactionTemplate transactions;
+
+	private final int batchSize;
+
+	private final MethodTimer importRecordsTimer;
+
+	public ClinicImporter(OwnerRepository owners, PetRepository pets, VisitRepository visits, VetRepository vets,
+			PetTypeDictionary petTypes, Validator validator, EntityManager entityManager,
+			PlatformTransactionManager transactionManager, @Value("${petclinic.import.batch-size:500}") int batchSize,
+			ObjectProvider<MethodTimers> timers) {
+		this.owners = owners;
+		this.pets = pets;
+		this.visits = visits;
+		this.vets = vets;
+		this.petTypes = petTypes;
+		this.validator = validator;
+		this.entityManager = entityManager;
+		this.transactions = new TransactionTemplate(transactionManager);
+		this.batchSize = batchSize;
+		this.importRecordsTimer = timers.getIfAvailable(() -> MethodTimers.NONE).timer(ClinicImporter.class,
+				"importRecords");
+	}
+
+	public ImportProgress importRecords(ImportRecordReader reader, Listener listener) throws IOException {
+		MethodCallEvent event = this.importRecordsTimer.begin();
+		long start = this.importRecordsTimer.start();
+		ImportProgress progress;
+		try {
+			progress = doImportRecords(reader, listener);
+		}
+		catch (IOException | RuntimeException | Error ex) {
+			this.importRecordsTimer.record(start, event, ex);
+			throw ex;
+		}
+		this.importRecordsTimer.record(start, event, null);
+		return progress;
+	}
+
+	private ImportProgress doImportRecords(ImportRecordReader reader, Listener listener) throws IOException {
+		ImportProgress progress = new ImportProgress();
+		Batch batch = new Batch();
+		while (!batch.finished) {
+			batch.start();
+			try {
+				this.transactions.executeWithoutResult(status -> importBatch(reader, batch, progress, listener));
+				progress.add(batch.owners, batch.pets, batch.visits, batch.vets);
+			}
+			catch (UncheckedIOException ex) {
+				throw ex.getCause();
+			}
+			catch (DataAccessException | PersistenceException ex) {
+				listener.rejected(batch.firstLine, "batch of lines " + batch.firstLine + " to " + reader.getLine()
+						+ " rolled back: " + NestedExceptionUtils.getMostSpecificCause(ex).getMessage());
+				progress.reject(batch.owners + batch.pets + batch.visits + batch.vets);
+				// the owner and pet of the failed batch were never stored
+				batch.owner = null;
+				batch.pet = null;
+			}
+			progress.setLines(reader.getLine());
+			listener.progress(progress);
+		}
+		return progress;
+	}
+
+	private void importBatch(ImportRecordReader reader, Batch batch, ImportProgress progress, Listener listener) {
+		for (int records = 0; records < this.batchSize; records++) {
+			try {
+				ImportRecord record = reader.next();
+				if (record == null) {
+					batch.finished = true;
+					break;
+				}
+				if (batch.firstLine == 0) {
+					batch.firstLine = record.getLine();
+				}
+				importRecord(record, batch);
+			}
+			catch (InvalidImportRecordException ex) {
+				if (batch.firstLine == 0) {
+					batch.firstLine = ex.getLine();
+				}
+				progress.reject(1);
+				listener.rejected(ex.getLine(), ex.getMessage());
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+		this.entityManager.flush();
+		this.entityManager.clear();
+	}
+
+	private void importRecord(ImportRecord record, Batch batch) {
+		switch (record.getKind()) {
+		case OWNER:
+			// until this owner is stored, pets below it have nowhere to go
+			batch.owner = null;
+			batch.pet = null;
+			Owner owner = new Owner();
+			owner.setFirstName(record.get("firstName"));
+			owner.setLastName(record.get("lastName"));
+			owner.setAddress(record.get("address"));
+			owner.setCity(record.get("city"));
+			owner.setTelephone(record.get("telephone"));
+			validate(record, owner);
+			this.owners.save(owner);
+			batch.owner = owner;
+			batch.owners++;
+			break;
+		case PET:
+			batch.pet = null;
+			if (batch.owner == null) {
+				throw new InvalidImportRecordException(record.getLine(), "pet has no owner above it");
+			}
+			Pet pet = new Pet();
+			pet.setName(record.get("name"));
+			pet.setBirthDate(date(record, "birthDate"));
+			pet.setType(type(record));
+			pet.setOwner(batch.owner);
+			Errors errors = new BeanPropertyBindingResult(pet, "pet");
+			new PetValidator().validate(pet, errors);
+			if (errors.hasErrors()) {
+				throw new InvalidImportRecordException(record.getLine(), errors.getFieldErrors().stream()
+						.map(error -> error.getField() + ": " + error.getDefaultMessage())
+						.collect(Collectors.joining(", ")));
+			}
+			this.pets.save(pet);
+			batch.pet = pet;
+			batch.pets++;
+			break;
+		case VISIT:
+			if (batch.pet == null) {
+				throw new InvalidImportRecordException(record.getLine(), "visit has no pet above it");
+			}
+			Visit visit = new Visit();
+			LocalDate date = date(record, "date");
+			if (date != null) {
+				visit.setDate(date);
+			}
+			visit.setDescription(record.get("description"));
+			visit.setPetId(batch.pet.getId());
+			validate(record, visit);
+			this.visits.save(visit);
+			batch.visits++;
+			break;
+		case VET:
+			// pets and visits do not belong to vets
+			batch.owner = null;
+			batch.pet = null;
+			Vet vet = new Vet();
+			vet.setFirstName(record.get("firstName"));
+			vet.setLastName(record.get("lastName"));
+			String specialties = record.get("specialties");
+			if (specialties != null) {
+				for (String name : StringUtils.tokenizeToStringArray(specialties, ImportRecord.SPECIALTY_SEPARATOR)) {
+					vet.addSpecialty(specialty(record, name));
+				}
+			}
+			validate(record, vet);
+			this.vets.save(vet);
+			batch.vets++;
+			break;
+		}
+	}
+
+	private PetType type(ImportRecord record) {
+		String name = record.get("type");
+		if (name == null) {
+			return null;
+		}
+		PetType type = this.petTypes.findByName(name);
+		if (type == null) {
+			throw new InvalidImportRecordException(record.getLine(), "type: unknown pet type '" + name + "'");
+		}
+		return type;
+	}
+
+	private Specialty specialty(ImportRecord record, String name) {
+		Specialty specialty = this.vets.findSpecialtyByName(name);
+		if (specialty == null) {
+			throw new InvalidImportRecordException(record.getLine(), "specialties: unknown specialty '" + name + "'");
+		}
+		return specialty;
+	}
+
+	private static LocalDate date(ImportRecord record, String field) {
+		String value = record.get(field);
+		try {
+			return value == null ? null : LocalDate.parse(value);
+		}
+		catch (DateTimeParseException ex) {
+			throw new InvalidImportRecordException(record.getLine(),
+					field + ": '" + value + "' is not a date in the form yyyy-MM-dd");
+		}
+	}
+
+	private void validate(ImportRecord record, Object entity) {
+		Set<ConstraintViolation<Object>> violations = this.validator.validate(entity);
+		if (!violations.isEmpty()) {
+			throw new InvalidImportRecordException(record.getLine(),
+					violations.stream().map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+							.sorted().collect(Collectors.joining(", ")));
+		}
+	}
+
+	/**
+	 * State of the batch being imported, plus the owner and pet that following records
+	 * attach to.
+	 */
+	private static final class Batch {
+
+		long firstLine;
+
+		long owners;
+
+		long pets;
+
+		long visits;
+
+		long vets;
+
+		boolean finished;
+
+		Owner owner;
+
+		Pet pet;
+
+		void start() {
+			this.firstLine = 0;
+			this.owners = 0;
+			this.pets = 0;
+			this.visits = 0;
+			this.vets = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+/**
+ * Export of all owners with their pets and visits, and all vets, as CSV or, if the client
+ * asks for it, NDJSON, in the formats accepted by {@link ImportController}.
+ * <p>
+ * The response is written while the data is read and is sent in chunks, so neither the
+ * server nor the client needs to hold the whole export.
+ *
+ * @see ClinicExporter
+ */
+@Controller
+class ExportController {
+
+	private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+	private final ClinicExporter exporter;
+
+	private final ObjectMapper objectMapper;
+
+	ExportController(ClinicExporter exporter, ObjectMapper objectMapper) {
+		this.exporter = exporter;
+		this.objectMapper = objectMapper;
+	}
+
+	@GetMapping(path = "/owners/export", produces = { "text/csv", ImportController.NDJSON })
+	public void export(@RequestHeader(name = HttpHeaders.ACCEPT, defaultValue = "text/csv") String accept,
+			HttpServletResponse response) throws IOException {
+		boolean ndjson = prefersNdjson(MediaType.parseMediaTypes(accept));
+		response.setContentType(ndjson ? ImportController.NDJSON : CSV.toString());
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+				"attachment; filename=\"petclinic." + (ndjson ? "ndjson" : "csv") + "\"");
+		Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+		this.exporter.exportRecords(
+				ndjson ? ImportRecordWriter.ndjson(out, this.objectMapper) : ImportRecordWriter.csv(out));
+	}
+
+	/**
+	 * Whether the client explicitly asks for NDJSON ahead of CSV; wildcards get CSV.
+	 */
+	private static boolean prefersNdjson(List<MediaType> accepted) {
+		MediaType.sortBySpecificityAndQuality(accepted);
+		for (MediaType type : accepted) {
+			if (type.equalsTypeAndSubtype(MediaType.parseMediaType(ImportController.NDJSON))) {
+				return true;
+			}
+			if (type.includes(CSV)) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+}
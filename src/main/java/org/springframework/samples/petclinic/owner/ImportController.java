@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.PostMapping;
+
+/**
+ * Bulk import of owners with their pets and visits, and of vets, see
+ * {@link ImportRecordReader} for the accepted formats.
+ * <p>
+ * The request body is read as it arrives and the response is a stream of NDJSON events:
+ * a {@code rejected} event for each line that was skipped, a {@code progress} event after
+ * each batch and a final {@code done} event with the totals.
+ *
+ * @see ClinicImporter
+ */
+@Controller
+class ImportController {
+
+	static final String NDJSON = "application/x-ndjson";
+
+	private final ClinicImporter importer;
+
+	private final ObjectMapper objectMapper;
+
+	ImportController(ClinicImporter importer, ObjectMapper objectMapper) {
+		this.importer = importer;
+		this.objectMapper = objectMapper;
+	}
+
+	@PostMapping(path = "/owners/import", consumes = "text/csv")
+	public void importCsv(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		importRecords(ImportRecordReader.csv(reader(request)), response);
+	}
+
+	@PostMapping(path = "/owners/import", consumes = NDJSON)
+	public void importNdjson(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		importRecords(ImportRecordReader.ndjson(reader(request), this.objectMapper), response);
+	}
+
+	private void importRecords(ImportRecordReader reader, HttpServletResponse response) throws IOException {
+		response.setContentType(NDJSON);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		OutputStream out = response.getOutputStream();
+		ImportProgress done = this.importer.importRecords(reader, new ClinicImporter.Listener() {
+
+			@Override
+			public void progress(ImportProgress progress) {
+				write(out, "progress", progress);
+				flush(out);
+			}
+
+			@Override
+			public void rejected(long line, String message) {
+				Map<String, Object> rejected = new LinkedHashMap<>();
+				rejected.put("line", line);
+				rejected.put("message", message);
+				write(out, "rejected", rejected);
+			}
+
+		});
+		write(out, "done", done);
+		flush(out);
+	}
+
+	private void write(OutputStream out, String event, Object payload) {
+		try {
+			ObjectNode line = this.objectMapper.createObjectNode().put("event", event);
+			line.setAll((ObjectNode) this.objectMapper.valueToTree(payload));
+			out.write(this.objectMapper.writeValueAsBytes(line));
+			out.write('\n');
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static void flush(OutputStream out) {
+		try {
+			out.flush();
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static InputStreamReader reader(HttpServletRequest request) throws IOException {
+		String encoding = request.getCharacterEncoding();
+		Charset charset = StringUtils.hasText(encoding) ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+		return new InputStreamReader(request.getInputStream(), charset);
+	}
+
+}
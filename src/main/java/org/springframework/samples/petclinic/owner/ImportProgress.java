@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+/**
+ * Running totals of a bulk import. Only records of committed batches are counted as
+ * imported.
+ */
+public class ImportProgress {
+
+	private long lines;
+
+	private long owners;
+
+	private long pets;
+
+	private long visits;
+
+	private long vets;
+
+	private long rejected;
+
+	/**
+	 * Number of input lines read so far.
+	 */
+	public long getLines() {
+		return this.lines;
+	}
+
+	public long getOwners() {
+		return this.owners;
+	}
+
+	public long getPets() {
+		return this.pets;
+	}
+
+	public long getVisits() {
+		return this.visits;
+	}
+
+	public long getVets() {
+		return this.vets;
+	}
+
+	/**
+	 * Number of records that were skipped, including those of batches that were rolled
+	 * back.
+	 */
+	public long getRejected() {
+		return this.rejected;
+	}
+
+	void setLines(long lines) {
+		this.lines = lines;
+	}
+
+	void add(long owners, long pets, long visits, long vets) {
+		this.owners += owners;
+		this.pets += pets;
+		this.visits += visits;
+		this.vets += vets;
+	}
+
+	void reject(long records) {
+		this.rejected += records;
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One line of a bulk import: an owner, a pet of the owner above it, a visit of the pet
+ * above it, or a vet with the names of its specialties separated by
+ * {@value #SPECIALTY_SEPARATOR}.
+ *
+ * @see ClinicImporter
+ */
+final class ImportRecord {
+
+	static final String SPECIALTY_SEPARATOR = ";";
+
+	enum Kind {
+
+		OWNER("firstName", "lastName", "address", "city", "telephone"),
+
+		PET("name", "birthDate", "type"),
+
+		VISIT("date", "description"),
+
+		VET("firstName", "lastName", "specialties");
+
+		private final List<String> fields;
+
+		Kind(String... fields) {
+			this.fields = Arrays.asList(fields);
+		}
+
+		/**
+		 * The fields of this kind of record, in the order of the CSV columns that follow the
+		 * record kind.
+		 */
+		List<String> getFields() {
+			return this.fields;
+		}
+
+		static Kind of(String name, long line) {
+			for (Kind kind : values()) {
+				if (kind.name().equalsIgnoreCase(name)) {
+					return kind;
+				}
+			}
+			throw new InvalidImportRecordException(line, "unknown record kind '" + name + "'");
+		}
+
+	}
+
+	private final long line;
+
+	private final Kind kind;
+
+	private final Map<String, String> values;
+
+	ImportRecord(long line, Kind kind, Map<String, String> values) {
+		this.line = line;
+		this.kind = kind;
+		this.values = values;
+	}
+
+	long getLine() {
+		return this.line;
+	}
+
+	Kind getKind() {
+		return this.kind;
+	}
+
+	/**
+	 * Return the value of the given field, or {@code null} if it is missing or blank.
+	 */
+	String get(String field) {
+		String value = this.values.get(field);
+		return value == null || value.trim().isEmpty() ? null : value.trim();
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads {@link ImportRecord}s one line at a time, so that only the current line is held
+ * in memory. Blank lines and lines starting with {@code #} are skipped.
+ * <p>
+ * Two formats are supported:
+ * <ul>
+ * <li>CSV, where the first column is the record kind and the remaining columns are its
+ * fields in the order of {@link ImportRecord.Kind#getFields()}, for example
+ * {@code pet,Leo,2010-09-07,cat}. Fields may be quoted but must not span lines.</li>
+ * <li>NDJSON, one object per line with a {@code kind} property and one property per
+ * field, for example {@code {"kind":"pet","name":"Leo","birthDate":"2010-09-07","type":"cat"}}.</li>
+ * </ul>
+ */
+abstract class ImportRecordReader {
+
+	private final BufferedReader reader;
+
+	private long line;
+
+	ImportRecordReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+	}
+
+	static ImportRecordReader csv(Reader reader) {
+		return new Csv(reader);
+	}
+
+	static ImportRecordReader ndjson(Reader reader, ObjectMapper objectMapper) {
+		return new Ndjson(reader, objectMapper);
+	}
+
+	/**
+	 * Read the next record.
+	 * @return the record, or {@code null} at the end of the input
+	 * @throws InvalidImportRecordException if the next line cannot be parsed; the reader
+	 * can carry on with the line after it
+	 */
+	ImportRecord next() throws IOException {
+		String text;
+		do {
+			text = this.reader.readLine();
+			if (text == null) {
+				return null;
+			}
+			this.line++;
+		}
+		while (text.trim().isEmpty() || text.startsWith("#"));
+		return parse(this.line, text);
+	}
+
+	/**
+	 * Number of the last line read, starting at 1.
+	 */
+	long getLine() {
+		return this.line;
+	}
+
+	protected abstract ImportRecord parse(long line, String text);
+
+	private static final class Csv extends ImportRecordReader {
+
+		Csv(Reader reader) {
+			super(reader);
+		}
+
+		@Override
+		protected ImportRecord parse(long line, String text) {
+			List<String> columns = split(line, text);
+			ImportRecord.Kind kind = ImportRecord.Kind.of(columns.get(0).trim(), line);
+			List<String> fields = kind.getFields();
+			if (columns.size() - 1 > fields.size()) {
+				throw new InvalidImportRecordException(line,
+						"expected at most " + fields.size() + " fields for " + columns.get(0).trim());
+			}
+			Map<String, String> values = new HashMap<>();
+			for (int i = 1; i < columns.size(); i++) {
+				values.put(fields.get(i - 1), columns.get(i));
+			}
+			return new ImportRecord(line, kind, values);
+		}
+
+		private static List<String> split(long line, String text) {
+			List<String> columns = new ArrayList<>();
+			StringBuilder column = new StringBuilder();
+			boolean quoted = false;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (quoted) {
+					if (c != '"') {
+						column.append(c);
+					}
+					else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+						column.append('"');
+						i++;
+					}
+					else {
+						quoted = false;
+					}
+				}
+				else if (c == '"') {
+					quoted = true;
+				}
+				else if (c == ',') {
+					columns.add(column.toString());
+					column.setLength(0);
+				}
+				else {
+					column.append(c);
+				}
+			}
+			if (quoted) {
+				throw new InvalidImportRecordException(line, "unterminated quoted field");
+			}
+			columns.add(column.toString());
+			return columns;
+		}
+
+	}
+
+	private static final class Ndjson extends ImportRecordReader {
+
+		private final ObjectMapper objectMapper;
+
+		Ndjson(Reader reader, ObjectMapper objectMapper) {
+			super(reader);
+			this.objectMapper = objectMapper;
+		}
+
+		@Override
+		protected ImportRecord parse(long line, String text) {
+			JsonNode node;
+			try {
+				node = this.objectMapper.readTree(text);
+			}
+			catch (JsonProcessingException ex) {
+				throw new InvalidImportRecordException(line, "malformed JSON: " + ex.getOriginalMessage());
+			}
+			if (!node.isObject() || !node.hasNonNull("kind")) {
+				throw new InvalidImportRecordException(line, "expected an object with a 'kind'");
+			}
+			ImportRecord.Kind kind = ImportRecord.Kind.of(node.get("kind").asText(), line);
+			Map<String, String> values = new HashMap<>();
+			for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+				Map.Entry<String, JsonNode> field = it.next();
+				if (kind.getFields().contains(field.getKey()) && !field.getValue().isNull()) {
+					values.put(field.getKey(), field.getValue().asText());
+				}
+			}
+			return new ImportRecord(line, kind, values);
+		}
+
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes {@link ImportRecord}s one line at a time in one of the formats read by
+ * {@link ImportRecordReader}, so that an export can be imported again.
+ * <p>
+ * The CSV reader does not accept fields that span lines, so line breaks inside CSV values
+ * are written as spaces.
+ */
+abstract class ImportRecordWriter implements Flushable {
+
+	static ImportRecordWriter csv(Writer writer) {
+		return new Csv(writer);
+	}
+
+	static ImportRecordWriter ndjson(Writer writer, ObjectMapper objectMapper) throws IOException {
+		return new Ndjson(writer, objectMapper);
+	}
+
+	/**
+	 * Write one record.
+	 * @param kind the kind of record
+	 * @param values the values of its fields in the order of
+	 * {@link ImportRecord.Kind#getFields()}, {@code null} for a missing value
+	 */
+	abstract void write(ImportRecord.Kind kind, Object... values) throws IOException;
+
+	private static final class Csv extends ImportRecordWriter {
+
+		private final Writer writer;
+
+		private final StringBuilder line = new StringBuilder();
+
+		Csv(Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		void write(ImportRecord.Kind kind, Object... values) throws IOException {
+			this.line.setLength(0);
+			this.line.append(kind.name().toLowerCase(Locale.ROOT));
+			for (Object value : values) {
+				this.line.append(',');
+				if (value != null) {
+					append(value.toString());
+				}
+			}
+			this.line.append('\n');
+			this.writer.append(this.line);
+		}
+
+		private void append(String value) {
+			boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0;
+			if (quote) {
+				this.line.append('"');
+			}
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"') {
+					this.line.append("\"\"");
+				}
+				else if (c == '\n' || c == '\r') {
+					this.line.append(' ');
+				}
+				else {
+					this.line.append(c);
+				}
+			}
+			if (quote) {
+				this.line.append('"');
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.writer.flush();
+		}
+
+	}
+
+	private static final class Ndjson extends ImportRecordWriter {
+
+		private final JsonGenerator generator;
+
+		Ndjson(Writer writer, ObjectMapper objectMapper) throws IOException {
+			this.generator = objectMapper.getFactory().createGenerator(writer)
+					.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			// records are separated by line breaks rather than the default space
+			this.generator.setRootValueSeparator(null);
+		}
+
+		@Override
+		void write(ImportRecord.Kind kind, Object... values) throws IOException {
+			List<String> fields = kind.getFields();
+			this.generator.writeStartObject();
+			this.generator.writeStringField("kind", kind.name().toLowerCase(Locale.ROOT));
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					this.generator.writeStringField(fields.get(i), values[i].toString());
+				}
+			}
+			this.generator.writeEndObject();
+			this.generator.writeRaw('\n');
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.generator.flush();
+		}
+
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+/**
+ * Thrown when a single line of a bulk import cannot be read or stored. The import skips
+ * the line and carries on.
+ */
+class InvalidImportRecordException extends RuntimeException {
+
+	private final long line;
+
+	InvalidImportRecordException(long line, String message) {
+		super(message);
+		this.line = line;
+	}
+
+	long getLine() {
+		return this.line;
+	}
+
+}
@@ -16,8 +16,9 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 
@@ -29,10 +30,10 @@ import javax.persistence.Table;
 import javax.validation.constraints.Digits;
 import javax.validation.constraints.NotEmpty;
 
-import org.springframework.beans.support.MutableSortDefinition;
-import org.springframework.beans.support.PropertyComparator;
 import org.springframework.core.style.ToStringCreator;
+import org.springframework.data.domain.DomainEvents;
 import org.springframework.samples.petclinic.model.Person;
+import org.springframework.samples.petclinic.utility.IdentityMap;
 
 /**
  * Simple JavaBean domain object representing an owner.
@@ -46,6 +47,9 @@ import org.springframework.samples.petclinic.model.Person;
 @Table(name = "owners")
 public class Owner extends Person {
 
+	private static final Comparator<Pet> PETS_BY_NAME = Comparator.comparing(Pet::getName,
+			Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
 	@Column(name = "address")
 	@NotEmpty
 	private String address;
@@ -62,6 +66,15 @@ public class Owner extends Person {
 	@OneToMany(cascade = CascadeType.ALL, mappedBy = "owner")
 	private Set<Pet> pets;
 
+	/**
+	 * Sorted copy of {@link #pets} handed out by {@link #getPets()}, or {@code null} if
+	 * it has to be rebuilt.
+	 */
+	private transient List<Pet> sortedPets;
+
+	/** Size of {@link #pets} when {@link #sortedPets} was built. */
+	private transient int sortedPetsSize;
+
 	public String getAddress() {
 		return this.address;
 	}
@@ -88,19 +101,30 @@ public class Owner extends Person {
 
 	protected Set<Pet> getPetsInternal() {
 		if (this.pets == null) {
-			this.pets = new HashSet<>();
+			this.pets = new IdentityMap<>();
 		}
 		return this.pets;
 	}
 
 	protected void setPetsInternal(Set<Pet> pets) {
 		this.pets = pets;
+		this.sortedPets = null;
 	}
 
+	/**
+	 * Return this owner's pets sorted by name. The sorted list is cached until a pet is
+	 * added or removed, so templates can call this repeatedly without re-sorting.
+	 */
 	public List<Pet> getPets() {
-		List<Pet> sortedPets = new ArrayList<>(getPetsInternal());
-		PropertyComparator.sort(sortedPets, new MutableSortDefinition("name", true, true));
-		return Collections.unmodifiableList(sortedPets);
+		Set<Pet> pets = getPetsInternal();
+		// the persistence provider may fill the set behind our back, so check its size too
+		if (this.sortedPets == null || this.sortedPetsSize != pets.size()) {
+			List<Pet> sortedPets = new ArrayList<>(pets);
+			sortedPets.sort(PETS_BY_NAME);
+			this.sortedPets = Collections.unmodifiableList(sortedPets);
+			this.sortedPetsSize = pets.size();
+		}
+		return this.sortedPets;
 	}
 
 	public void addPet(Pet pet) {
@@ -108,10 +132,13 @@ public class Owner extends Person {
 			getPetsInternal().add(pet);
 		}
 		pet.setOwner(this);
+		// the pet may have been renamed
+		this.sortedPets = null;
 	}
 
 	public void removePet(Pet pet) {
 		getPetsInternal().remove(pet);
+		this.sortedPets = null;
 	}
 
 	/**
@@ -142,6 +169,15 @@ public class Owner extends Person {
 		return null;
 	}
 
+	/**
+	 * Events published by Spring Data each time this owner is saved through
+	 * {@link OwnerRepository#save(Owner)}.
+	 */
+	@DomainEvents
+	Collection<OwnerSavedEvent> domainEvents() {
+		return Collections.singletonList(new OwnerSavedEvent(this));
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringCreator(this)
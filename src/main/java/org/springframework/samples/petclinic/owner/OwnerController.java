@@ -15,7 +15,8 @@
  */
 package org.springframework.samples.petclinic.owner;
 
-import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.system.SqlQueryBudget;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -24,10 +25,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.ModelAndView;
 
 import javax.validation.Valid;
-import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -43,11 +45,14 @@ class OwnerController {
 
 	private final OwnerRepository owners;
 
-	private VisitRepository visits;
+	private final OwnerFinder ownerFinder;
 
-	public OwnerController(OwnerRepository clinicService, VisitRepository visits) {
+	private final PetVisitLoader visitLoader;
+
+	public OwnerController(OwnerRepository clinicService, OwnerFinder ownerFinder, PetVisitLoader visitLoader) {
 		this.owners = clinicService;
-		this.visits = visits;
+		this.ownerFinder = ownerFinder;
+		this.visitLoader = visitLoader;
 	}
 
 	@InitBinder
@@ -80,32 +85,50 @@ class OwnerController {
 	}
 
 	@GetMapping("/owners")
-	public String processFindForm(Owner owner, BindingResult result, Map<String, Object> model) {
+	@SqlQueryBudget(2)
+	public String processFindForm(Owner owner, BindingResult result, @RequestParam(required = false) String after,
+			@RequestParam(required = false) String before,
+			@RequestParam(defaultValue = "" + OwnerFinder.DEFAULT_PAGE_SIZE) int size, Map<String, Object> model) {
 
 		// allow parameterless GET request for /owners to return all records
 		if (owner.getLastName() == null) {
 			owner.setLastName(""); // empty string signifies broadest possible search
 		}
 
-		// find owners by last name
-		Collection<Owner> results = this.owners.findByLastName(owner.getLastName());
-		if (results.isEmpty()) {
+		// find a page of owners by last name
+		OwnerCursor afterCursor = parseCursor(after);
+		OwnerCursor beforeCursor = parseCursor(before);
+		OwnerPage page = this.ownerFinder.findPage(owner.getLastName(), afterCursor, beforeCursor, size);
+		boolean firstPage = afterCursor == null && beforeCursor == null;
+		if (page.isEmpty() && firstPage) {
 			// no owners found
 			result.rejectValue("lastName", "notFound", "not found");
 			return "owners/findOwners";
 		}
-		else if (results.size() == 1) {
+		else if (page.getOwners().size() == 1 && firstPage && page.getNext() == null) {
 			// 1 owner found
-			owner = results.iterator().next();
-			return "redirect:/owners/" + owner.getId();
+			return "redirect:/owners/" + page.getOwners().get(0).getId();
 		}
 		else {
 			// multiple owners found
-			model.put("selections", results);
+			model.put("selections", page.getOwners());
+			model.put("page", page);
 			return "owners/ownersList";
 		}
 	}
 
+	private static OwnerCursor parseCursor(String text) {
+		if (text == null) {
+			return null;
+		}
+		try {
+			return OwnerCursor.parse(text);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+		}
+	}
+
 	@GetMapping("/owners/{ownerId}/edit")
 	public String initUpdateOwnerForm(@PathVariable("ownerId") int ownerId, Model model) {
 		Owner owner = this.owners.findById(ownerId);
@@ -132,12 +155,11 @@ class OwnerController {
 	 * @return a ModelMap with the model attributes for the view
 	 */
 	@GetMapping("/owners/{ownerId}")
+	@SqlQueryBudget(2)
 	public ModelAndView showOwner(@PathVariable("ownerId") int ownerId) {
 		ModelAndView mav = new ModelAndView("owners/ownerDetails");
 		Owner owner = this.owners.findById(ownerId);
-		for (Pet pet : owner.getPets()) {
-			pet.setVisitsInternal(visits.findByPetId(pet.getId()));
-		}
+		this.visitLoader.loadVisits(owner.getPets());
 		mav.addObject(owner);
 		return mav;
 	}
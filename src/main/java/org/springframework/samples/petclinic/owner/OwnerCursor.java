@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import org.springframework.util.Assert;
+
+/**
+ * Position of an {@link Owner} in the (last name, id) ordering used to page through owner
+ * search results. Rendered as {@code id:lastName} so that it can travel as a single
+ * request parameter.
+ */
+public final class OwnerCursor {
+
+	private final String lastName;
+
+	private final int id;
+
+	public OwnerCursor(String lastName, int id) {
+		Assert.notNull(lastName, "lastName must not be null");
+		this.lastName = lastName;
+		this.id = id;
+	}
+
+	/**
+	 * Parse a cursor previously produced by {@link #toString()}.
+	 * @param text the cursor text
+	 * @return the cursor
+	 * @throws IllegalArgumentException if the text is not a valid cursor
+	 */
+	public static OwnerCursor parse(String text) {
+		int separator = text.indexOf(':');
+		if (separator <= 0) {
+			throw new IllegalArgumentException("Invalid owner cursor: " + text);
+		}
+		try {
+			return new OwnerCursor(text.substring(separator + 1), Integer.parseInt(text.substring(0, separator)));
+		}
+		catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid owner cursor: " + text, ex);
+		}
+	}
+
+	public String getLastName() {
+		return this.lastName;
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	@Override
+	public String toString() {
+		return this.id + ":" + this.lastName;
+	}
+
+}
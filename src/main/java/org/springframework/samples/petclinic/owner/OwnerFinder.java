@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.samples.petclinic.system.MethodCallEvent;
+import org.springframework.samples.petclinic.system.MethodTimer;
+import org.springframework.samples.petclinic.system.MethodTimers;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pages through owners by last name using keyset (seek) pagination on (last name, id).
+ * <p>
+ * A page is resolved in two queries: the first selects just the ids of the page's owners,
+ * so the limit applies to owners, and the second fetches {@link OwnerSummary summaries}
+ * of those owners with the names of their pets.
+ * When the {@link OwnerLastNameIndex} is enabled the ids come from the index instead and
+ * only the second query hits the database.
+ */
+@Service
+public class OwnerFinder {
+
+	public static final int DEFAULT_PAGE_SIZE = 20;
+
+	public static final int MAX_PAGE_SIZE = 100;
+
+	private final OwnerRepository owners;
+
+	private final OwnerLastNameIndex index;
+
+	private final MethodTimer findPageTimer;
+
+	public OwnerFinder(OwnerRepository owners, ObjectProvider<OwnerLastNameIndex> index,
+			ObjectProvider<MethodTimers> timers) {
+		this.owners = owners;
+		this.index = index.getIfAvailable();
+		this.findPageTimer = timers.getIfAvailable(() -> MethodTimers.NONE).timer(OwnerFinder.class, "findPage");
+	}
+
+	/**
+	 * Find a page of owners whose last name starts with the given name.
+	 * @param lastName the last name prefix, empty for all owners
+	 * @param after fetch the page following this cursor (may be {@code null})
+	 * @param before fetch the page preceding this cursor (may be {@code null}, ignored if
+	 * {@code after} is set)
+	 * @param size the requested page size, capped at {@link #MAX_PAGE_SIZE}
+	 * @return the page
+	 */
+	public OwnerPage findPage(String lastName, OwnerCursor after, OwnerCursor before, int size) {
+		MethodCallEvent event = this.findPageTimer.begin();
+		long start = this.findPageTimer.start();
+		OwnerPage page;
+		try {
+			page = doFindPage(lastName, after, before, size);
+		}
+		catch (RuntimeException | Error ex) {
+			this.findPageTimer.record(start, event, ex);
+			throw ex;
+		}
+		this.findPageTimer.record(start, event, null);
+		return page;
+	}
+
+	private OwnerPage doFindPage(String lastName, OwnerCursor after, OwnerCursor before, int size) {
+		int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+		// ask for one more row than needed to learn whether there is another page
+		int limit = pageSize + 1;
+		// the cursors are taken from the positions found rather than from the owners
+		// loaded, which are fewer if some of them have been deleted in between
+		if (after == null && before != null) {
+			List<OwnerCursor> found = findBefore(lastName, before, limit);
+			boolean hasPrevious = found.size() > pageSize;
+			List<OwnerCursor> positions = new ArrayList<>(found.subList(0, Math.min(found.size(), pageSize)));
+			Collections.reverse(positions);
+			return new OwnerPage(load(positions), hasPrevious ? positions.get(0) : null,
+					positions.isEmpty() ? null : positions.get(positions.size() - 1), pageSize);
+		}
+		List<OwnerCursor> found = find(lastName, after, limit);
+		boolean hasNext = found.size() > pageSize;
+		List<OwnerCursor> positions = found.subList(0, Math.min(found.size(), pageSize));
+		return new OwnerPage(load(positions), (after != null && !positions.isEmpty()) ? positions.get(0) : null,
+				hasNext ? positions.get(positions.size() - 1) : null, pageSize);
+	}
+
+	private List<OwnerCursor> find(String lastName, OwnerCursor after, int limit) {
+		if (this.index != null) {
+			return this.index.findCursors(lastName, after, limit);
+		}
+		return (after != null)
+				? this.owners.findCursorsByLastNameAfter(lastName, after.getLastName(), after.getId(),
+						PageRequest.of(0, limit))
+				: this.owners.findCursorsByLastName(lastName, PageRequest.of(0, limit));
+	}
+
+	private List<OwnerCursor> findBefore(String lastName, OwnerCursor before, int limit) {
+		if (this.index != null) {
+			return this.index.findCursorsBefore(lastName, before, limit);
+		}
+		return this.owners.findCursorsByLastNameBefore(lastName, before.getLastName(), before.getId(),
+				PageRequest.of(0, limit));
+	}
+
+	/**
+	 * Fetch the summaries of the owners at the given positions, keeping their order.
+	 */
+	private List<OwnerSummary> load(List<OwnerCursor> positions) {
+		if (positions.isEmpty()) {
+			return new ArrayList<>();
+		}
+		List<Integer> ids = new ArrayList<>(positions.size());
+		for (OwnerCursor position : positions) {
+			ids.add(position.getId());
+		}
+		Map<Integer, OwnerSummary> byId = new HashMap<>();
+		for (OwnerSummary owner : OwnerSummary.fromRows(this.owners.findSummaryRowsByIdIn(ids))) {
+			byId.put(owner.getId(), owner);
+		}
+		List<OwnerSummary> ordered = new ArrayList<>(ids.size());
+		for (Integer id : ids) {
+			OwnerSummary owner = byId.get(id);
+			if (owner != null) {
+				ordered.add(owner);
+			}
+		}
+		return ordered;
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-memory, sorted index of owner (last name, id) pairs used to resolve last name prefix
+ * searches without querying the database.
+ * <p>
+ * Last names are compared ignoring case, the same way as the
+ * {@code VARCHAR_IGNORECASE} column of the H2 schema, so the index yields owners in the
+ * same order as {@link OwnerRepository#findCursorsByLastName}. The index is loaded once at
+ * startup and then kept current from the {@link OwnerSavedEvent}s published by
+ * {@link OwnerRepository#save(Owner)}. It is only created when
+ * {@code petclinic.owners.last-name-index.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "petclinic.owners.last-name-index.enabled", havingValue = "true")
+public class OwnerLastNameIndex implements SmartInitializingSingleton {
+
+	private static final Logger log = LoggerFactory.getLogger(OwnerLastNameIndex.class);
+
+	private final OwnerRepository owners;
+
+	private final NavigableSet<Key> keys = new ConcurrentSkipListSet<>();
+
+	private final Map<Integer, Key> keysById = new ConcurrentHashMap<>();
+
+	public OwnerLastNameIndex(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		long start = System.currentTimeMillis();
+		for (Object[] row : this.owners.findAllIdsAndLastNames()) {
+			put((Integer) row[0], (String) row[1]);
+		}
+		log.info("Indexed {} owner last names in {} ms", size(), System.currentTimeMillis() - start);
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onOwnerSaved(OwnerSavedEvent event) {
+		Owner owner = event.getOwner();
+		if (owner.getId() != null && owner.getLastName() != null) {
+			put(owner.getId(), owner.getLastName());
+		}
+	}
+
+	/**
+	 * Add an owner to the index, or move it if its last name has changed.
+	 */
+	public synchronized void put(int id, String lastName) {
+		Key key = new Key(fold(lastName), id, lastName);
+		Key previous = this.keysById.put(id, key);
+		if (previous != null && !previous.equals(key)) {
+			this.keys.remove(previous);
+		}
+		this.keys.add(key);
+	}
+
+	public synchronized void remove(int id) {
+		Key previous = this.keysById.remove(id);
+		if (previous != null) {
+			this.keys.remove(previous);
+		}
+	}
+
+	public int size() {
+		return this.keysById.size();
+	}
+
+	/**
+	 * Return the positions of at most {@code limit} owners whose last name starts with the
+	 * given prefix, in (last name, id) order, starting after the given cursor.
+	 * @param prefix the last name prefix, empty for all owners
+	 * @param after the cursor to seek past, or {@code null} to start at the beginning
+	 * @param limit the maximum number of ids to return
+	 */
+	public List<OwnerCursor> findCursors(String prefix, OwnerCursor after, int limit) {
+		String folded = fold(prefix);
+		Key from = new Key(folded, Integer.MIN_VALUE, null);
+		boolean fromInclusive = true;
+		Key to = upperBound(folded);
+		if (after != null) {
+			Key cursor = new Key(fold(after.getLastName()), after.getId(), null);
+			if (cursor.compareTo(from) >= 0) {
+				from = cursor;
+				fromInclusive = false;
+			}
+		}
+		if (to == null) {
+			return collect(this.keys.tailSet(from, fromInclusive).iterator(), limit);
+		}
+		if (from.compareTo(to) >= 0) {
+			return new ArrayList<>();
+		}
+		return collect(this.keys.subSet(from, fromInclusive, to, false).iterator(), limit);
+	}
+
+	/**
+	 * Return the positions of at most {@code limit} owners whose last name starts with the
+	 * given prefix and that sort before the given cursor, closest first (that is in
+	 * <i>descending</i> (last name, id) order).
+	 * @param prefix the last name prefix, empty for all owners
+	 * @param before the cursor to seek back from
+	 * @param limit the maximum number of ids to return
+	 */
+	public List<OwnerCursor> findCursorsBefore(String prefix, OwnerCursor before, int limit) {
+		String folded = fold(prefix);
+		Key from = new Key(folded, Integer.MIN_VALUE, null);
+		Key to = upperBound(folded);
+		Key cursor = new Key(fold(before.getLastName()), before.getId(), null);
+		if (to == null || cursor.compareTo(to) < 0) {
+			to = cursor;
+		}
+		if (to.compareTo(from) <= 0) {
+			return new ArrayList<>();
+		}
+		return collect(this.keys.subSet(from, true, to, false).descendingIterator(), limit);
+	}
+
+	/**
+	 * The first key past every last name that starts with the given folded prefix, or
+	 * {@code null} for the empty prefix.
+	 */
+	private static Key upperBound(String prefix) {
+		String successor = successor(prefix);
+		return (successor != null) ? new Key(successor, Integer.MIN_VALUE, null) : null;
+	}
+
+	/**
+	 * Smallest string greater than every string starting with {@code prefix}, or
+	 * {@code null} if there is none (the empty prefix).
+	 */
+	private static String successor(String prefix) {
+		StringBuilder successor = new StringBuilder(prefix);
+		while (successor.length() > 0) {
+			int last = successor.length() - 1;
+			char c = successor.charAt(last);
+			if (c != Character.MAX_VALUE) {
+				successor.setCharAt(last, (char) (c + 1));
+				return successor.toString();
+			}
+			successor.setLength(last);
+		}
+		return null;
+	}
+
+	private static List<OwnerCursor> collect(Iterator<Key> keys, int limit) {
+		List<OwnerCursor> cursors = new ArrayList<>(Math.min(limit, 64));
+		while (cursors.size() < limit && keys.hasNext()) {
+			Key key = keys.next();
+			cursors.add(new OwnerCursor(key.name, key.id));
+		}
+		return cursors;
+	}
+
+	/**
+	 * Fold a name so that plain string comparison matches
+	 * {@link String#compareToIgnoreCase(String)}.
+	 */
+	static String fold(String name) {
+		char[] chars = name.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+
+	private static final class Key implements Comparable<Key> {
+
+		/**
+		 * The folded last name, which orders the keys.
+		 */
+		private final String lastName;
+
+		private final int id;
+
+		/**
+		 * The last name as saved, {@code null} for the bounds of a search.
+		 */
+		private final String name;
+
+		Key(String lastName, int id, String name) {
+			this.lastName = lastName;
+			this.id = id;
+			this.name = name;
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			int result = this.lastName.compareTo(other.lastName);
+			return (result != 0) ? result : Integer.compare(this.id, other.id);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return (other instanceof Key) && compareTo((Key) other) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.lastName.hashCode() + this.id;
+		}
+
+	}
+
+}
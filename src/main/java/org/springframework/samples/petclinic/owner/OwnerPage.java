@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of owner search results, with the cursors needed to fetch the neighbouring
+ * pages.
+ */
+public class OwnerPage {
+
+	private final List<OwnerSummary> owners;
+
+	private final OwnerCursor previous;
+
+	private final OwnerCursor next;
+
+	private final int size;
+
+	OwnerPage(List<OwnerSummary> owners, OwnerCursor previous, OwnerCursor next, int size) {
+		this.owners = Collections.unmodifiableList(owners);
+		this.previous = previous;
+		this.next = next;
+		this.size = size;
+	}
+
+	public List<OwnerSummary> getOwners() {
+		return this.owners;
+	}
+
+	/**
+	 * Cursor to pass as {@code before} to fetch the previous page, or {@code null} if this
+	 * is the first page.
+	 */
+	public OwnerCursor getPrevious() {
+		return this.previous;
+	}
+
+	/**
+	 * Cursor to pass as {@code after} to fetch the next page, or {@code null} if this is
+	 * the last page.
+	 */
+	public OwnerCursor getNext() {
+		return this.next;
+	}
+
+	/**
+	 * The page size that was applied, to request the neighbouring pages with.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.owners.isEmpty();
+	}
+
+}
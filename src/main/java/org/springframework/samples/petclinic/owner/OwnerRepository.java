@@ -16,8 +16,14 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
@@ -46,6 +52,96 @@ public interface OwnerRepository extends Repository<Owner, Integer> {
 	@Transactional(readOnly = true)
 	Collection<Owner> findByLastName(@Param("lastName") String lastName);
 
+	/**
+	 * Retrieve the positions of the first {@link Owner}s, ordered by last name and id,
+	 * whose last name <i>starts</i> with the given name. Only the positions are selected so
+	 * that the page limit applies to owners rather than to owner/pet rows.
+	 * @param lastName Value to search for
+	 * @param page the page size to apply (the page number is ignored)
+	 * @return the positions of the matching {@link Owner}s
+	 */
+	@Query("SELECT new org.springframework.samples.petclinic.owner.OwnerCursor(owner.lastName, owner.id) "
+			+ "FROM Owner owner WHERE owner.lastName LIKE :lastName% ORDER BY owner.lastName, owner.id")
+	@Transactional(readOnly = true)
+	List<OwnerCursor> findCursorsByLastName(@Param("lastName") String lastName, Pageable page);
+
+	/**
+	 * Retrieve the positions of the {@link Owner}s whose last name <i>starts</i> with the
+	 * given name and that sort after the given (last name, id) position, in ascending
+	 * order.
+	 * @param lastName Value to search for
+	 * @param afterLastName last name of the position to seek past
+	 * @param afterId id of the position to seek past
+	 * @param page the page size to apply (the page number is ignored)
+	 * @return the positions of the matching {@link Owner}s
+	 */
+	@Query("SELECT new org.springframework.samples.petclinic.owner.OwnerCursor(owner.lastName, owner.id) "
+			+ "FROM Owner owner WHERE owner.lastName LIKE :lastName% "
+			+ "AND (owner.lastName > :afterLastName OR (owner.lastName = :afterLastName AND owner.id > :afterId)) "
+			+ "ORDER BY owner.lastName, owner.id")
+	@Transactional(readOnly = true)
+	List<OwnerCursor> findCursorsByLastNameAfter(@Param("lastName") String lastName,
+			@Param("afterLastName") String afterLastName, @Param("afterId") Integer afterId, Pageable page);
+
+	/**
+	 * Retrieve the positions of the {@link Owner}s whose last name <i>starts</i> with the
+	 * given name and that sort before the given (last name, id) position, in
+	 * <i>descending</i> order so that the closest owners come first.
+	 * @param lastName Value to search for
+	 * @param beforeLastName last name of the position to seek back from
+	 * @param beforeId id of the position to seek back from
+	 * @param page the page size to apply (the page number is ignored)
+	 * @return the positions of the matching {@link Owner}s
+	 */
+	@Query("SELECT new org.springframework.samples.petclinic.owner.OwnerCursor(owner.lastName, owner.id) "
+			+ "FROM Owner owner WHERE owner.lastName LIKE :lastName% "
+			+ "AND (owner.lastName < :beforeLastName OR (owner.lastName = :beforeLastName AND owner.id < :beforeId)) "
+			+ "ORDER BY owner.lastName DESC, owner.id DESC")
+	@Transactional(readOnly = true)
+	List<OwnerCursor> findCursorsByLastNameBefore(@Param("lastName") String lastName,
+			@Param("beforeLastName") String beforeLastName, @Param("beforeId") Integer beforeId, Pageable page);
+
+	/**
+	 * Retrieve what the owner list shows of the {@link Owner}s with the given ids, as
+	 * scalar rows that are not tracked by the persistence context.
+	 * @param ids the ids to search for
+	 * @return one {@code [id, firstName, lastName, address, city, telephone, petName]} row
+	 * per pet (one with a {@code null} pet name for owners without pets), ordered by owner
+	 * id
+	 * @see OwnerSummary#fromRows(List)
+	 */
+	@Query("SELECT owner.id, owner.firstName, owner.lastName, owner.address, owner.city, owner.telephone, pet.name "
+			+ "FROM Owner owner LEFT JOIN owner.pets pet WHERE owner.id IN :ids ORDER BY owner.id")
+	@Transactional(readOnly = true)
+	List<Object[]> findSummaryRowsByIdIn(@Param("ids") Collection<Integer> ids);
+
+	/**
+	 * Retrieve the id and last name of every {@link Owner}, used to build the
+	 * {@link OwnerLastNameIndex}.
+	 * @return one {@code [id, lastName]} row per owner
+	 */
+	@Query("SELECT owner.id, owner.lastName FROM Owner owner")
+	@Transactional(readOnly = true)
+	List<Object[]> findAllIdsAndLastNames();
+
+	/**
+	 * Stream every {@link Owner} with each of its {@link Pet}s and each pet's
+	 * {@link org.springframework.samples.petclinic.visit.Visit Visit}s, one
+	 * {@code [owner, pet, visit]} row per visit, ordered by owner, pet and visit id. Owners
+	 * without pets and pets without visits come with {@code null}s.
+	 * <p>
+	 * Rows are read from a database cursor {@code 500} at a time and the entities are
+	 * read-only, so the caller can clear the persistence context as it goes to keep memory
+	 * flat. Must be called inside a (read-only) transaction that stays open while the stream
+	 * is consumed.
+	 * @return the rows, to be closed after use
+	 */
+	@Query("SELECT owner, pet, visit FROM Owner owner LEFT JOIN owner.pets pet LEFT JOIN FETCH pet.type "
+			+ "LEFT JOIN Visit visit ON visit.petId = pet.id ORDER BY owner.id, pet.id, visit.id")
+	@QueryHints({ @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+			@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true") })
+	Stream<Object[]> streamAllWithPetsAndVisits();
+
 	/**
 	 * Retrieve an {@link Owner} from the data store by id.
 	 * @param id the id to search for
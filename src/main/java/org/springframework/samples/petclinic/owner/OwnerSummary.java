@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.core.style.ToStringCreator;
+
+/**
+ * Read-only view of an {@link Owner} with just what the owner list shows: name, contact
+ * details and the names of the pets.
+ * <p>
+ * Built from scalar query rows rather than entities, so a long list costs neither the
+ * entity graph nor the snapshots the persistence context keeps for dirty checking.
+ *
+ * @see OwnerRepository#findSummaryRowsByIdIn
+ */
+public final class OwnerSummary {
+
+	private final Integer id;
+
+	private final String firstName;
+
+	private final String lastName;
+
+	private final String address;
+
+	private final String city;
+
+	private final String telephone;
+
+	private final List<String> petNames;
+
+	public OwnerSummary(Integer id, String firstName, String lastName, String address, String city,
+			String telephone, List<String> petNames) {
+		this.id = id;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.address = address;
+		this.city = city;
+		this.telephone = telephone;
+		this.petNames = Collections.unmodifiableList(new ArrayList<>(petNames));
+	}
+
+	/**
+	 * Fold {@code [id, firstName, lastName, address, city, telephone, petName]} rows,
+	 * grouped by owner, into one summary per owner. Owners without pets come with a
+	 * {@code null} pet name.
+	 * @param rows the query rows, with the rows of an owner next to each other
+	 * @return the summaries, in the order of the rows
+	 */
+	public static List<OwnerSummary> fromRows(List<Object[]> rows) {
+		List<OwnerSummary> summaries = new ArrayList<>();
+		List<String> petNames = new ArrayList<>();
+		Object[] owner = null;
+		for (Object[] row : rows) {
+			if (owner != null && !owner[0].equals(row[0])) {
+				summaries.add(summary(owner, petNames));
+				petNames.clear();
+			}
+			owner = row;
+			if (row[6] != null) {
+				petNames.add((String) row[6]);
+			}
+		}
+		if (owner != null) {
+			summaries.add(summary(owner, petNames));
+		}
+		return summaries;
+	}
+
+	private static OwnerSummary summary(Object[] row, List<String> petNames) {
+		// same order as Owner#getPets()
+		petNames.sort(String.CASE_INSENSITIVE_ORDER);
+		return new OwnerSummary((Integer) row[0], (String) row[1], (String) row[2], (String) row[3],
+				(String) row[4], (String) row[5], petNames);
+	}
+
+	public Integer getId() {
+		return this.id;
+	}
+
+	public String getFirstName() {
+		return this.firstName;
+	}
+
+	public String getLastName() {
+		return this.lastName;
+	}
+
+	public String getAddress() {
+		return this.address;
+	}
+
+	public String getCity() {
+		return this.city;
+	}
+
+	public String getTelephone() {
+		return this.telephone;
+	}
+
+	public List<String> getPetNames() {
+		return this.petNames;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof OwnerSummary)) {
+			return false;
+		}
+		OwnerSummary that = (OwnerSummary) other;
+		return Objects.equals(this.id, that.id) && Objects.equals(this.firstName, that.firstName)
+				&& Objects.equals(this.lastName, that.lastName) && Objects.equals(this.address, that.address)
+				&& Objects.equals(this.city, that.city) && Objects.equals(this.telephone, that.telephone)
+				&& this.petNames.equals(that.petNames);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.id, this.firstName, this.lastName, this.address, this.city, this.telephone,
+				this.petNames);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringCreator(this).append("id", this.id).append("lastName", this.lastName)
+				.append("firstName", this.firstName).append("petNames", this.petNames).toString();
+	}
+
+}
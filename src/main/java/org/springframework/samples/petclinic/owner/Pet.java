@@ -15,15 +15,14 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -32,10 +31,9 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
-import org.springframework.beans.support.MutableSortDefinition;
-import org.springframework.beans.support.PropertyComparator;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.samples.petclinic.model.NamedEntity;
+import org.springframework.samples.petclinic.utility.IdentityMap;
 import org.springframework.samples.petclinic.visit.Visit;
 
 /**
@@ -49,6 +47,12 @@ import org.springframework.samples.petclinic.visit.Visit;
 @Table(name = "pets")
 public class Pet extends NamedEntity {
 
+	/**
+	 * Most recent visits first.
+	 */
+	private static final Comparator<Visit> VISITS_BY_DATE = Comparator
+			.comparing(Visit::getDate, Comparator.nullsLast(Comparator.<LocalDate>naturalOrder())).reversed();
+
 	public Pet() {}
 
 	@Column(name = "birth_date")
@@ -63,8 +67,12 @@ public class Pet extends NamedEntity {
 	@JoinColumn(name = "owner_id")
 	private Owner owner;
 
+	/**
+	 * Written by {@link #writeObject} as a plain list, since the sorted map is not
+	 * serializable.
+	 */
 	@Transient
-	private Set<Visit> visits = new LinkedHashSet<>();
+	private transient IdentityMap<Visit> visits = newVisits();
 
 	public void setBirthDate(LocalDate birthDate) {
 		this.birthDate = birthDate;
@@ -90,47 +98,107 @@ public class Pet extends NamedEntity {
 		this.owner = owner;
 	}
 
-	private Set<Visit> getVisitsInternal() {
+	private IdentityMap<Visit> getVisitsInternal() {
 		if (this.visits == null) {
-			this.visits = new HashSet<>();
+			this.visits = newVisits();
 		}
 		return this.visits;
 	}
 
 	protected void setVisitsInternal(Collection<Visit> visits) {
-		this.visits = new LinkedHashSet<>(visits);
+		this.visits = newVisits();
+		this.visits.addAll(visits);
+	}
+
+	private static IdentityMap<Visit> newVisits() {
+		IdentityMap<Visit> visits = new IdentityMap<>();
+		visits.sort(VISITS_BY_DATE);
+		return visits;
 	}
 
+	/**
+	 * Return a copy of this pet's visits, most recent first, which can be iterated while
+	 * visits are added and removed.
+	 */
 	public List<Visit> getVisits() {
-		List<Visit> sortedVisits = new ArrayList<>(getVisitsInternal());
-		PropertyComparator.sort(sortedVisits, new MutableSortDefinition("date", false, false));
-		return Collections.unmodifiableList(sortedVisits);
+		return new ArrayList<>(getVisitsInternal().sorted());
 	}
 
+	/**
+	 * Return the visits after {@code start} and before {@code end} (both exclusive), most
+	 * recent first. The visits are looked up in the date-sorted view, so this takes
+	 * O(log n + k) for k matching visits.
+	 * @see org.springframework.samples.petclinic.visit.VisitRepository#findByPetIdBetween
+	 */
 	public List<Visit> getVisitsBetween(LocalDate start, LocalDate end) {
-		return getVisitsInternal().stream()
-			.filter(visit -> {
-				return visit.getDate().isAfter(start) &&
-					visit.getDate().isBefore(end);
-			})
-			.collect(Collectors.toList());
+		List<Visit> visits = getVisitsInternal().sorted();
+		int from = firstVisitBefore(visits, end);
+		int to = firstVisitBefore(visits, start.plusDays(1));
+		return new ArrayList<>(visits.subList(from, Math.max(from, to)));
 	}
 
+	/**
+	 * Return the visits from before this pet turned {@code age}, most recent first, in
+	 * O(log n + k) for k matching visits.
+	 * @see #getBirthday(int)
+	 * @see org.springframework.samples.petclinic.visit.VisitRepository#findByPetIdBefore
+	 */
 	public List<Visit> getVisitsUntilAge(int age) {
-		return getVisitsInternal().stream()
-			.filter(visit -> {
-				return getBirthDate().until(visit.getDate()).getYears() < age;
-			})
-			.collect(Collectors.toList());
+		List<Visit> visits = getVisitsInternal().sorted();
+		return new ArrayList<>(visits.subList(firstVisitBefore(visits, getBirthday(age)), visits.size()));
+	}
+
+	/**
+	 * Return the day on which this pet turns {@code age}. A pet born on 29 February turns a
+	 * year older on 1 March in common years, as {@link java.time.Period} counts it.
+	 */
+	public LocalDate getBirthday(int age) {
+		LocalDate birthday = getBirthDate().plusYears(age);
+		return (birthday.getDayOfMonth() < getBirthDate().getDayOfMonth()) ? birthday.plusDays(1) : birthday;
+	}
+
+	/**
+	 * Binary search visits sorted most recent first for the first one dated before the
+	 * given date. Visits without a date sort first and count as later than any date.
+	 */
+	private static int firstVisitBefore(List<Visit> visits, LocalDate date) {
+		int low = 0;
+		int high = visits.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			LocalDate visitDate = visits.get(middle).getDate();
+			if (visitDate != null && visitDate.isBefore(date)) {
+				high = middle;
+			}
+			else {
+				low = middle + 1;
+			}
+		}
+		return low;
 	}
 
 	public void removeVisit(Visit visit) {
 		getVisitsInternal().remove(visit);
 	}
 
+	/**
+	 * Add a visit to this pet. A visit whose date has changed since it was added has to
+	 * be added again to keep the visits sorted.
+	 */
 	public void addVisit(Visit visit) {
 		getVisitsInternal().add(visit);
 		visit.setPetId(this.getId());
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject(new ArrayList<>(getVisitsInternal()));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		setVisitsInternal((List<Visit>) in.readObject());
+	}
+
 }
@@ -36,21 +36,21 @@ class PetController {
 
 	private static final String VIEWS_PETS_CREATE_OR_UPDATE_FORM = "pets/createOrUpdatePetForm";
 
-	private final PetRepository pets;
+	private final PetTypeDictionary petTypes;
 
 	private final OwnerRepository owners;
 
 	private final PetService petService;
 
-	public PetController(PetRepository pets, OwnerRepository owners, PetService petService) {
-		this.pets = pets;
+	public PetController(PetTypeDictionary petTypes, OwnerRepository owners, PetService petService) {
+		this.petTypes = petTypes;
 		this.owners = owners;
 		this.petService = petService;
 	}
 
 	@ModelAttribute("types")
 	public Collection<PetType> populatePetTypes() {
-		return this.pets.findPetTypes();
+		return this.petTypes.findAll();
 	}
 
 	@ModelAttribute("owner")
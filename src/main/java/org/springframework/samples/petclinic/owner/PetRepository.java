@@ -35,7 +35,8 @@ import org.springframework.transaction.annotation.Transactional;
 public interface PetRepository extends Repository<Pet, Integer> {
 
 	/**
-	 * Retrieve all {@link PetType}s from the data store.
+	 * Retrieve all {@link PetType}s from the data store. This always runs the query; the
+	 * application reads the types through {@link PetTypeDictionary}, which caches them.
 	 * @return a Collection of {@link PetType}s.
 	 */
 	@Query("SELECT ptype FROM PetType ptype ORDER BY ptype.name")
@@ -1,7 +1,11 @@
 package org.springframework.samples.petclinic.owner;
 
 import org.slf4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.samples.petclinic.system.MethodCallEvent;
+import org.springframework.samples.petclinic.system.MethodTimer;
+import org.springframework.samples.petclinic.system.MethodTimers;
 import org.springframework.samples.petclinic.utility.PetTimedCache;
 import org.springframework.stereotype.Service;
 
@@ -14,37 +18,114 @@ public class PetService {
 
 	private final Logger log;
 
-	@Autowired
+	private final MethodTimer findOwnerTimer;
+
+	private final MethodTimer newPetTimer;
+
+	private final MethodTimer findPetTimer;
+
+	private final MethodTimer savePetTimer;
+
 	public PetService(
 		PetTimedCache pets,
 		OwnerRepository owners,
 		Logger criticalLogger) {
+		this(pets, owners, criticalLogger, MethodTimers.NONE);
+	}
+
+	@Autowired
+	public PetService(
+		PetTimedCache pets,
+		OwnerRepository owners,
+		Logger criticalLogger,
+		ObjectProvider<MethodTimers> timers) {
+		this(pets, owners, criticalLogger, timers.getIfAvailable(() -> MethodTimers.NONE));
+	}
+
+	public PetService(
+		PetTimedCache pets,
+		OwnerRepository owners,
+		Logger criticalLogger,
+		MethodTimers timers) {
 		this.pets = pets;
 		this.owners = owners;
 		this.log = criticalLogger;
+		this.findOwnerTimer = timers.timer(PetService.class, "findOwner");
+		this.newPetTimer = timers.timer(PetService.class, "newPet");
+		this.findPetTimer = timers.timer(PetService.class, "findPet");
+		this.savePetTimer = timers.timer(PetService.class, "savePet");
 	}
 
+	// the read paths run on every request, so they log at debug and are guarded to
+	// avoid boxing the id when debug is off
+
 	public Owner findOwner(int ownerId) {
-		log.info("find owner {}", ownerId);
-		return this.owners.findById(ownerId);
+		if (log.isDebugEnabled()) {
+			log.debug("find owner {}", ownerId);
+		}
+		MethodCallEvent event = this.findOwnerTimer.begin();
+		long start = this.findOwnerTimer.start();
+		Owner owner;
+		try {
+			owner = this.owners.findById(ownerId);
+		}
+		catch (RuntimeException | Error ex) {
+			this.findOwnerTimer.record(start, event, ex);
+			throw ex;
+		}
+		this.findOwnerTimer.record(start, event, null);
+		return owner;
 	}
 
 	public Pet newPet(Owner owner) {
-		log.info("add pet for owner {}", owner.getId());
+		if (log.isDebugEnabled()) {
+			log.debug("add pet for owner {}", owner.getId());
+		}
+		MethodCallEvent event = this.newPetTimer.begin();
+		long start = this.newPetTimer.start();
 		Pet pet = new Pet();
-		owner.addPet(pet);
+		try {
+			owner.addPet(pet);
+		}
+		catch (RuntimeException | Error ex) {
+			this.newPetTimer.record(start, event, ex);
+			throw ex;
+		}
+		this.newPetTimer.record(start, event, null);
 		return pet;
 	}
 
 	public Pet findPet(int petId) {
-		log.info("find pet by id {}", petId);
-		return this.pets.get(petId);
+		if (log.isDebugEnabled()) {
+			log.debug("find pet by id {}", petId);
+		}
+		MethodCallEvent event = this.findPetTimer.begin();
+		long start = this.findPetTimer.start();
+		Pet pet;
+		try {
+			pet = this.pets.get(petId);
+		}
+		catch (RuntimeException | Error ex) {
+			this.findPetTimer.record(start, event, ex);
+			throw ex;
+		}
+		this.findPetTimer.record(start, event, null);
+		return pet;
 	}
 
 	public void savePet(Pet pet, Owner owner) {
 		log.info("save pet {}", pet.getId());
-		owner.addPet(pet);
-		this.pets.save(pet);
+		MethodCallEvent event = this.savePetTimer.begin();
+		long start = this.savePetTimer.start();
+		try {
+			owner.addPet(pet);
+			this.pets.save(pet);
+		}
+		catch (RuntimeException | Error ex) {
+			this.savePetTimer.record(start, event, ex);
+			throw ex;
+		}
+		this.savePetTimer.record(start, event, null);
 	}
 
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Reference data lookup of {@link PetType}s by name, held in the {@value #CACHE_NAME}
+ * cache so that binding a pet form does not query the pet types every time.
+ * <p>
+ * The whole name-to-type map is cached as one entry and is evicted by
+ * {@link PetTypeRepository} whenever a pet type is written. It is the only cached copy of
+ * the list; {@link PetRepository#findPetTypes()} itself always queries.
+ */
+@Component
+public class PetTypeDictionary {
+
+	public static final String CACHE_NAME = "petTypes";
+
+	private static final String BY_NAME = "byName";
+
+	private final PetRepository pets;
+
+	private final Cache cache;
+
+	public PetTypeDictionary(PetRepository pets, CacheManager cacheManager) {
+		this.pets = pets;
+		this.cache = cacheManager.getCache(CACHE_NAME);
+		Assert.state(this.cache != null, "No cache named '" + CACHE_NAME + "' has been configured");
+	}
+
+	/**
+	 * Return the {@link PetType} with the given name.
+	 * @param name the exact name of the type
+	 * @return the type, or {@code null} if there is none
+	 */
+	public PetType findByName(String name) {
+		return byName().get(name);
+	}
+
+	/**
+	 * Return all {@link PetType}s ordered by name.
+	 */
+	public Collection<PetType> findAll() {
+		return byName().values();
+	}
+
+	private Map<String, PetType> byName() {
+		return this.cache.get(BY_NAME, this::load);
+	}
+
+	private Map<String, PetType> load() {
+		Map<String, PetType> byName = new LinkedHashMap<>();
+		for (PetType type : this.pets.findPetTypes()) {
+			byName.put(type.getName(), type);
+		}
+		return Collections.unmodifiableMap(byName);
+	}
+
+}
@@ -16,7 +16,6 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.text.ParseException;
-import java.util.Collection;
 import java.util.Locale;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,11 +35,11 @@ import org.springframework.stereotype.Component;
 @Component
 public class PetTypeFormatter implements Formatter<PetType> {
 
-	private final PetRepository pets;
+	private final PetTypeDictionary petTypes;
 
 	@Autowired
-	public PetTypeFormatter(PetRepository pets) {
-		this.pets = pets;
+	public PetTypeFormatter(PetTypeDictionary petTypes) {
+		this.petTypes = petTypes;
 	}
 
 	@Override
@@ -50,13 +49,11 @@ public class PetTypeFormatter implements Formatter<PetType> {
 
 	@Override
 	public PetType parse(String text, Locale locale) throws ParseException {
-		Collection<PetType> findPetTypes = this.pets.findPetTypes();
-		for (PetType type : findPetTypes) {
-			if (type.getName().equals(text)) {
-				return type;
-			}
+		PetType type = this.petTypes.findByName(text);
+		if (type == null) {
+			throw new ParseException("type not found: " + text, 0);
 		}
-		throw new ParseException("type not found: " + text, 0);
+		return type;
 	}
 
 }
@@ -1,9 +1,38 @@
 package org.springframework.samples.petclinic.owner;
 
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+/**
+ * Repository for writing {@link PetType}s. Every write evicts the
+ * {@link PetTypeDictionary} so that forms see the new types straight away.
+ */
 @Repository
 public interface PetTypeRepository extends CrudRepository<PetType, Integer> {
 
+	@Override
+	@CacheEvict(cacheNames = PetTypeDictionary.CACHE_NAME, allEntries = true)
+	<S extends PetType> S save(S entity);
+
+	@Override
+	@CacheEvict(cacheNames = PetTypeDictionary.CACHE_NAME, allEntries = true)
+	<S extends PetType> Iterable<S> saveAll(Iterable<S> entities);
+
+	@Override
+	@CacheEvict(cacheNames = PetTypeDictionary.CACHE_NAME, allEntries = true)
+	void deleteById(Integer id);
+
+	@Override
+	@CacheEvict(cacheNames = PetTypeDictionary.CACHE_NAME, allEntries = true)
+	void delete(PetType entity);
+
+	@Override
+	@CacheEvict(cacheNames = PetTypeDictionary.CACHE_NAME, allEntries = true)
+	void deleteAll(Iterable<? extends PetType> entities);
+
+	@Override
+	@CacheEvict(cacheNames = PetTypeDictionary.CACHE_NAME, allEntries = true)
+	void deleteAll();
+
 }
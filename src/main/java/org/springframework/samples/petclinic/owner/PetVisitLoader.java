@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Attaches {@link Visit}s to a group of {@link Pet}s with a single query instead of one
+ * query per pet.
+ */
+@Component
+public class PetVisitLoader {
+
+	private final VisitRepository visits;
+
+	public PetVisitLoader(VisitRepository visits) {
+		this.visits = visits;
+	}
+
+	/**
+	 * Load the visits of all given pets and set them on each pet. Pets without visits end
+	 * up with an empty visit list; new (unsaved) pets are left untouched.
+	 * @param pets the pets to load visits for
+	 */
+	public void loadVisits(Collection<Pet> pets) {
+		Map<Integer, List<Visit>> visitsByPetId = new HashMap<>();
+		for (Pet pet : pets) {
+			if (!pet.isNew()) {
+				visitsByPetId.put(pet.getId(), new ArrayList<>());
+			}
+		}
+		if (visitsByPetId.isEmpty()) {
+			return;
+		}
+		for (Visit visit : this.visits.findByPetIdIn(visitsByPetId.keySet())) {
+			visitsByPetId.get(visit.getPetId()).add(visit);
+		}
+		for (Pet pet : pets) {
+			List<Visit> petVisits = visitsByPetId.get(pet.getId());
+			if (petVisits != null) {
+				pet.setVisitsInternal(petVisits);
+			}
+		}
+	}
+
+}
@@ -57,7 +57,9 @@ class VisitController {
 	/**
 	 * Called before each and every @RequestMapping annotated method. 2 goals: - Make sure
 	 * we always have fresh data - Since we do not use the session scope, make sure that
-	 * Pet object always has an id (Even though id is not part of the form fields)
+	 * Pet object always has an id (Even though id is not part of the form fields). The
+	 * new visit is only added to the pet once it is valid, since binding changes its date
+	 * and the pet keeps its visits sorted by date.
 	 * @param petId
 	 * @return Pet
 	 */
@@ -67,7 +69,7 @@ class VisitController {
 		pet.setVisitsInternal(this.visits.findByPetId(petId));
 		model.put("pet", pet);
 		Visit visit = new Visit();
-		pet.addVisit(visit);
+		visit.setPetId(pet.getId());
 		return visit;
 	}
 
@@ -79,11 +81,12 @@ class VisitController {
 
 	// Spring MVC calls method loadPetWithVisit(...) before processNewVisitForm is called
 	@PostMapping("/owners/{ownerId}/pets/{petId}/visits/new")
-	public String processNewVisitForm(@Valid Visit visit, BindingResult result) {
+	public String processNewVisitForm(@Valid Visit visit, BindingResult result, Map<String, Object> model) {
 		if (result.hasErrors()) {
 			return "pets/createOrUpdateVisitForm";
 		}
 		else {
+			((Pet) model.get("pet")).addVisit(visit);
 			this.visits.save(visit);
 			return "redirect:/owners/{ownerId}";
 		}
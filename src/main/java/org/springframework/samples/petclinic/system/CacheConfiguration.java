@@ -16,40 +16,52 @@
 
 package org.springframework.samples.petclinic.system;
 
-import javax.cache.configuration.MutableConfiguration;
+import javax.cache.CacheManager;
 
-import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.owner.PetTypeDictionary;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
 
 /**
- * Cache configuration intended for caches providing the JCache API. This configuration
- * creates the used cache for the application and enables statistics that become
- * accessible via JMX.
+ * Cache configuration intended for caches providing the JCache API. The caches, with
+ * their size limits and expiry, are declared in the Ehcache configuration that
+ * {@code spring.cache.jcache.config} points at ({@code ehcache.xml} by default), which
+ * also enables the statistics that become accessible via JMX and as {@code cache.*}
+ * meters at {@code /actuator/metrics}.
+ * <p>
+ * The same cache manager backs the Hibernate second-level cache, whose regions hold the
+ * reference entities ({@link PetType}, {@link Specialty} and {@link Vet} with its
+ * specialties). Queries are not cached by Hibernate; the list of pet types is held by
+ * {@link PetTypeDictionary} instead.
  */
 @Configuration(proxyBeanMethods = false)
 @EnableCaching
 class CacheConfiguration {
 
+	/**
+	 * Hand the application's cache manager to Hibernate, so that the second-level cache
+	 * regions are the ones declared in the Ehcache configuration rather than defaults.
+	 */
 	@Bean
-	public JCacheManagerCustomizer petclinicCacheConfigurationCustomizer() {
-		return cm -> {
-			cm.createCache("vets", cacheConfiguration());
-		};
+	public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager cacheManager) {
+		return properties -> properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
 	}
 
 	/**
-	 * Create a simple configuration that enable statistics via the JCache programmatic
-	 * configuration API.
-	 * <p>
-	 * Within the configuration object that is provided by the JCache API standard, there
-	 * is only a very limited set of configuration options. The really relevant
-	 * configuration options (like the size limit) must be set via a configuration
-	 * mechanism that is provided by the selected JCache implementation.
+	 * Load the pet types into {@link PetTypeDictionary} and their region before the
+	 * application serves requests, so that showing an owner after a restart does not load
+	 * its pets' types one by one. The region does not expire, so they stay there.
 	 */
-	private javax.cache.configuration.Configuration<Object, Object> cacheConfiguration() {
-		return new MutableConfiguration<>().setStatisticsEnabled(true);
+	@Bean
+	public SmartInitializingSingleton petTypeRegionLoader(PetTypeDictionary petTypes) {
+		return petTypes::findAll;
 	}
 
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Sends read-only transactions to read replicas when
+ * {@code petclinic.datasource.replicas} lists their JDBC URLs. The primary is configured
+ * through the usual {@code spring.datasource} properties, and the replicas use the same
+ * credentials.
+ * <p>
+ * Each database gets its own Hikari pool, configured by the
+ * {@code spring.datasource.hikari} properties and named after the pool name set there,
+ * {@code petclinic} by default, with a {@code -replica-<n>} suffix for the replicas. A
+ * replica that is down is only noticed when a connection times out, so the replica pools
+ * wait {@code petclinic.datasource.replica-connection-timeout} for one, rather than the
+ * 30 seconds Hikari defaults to, before the reads go elsewhere.
+ *
+ * @see ReplicaRoutingDataSource
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "petclinic.datasource.replicas")
+class DataSourceRoutingConfiguration {
+
+	private static final String DEFAULT_POOL_NAME = "petclinic";
+
+	@Bean
+	public RoutingDataSourceProxy dataSource(DataSourceProperties properties, Environment environment,
+			@Value("${petclinic.datasource.replicas}") List<String> replicaUrls,
+			@Value("${petclinic.datasource.replica-retry-interval:30s}") Duration retryInterval,
+			@Value("${petclinic.datasource.replica-connection-timeout:1s}") Duration replicaConnectionTimeout) {
+		Binder binder = Binder.get(environment);
+		HikariDataSource primary = pool(properties, binder, properties.determineUrl());
+		String poolName = (primary.getPoolName() != null) ? primary.getPoolName() : DEFAULT_POOL_NAME;
+		primary.setPoolName(poolName);
+		List<HikariDataSource> pools = new ArrayList<>();
+		pools.add(primary);
+		List<DataSource> replicas = new ArrayList<>();
+		for (String url : replicaUrls) {
+			HikariDataSource replica = pool(properties, binder, url.trim());
+			replica.setPoolName(poolName + "-replica-" + replicas.size());
+			replica.setConnectionTimeout(replicaConnectionTimeout.toMillis());
+			pools.add(replica);
+			replicas.add(replica);
+		}
+		return new RoutingDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas, retryInterval), pools);
+	}
+
+	/**
+	 * Publish the {@code hikaricp} metrics of each pool, tagged with its name. Boot only
+	 * binds the pools it can unwrap from the data source, which the routing hides.
+	 */
+	@Bean
+	public MeterBinder routingDataSourcePoolMetrics(RoutingDataSourceProxy dataSource) {
+		return (registry) -> {
+			for (HikariDataSource pool : dataSource.getPools()) {
+				pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+			}
+		};
+	}
+
+	private static HikariDataSource pool(DataSourceProperties properties, Binder binder, String url) {
+		HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url)
+				.build();
+		binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+		return pool;
+	}
+
+	@Bean
+	public ReadYourWritesFilter readYourWritesFilter(
+			@Value("${petclinic.datasource.read-your-writes-window:5s}") Duration window) {
+		return new ReadYourWritesFilter(window);
+	}
+
+	/**
+	 * Defers fetching connections until the transaction's read-only flag is known, and
+	 * closes the routed data sources with the application context.
+	 */
+	static class RoutingDataSourceProxy extends LazyConnectionDataSourceProxy implements DisposableBean {
+
+		private final List<HikariDataSource> pools;
+
+		RoutingDataSourceProxy(ReplicaRoutingDataSource target, List<HikariDataSource> pools) {
+			super(target);
+			this.pools = pools;
+		}
+
+		/**
+		 * Return the pools of the primary and the replicas, in that order.
+		 */
+		List<HikariDataSource> getPools() {
+			return this.pools;
+		}
+
+		@Override
+		public void destroy() throws Exception {
+			((ReplicaRoutingDataSource) obtainTargetDataSource()).close();
+		}
+
+	}
+
+}
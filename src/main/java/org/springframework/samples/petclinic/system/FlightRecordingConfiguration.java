@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Serves Java Flight Recorder recordings at {@code /actuator/jfr}, bounded by
+ * {@code petclinic.jfr.max-duration} and {@code petclinic.jfr.max-size}.
+ */
+@Configuration(proxyBeanMethods = false)
+class FlightRecordingConfiguration {
+
+	@Bean
+	@ConditionalOnAvailableEndpoint(endpoint = FlightRecordingEndpoint.class)
+	public FlightRecordingEndpoint flightRecordingEndpoint(
+			@Value("${petclinic.jfr.max-duration:10m}") Duration maxDuration,
+			@Value("${petclinic.jfr.max-size:100MB}") DataSize maxSize) {
+		return new FlightRecordingEndpoint(maxDuration, maxSize);
+	}
+
+}
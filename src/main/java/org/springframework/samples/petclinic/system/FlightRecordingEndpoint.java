@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Starts and stops Java Flight Recorder recordings and serves them as {@code .jfr} files,
+ * so that a running instance can be profiled without a restart:
+ * <ul>
+ * <li>{@code POST /actuator/jfr} starts a recording, optionally with a
+ * {@code duration}, a {@code maxSize} and the {@code settings} to record with
+ * ({@code default} or {@code profile});</li>
+ * <li>{@code GET /actuator/jfr} lists the recordings;</li>
+ * <li>{@code GET /actuator/jfr/{id}} downloads what a recording holds so far;</li>
+ * <li>{@code POST /actuator/jfr/{id}} stops a recording early;</li>
+ * <li>{@code DELETE /actuator/jfr/{id}} discards a recording.</li>
+ * </ul>
+ * Recordings are bounded: every recording stops after at most the maximum duration and
+ * keeps at most the maximum size on disk, only one runs at a time, and only the last
+ * {@value #MAX_RECORDINGS} are kept.
+ */
+@WebEndpoint(id = "jfr")
+public class FlightRecordingEndpoint {
+
+	static final int MAX_RECORDINGS = 4;
+
+	private final Duration maxDuration;
+
+	private final DataSize maxSize;
+
+	private final Map<Long, Recording> recordings = new LinkedHashMap<>();
+
+	public FlightRecordingEndpoint(Duration maxDuration, DataSize maxSize) {
+		this.maxDuration = maxDuration;
+		this.maxSize = maxSize;
+	}
+
+	@WriteOperation
+	public synchronized WebEndpointResponse<Description> start(@Nullable Duration duration,
+			@Nullable DataSize maxSize, @Nullable String settings) {
+		for (Recording recording : this.recordings.values()) {
+			if (recording.getState() == RecordingState.RUNNING) {
+				return new WebEndpointResponse<>(WebEndpointResponse.STATUS_TOO_MANY_REQUESTS);
+			}
+		}
+		Configuration configuration;
+		try {
+			configuration = Configuration.getConfiguration(settings != null ? settings : "default");
+		}
+		catch (IOException | ParseException ex) {
+			return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+		}
+		Recording recording = new Recording(configuration);
+		recording.setName("petclinic-" + recording.getId());
+		recording.setToDisk(true);
+		recording.setDuration(
+				duration != null && duration.compareTo(this.maxDuration) < 0 ? duration : this.maxDuration);
+		recording.setMaxSize(Math.min(maxSize != null ? maxSize.toBytes() : Long.MAX_VALUE, this.maxSize.toBytes()));
+		recording.start();
+		this.recordings.put(recording.getId(), recording);
+		discardOldRecordings();
+		return new WebEndpointResponse<>(new Description(recording));
+	}
+
+	@ReadOperation
+	public synchronized List<Description> recordings() {
+		List<Description> descriptions = new ArrayList<>();
+		for (Recording recording : this.recordings.values()) {
+			descriptions.add(new Description(recording));
+		}
+		return descriptions;
+	}
+
+	@ReadOperation
+	public WebEndpointResponse<Resource> recording(@Selector long id) throws IOException {
+		Recording recording;
+		synchronized (this) {
+			recording = this.recordings.get(id);
+		}
+		if (recording == null) {
+			return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+		}
+		File file = File.createTempFile("petclinic-" + id + "-", ".jfr");
+		try {
+			recording.dump(file.toPath());
+		}
+		catch (IOException | RuntimeException ex) {
+			Files.deleteIfExists(file.toPath());
+			throw ex;
+		}
+		return new WebEndpointResponse<>(new TemporaryFileResource(file));
+	}
+
+	@WriteOperation
+	public synchronized WebEndpointResponse<Description> stop(@Selector long id) {
+		Recording recording = this.recordings.get(id);
+		if (recording == null) {
+			return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+		}
+		if (recording.getState() == RecordingState.RUNNING) {
+			recording.stop();
+		}
+		return new WebEndpointResponse<>(new Description(recording));
+	}
+
+	@DeleteOperation
+	public synchronized WebEndpointResponse<Void> discard(@Selector long id) {
+		Recording recording = this.recordings.remove(id);
+		if (recording == null) {
+			return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+		}
+		recording.close();
+		return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NO_CONTENT);
+	}
+
+	private void discardOldRecordings() {
+		while (this.recordings.size() > MAX_RECORDINGS) {
+			Long oldest = this.recordings.keySet().iterator().next();
+			this.recordings.remove(oldest).close();
+		}
+	}
+
+	/**
+	 * What the endpoint reports about a recording.
+	 */
+	public static final class Description {
+
+		private final long id;
+
+		private final String name;
+
+		private final String state;
+
+		private final Instant startTime;
+
+		private final Instant stopTime;
+
+		private final Duration duration;
+
+		private final long maxSize;
+
+		private final long size;
+
+		private Description(Recording recording) {
+			this.id = recording.getId();
+			this.name = recording.getName();
+			this.state = recording.getState().name();
+			this.startTime = recording.getStartTime();
+			this.stopTime = recording.getStopTime();
+			this.duration = recording.getDuration();
+			this.maxSize = recording.getMaxSize();
+			this.size = recording.getSize();
+		}
+
+		public long getId() {
+			return this.id;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public String getState() {
+			return this.state;
+		}
+
+		public Instant getStartTime() {
+			return this.startTime;
+		}
+
+		/**
+		 * Return when the recording stopped, or when it is due to stop while it runs.
+		 */
+		public Instant getStopTime() {
+			return this.stopTime;
+		}
+
+		public Duration getDuration() {
+			return this.duration;
+		}
+
+		public long getMaxSize() {
+			return this.maxSize;
+		}
+
+		public long getSize() {
+			return this.size;
+		}
+
+	}
+
+	/**
+	 * A dump of a recording, deleted once it has been read.
+	 */
+	private static final class TemporaryFileResource extends FileSystemResource {
+
+		private TemporaryFileResource(File file) {
+			super(file);
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			File file = getFile();
+			return new FilterInputStream(new FileInputStream(file)) {
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					}
+					finally {
+						Files.deleteIfExists(file.toPath());
+					}
+				}
+
+			};
+		}
+
+		@Override
+		public boolean isFile() {
+			// so that the file is streamed rather than handed to the server as a file
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.samples.petclinic.system;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.EventType;
+
+/**
+ * Times the calls of one method in {@link Timer}s named {@value #METRIC_NAME} and tagged
+ * with the class, the method and the exception thrown, if any; the histogram and latency
+ * objectives come from the {@code management.metrics.distribution} properties of the
+ * name. While a flight recording is running, each call is also recorded as a
+ * {@link MethodCallEvent}, whether or not it is timed.
+ * <p>
+ * The timer of a successful call is registered up front, by the {@link MethodTimers} that
+ * created the {@code MethodTimer}, and the timer of each exception the first time it is
+ * thrown. Call sites keep their {@code MethodTimer}s in fields and bracket the call:
+ *
+ * <pre class="code">
+ * MethodCallEvent event = this.findPetTimer.begin();
+ * long start = this.findPetTimer.start();
+ * try {
+ *     pet = this.pets.get(petId);
+ * }
+ * catch (RuntimeException | Error ex) {
+ *     this.findPetTimer.record(start, event, ex);
+ *     throw ex;
+ * }
+ * this.findPetTimer.record(start, event, null);
+ * </pre>
+ *
+ * so a call reads the clock twice and records into a timer built from atomic counters
+ * and arrays: it takes no lock and builds no tags. The one object the timer creates for
+ * each call, a lambda that updates its maximum, is removed by the compiler once the call
+ * site is compiled with the timer inlined, so a call allocates nothing.
+ *
+ * @see MethodTimers
+ */
+public final class MethodTimer {
+
+	static final String METRIC_NAME = "method.timed";
+
+	private static final EventType CALL_EVENT = EventType.getEventType(MethodCallEvent.class);
+
+	private final String type;
+
+	private final String method;
+
+	private final Map<Class<?>, Timer> failureTimers = new ConcurrentHashMap<>();
+
+	private MeterRegistry registry;
+
+	/** Timer of the calls that return, {@code null} until registered. */
+	private volatile Timer timer;
+
+	MethodTimer(String type, String method) {
+		this.type = type;
+		this.method = method;
+	}
+
+	/**
+	 * Register the timers in the given registry; until then, calls are only recorded as
+	 * flight recorder events.
+	 */
+	void register(MeterRegistry registry) {
+		this.registry = registry;
+		this.timer = timer("none");
+	}
+
+	/**
+	 * Begin the flight recorder event of a call.
+	 * @return the event, or {@code null} if no recording is taking it
+	 */
+	public MethodCallEvent begin() {
+		// the event outlives the call site's frame, so unlike the short-lived events it is
+		// not optimized away when disabled and is only created while it is enabled
+		if (!CALL_EVENT.isEnabled()) {
+			return null;
+		}
+		MethodCallEvent event = new MethodCallEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Return the start time of a call, in the units of {@link System#nanoTime()}.
+	 */
+	public long start() {
+		return (this.timer != null) ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Record a call that started at the given time.
+	 * @param start what {@link #start()} returned
+	 * @param event what {@link #begin()} returned
+	 * @param failure the exception the call threw, {@code null} if it returned
+	 */
+	public void record(long start, MethodCallEvent event, Throwable failure) {
+		// kept small, so that it is inlined into the call sites along with the timer
+		Timer timer = this.timer;
+		// a call that started before the timer was registered is not timed
+		if (timer != null && start != 0) {
+			if (failure != null) {
+				timer = failureTimer(failure.getClass());
+			}
+			timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+		if (event != null) {
+			commit(event, failure);
+		}
+	}
+
+	private void commit(MethodCallEvent event, Throwable failure) {
+		if (event.shouldCommit()) {
+			event.type = this.type;
+			event.method = this.method;
+			event.exception = failure != null ? failure.getClass().getSimpleName() : "none";
+			event.commit();
+		}
+	}
+
+	private Timer failureTimer(Class<?> exceptionType) {
+		Timer timer = this.failureTimers.get(exceptionType);
+		if (timer == null) {
+			timer = this.failureTimers.computeIfAbsent(exceptionType, (key) -> timer(key.getSimpleName()));
+		}
+		return timer;
+	}
+
+	private Timer timer(String exception) {
+		return Timer.builder(METRIC_NAME).tags("class", this.type, "method", this.method, "exception", exception)
+				.register(this.registry);
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.samples.petclinic.system;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+/**
+ * Creates the {@link MethodTimer}s of the beans that time their own methods, such as the
+ * {@code PetService}, and registers their timers.
+ * <p>
+ * In the application, the registry binds the metrics of beans that are themselves
+ * timed, such as the pet cache, so the timers created while the beans are being built
+ * are registered once all of them are, and later ones right away.
+ */
+public class MethodTimers implements SmartInitializingSingleton {
+
+	/**
+	 * Creates timers that only record flight recorder events.
+	 */
+	public static final MethodTimers NONE = new MethodTimers((MeterRegistry) null);
+
+	private final Supplier<MeterRegistry> registrySupplier;
+
+	private MeterRegistry registry;
+
+	/** Timers waiting for the registry, {@code null} once it is known. */
+	private List<MethodTimer> pending;
+
+	/**
+	 * Create timers registered in the given registry.
+	 * @param registry the registry, {@code null} to only record flight recorder events
+	 */
+	public MethodTimers(MeterRegistry registry) {
+		this.registrySupplier = () -> registry;
+		this.registry = registry;
+	}
+
+	/**
+	 * Create timers registered in the supplied registry once the singletons have been
+	 * instantiated.
+	 * @param registry supplies the registry, or {@code null} to only record flight
+	 * recorder events
+	 */
+	MethodTimers(Supplier<MeterRegistry> registry) {
+		this.registrySupplier = registry;
+		this.pending = new ArrayList<>();
+	}
+
+	public MethodTimer timer(Class<?> type, String method) {
+		return timer(type.getSimpleName(), method);
+	}
+
+	synchronized MethodTimer timer(String type, String method) {
+		MethodTimer timer = new MethodTimer(type, method);
+		if (this.pending != null) {
+			this.pending.add(timer);
+		}
+		else if (this.registry != null) {
+			timer.register(this.registry);
+		}
+		return timer;
+	}
+
+	@Override
+	public synchronized void afterSingletonsInstantiated() {
+		if (this.pending == null) {
+			return;
+		}
+		this.registry = this.registrySupplier.get();
+		if (this.registry != null) {
+			for (MethodTimer timer : this.pending) {
+				timer.register(this.registry);
+			}
+		}
+		this.pending = null;
+	}
+
+}
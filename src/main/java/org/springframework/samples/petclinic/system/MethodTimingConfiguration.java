@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.samples.petclinic.system;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.FlightRecorder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Times the services, the pet cache and the repositories as {@code method.timed} unless
+ * {@code petclinic.metrics.methods.enabled=false}, and records their calls as flight
+ * recorder events either way. See {@link MethodTimer} and
+ * {@link MethodTimingPostProcessor}.
+ */
+@Configuration(proxyBeanMethods = false)
+class MethodTimingConfiguration {
+
+	private static final String ENABLED_PROPERTY = "petclinic.metrics.methods.enabled";
+
+	@Bean
+	public MethodTimers methodTimers(@Value("${" + ENABLED_PROPERTY + ":true}") boolean enabled,
+			ObjectProvider<MeterRegistry> registry) {
+		return enabled ? new MethodTimers(registry::getIfAvailable) : MethodTimers.NONE;
+	}
+
+	@Bean
+	public static MethodTimingPostProcessor methodTimingPostProcessor(Environment environment,
+			ObjectProvider<MethodTimers> timers) {
+		// the repository calls are recorded as flight recorder events even when they are
+		// not timed, so the interceptor is only left out when neither is possible
+		boolean timed = environment.getProperty(ENABLED_PROPERTY, Boolean.class, true);
+		return new MethodTimingPostProcessor(timers::getObject, timed || FlightRecorder.isAvailable());
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.samples.petclinic.system;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Records the calls to the methods of one repository with a {@link MethodTimer} per
+ * method, tagged with the repository's interface. The timer of each method is created
+ * on its first call and then kept.
+ */
+class MethodTimingInterceptor implements MethodInterceptor {
+
+	private final Supplier<MethodTimers> timers;
+
+	private final String type;
+
+	private final Map<Method, MethodTimer> methodTimers = new ConcurrentHashMap<>();
+
+	MethodTimingInterceptor(Supplier<MethodTimers> timers, String type) {
+		this.timers = timers;
+		this.type = type;
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		Method method = invocation.getMethod();
+		MethodTimer timer = this.methodTimers.get(method);
+		if (timer == null) {
+			timer = this.methodTimers.computeIfAbsent(method,
+					(key) -> this.timers.get().timer(this.type, key.getName()));
+		}
+		MethodCallEvent event = timer.begin();
+		long start = timer.start();
+		Object result;
+		try {
+			result = invocation.proceed();
+		}
+		catch (Throwable ex) {
+			timer.record(start, event, ex);
+			throw ex;
+		}
+		timer.record(start, event, null);
+		return result;
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.samples.petclinic.system;
+
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+
+/**
+ * Times the calls to the Spring Data repositories with a {@link MethodTimingInterceptor},
+ * which also records them as flight recorder events when they are not timed.
+ * <p>
+ * Repositories are proxies already, so the interceptor goes in front of their other
+ * advice, which makes the time include the transaction, and no proxy of its own is
+ * created. Services and other beans time their own methods with {@link MethodTimer}s,
+ * and controllers are timed as {@code http.server.requests}.
+ */
+class MethodTimingPostProcessor implements BeanPostProcessor {
+
+	private static final Pointcut REPOSITORY_METHODS = new StaticMethodMatcherPointcut() {
+
+		@Override
+		public boolean matches(Method method, Class<?> targetClass) {
+			return method.getDeclaringClass() != Object.class;
+		}
+
+	};
+
+	private final Supplier<MethodTimers> timers;
+
+	private final boolean enabled;
+
+	/**
+	 * @param timers supplies the timers the first time a method is called, so that
+	 * looking them up does not initialize the registry before the beans it binds
+	 */
+	MethodTimingPostProcessor(Supplier<MethodTimers> timers) {
+		this(timers, true);
+	}
+
+	/**
+	 * @param timers supplies the timers the first time a method is called
+	 * @param enabled whether to add the interceptor, {@code false} when the calls are
+	 * neither timed nor recorded
+	 */
+	MethodTimingPostProcessor(Supplier<MethodTimers> timers, boolean enabled) {
+		this.timers = timers;
+		this.enabled = enabled;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (!this.enabled || !(bean instanceof Advised) || ((Advised) bean).isFrozen()) {
+			return bean;
+		}
+		Advised advised = (Advised) bean;
+		Class<?> repositoryInterface = repositoryInterface(advised);
+		if (repositoryInterface != null) {
+			advised.addAdvisor(0, new DefaultPointcutAdvisor(REPOSITORY_METHODS,
+					new MethodTimingInterceptor(this.timers, repositoryInterface.getSimpleName())));
+		}
+		return bean;
+	}
+
+	/**
+	 * Return the application's repository interface that the proxy implements, such as
+	 * {@code OwnerRepository} rather than Spring Data's {@code Repository}.
+	 */
+	private static Class<?> repositoryInterface(Advised advised) {
+		for (Class<?> candidate : advised.getProxiedInterfaces()) {
+			if (Repository.class.isAssignableFrom(candidate)
+					&& !candidate.getName().startsWith("org.springframework.data.")) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+}
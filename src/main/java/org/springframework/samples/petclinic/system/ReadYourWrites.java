@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+/**
+ * Tracks whether the current unit of work, usually a web request, has written to the
+ * primary database. Once it has, {@link ReplicaRoutingDataSource} sends its read-only
+ * transactions to the primary as well, so that it reads its own writes instead of a
+ * replica that may not have caught up yet.
+ * <p>
+ * Outside of a scope opened with {@link #begin} writes are not tracked and read-only
+ * transactions always go to a replica.
+ */
+public final class ReadYourWrites {
+
+	private static final ThreadLocal<ReadYourWrites> current = new ThreadLocal<>();
+
+	private final Runnable onFirstWrite;
+
+	private boolean pinned;
+
+	private boolean written;
+
+	private ReadYourWrites(boolean pinned, Runnable onFirstWrite) {
+		this.pinned = pinned;
+		this.onFirstWrite = onFirstWrite;
+	}
+
+	/**
+	 * Open a scope on the current thread, to be closed with {@link #end()}.
+	 * @param pinned whether reads should go to the primary from the start, for example
+	 * because an earlier request of the same client has just written
+	 * @param onFirstWrite called when the scope first writes (may be {@code null})
+	 * @return the scope
+	 */
+	public static ReadYourWrites begin(boolean pinned, Runnable onFirstWrite) {
+		ReadYourWrites scope = new ReadYourWrites(pinned, onFirstWrite);
+		current.set(scope);
+		return scope;
+	}
+
+	public void end() {
+		current.remove();
+	}
+
+	/**
+	 * Whether the current thread has to read from the primary.
+	 */
+	static boolean isPinned() {
+		ReadYourWrites scope = current.get();
+		return scope != null && scope.pinned;
+	}
+
+	/**
+	 * Record that the current thread is writing to the primary.
+	 */
+	static void written() {
+		ReadYourWrites scope = current.get();
+		if (scope != null && !scope.written) {
+			scope.written = true;
+			scope.pinned = true;
+			if (scope.onFirstWrite != null) {
+				scope.onFirstWrite.run();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Opens a {@link ReadYourWrites} scope for each request. A request that writes also sets
+ * a short-lived cookie, so that the client's next requests, such as the page it is
+ * redirected to after submitting a form, keep reading from the primary until the
+ * replicas have caught up.
+ */
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	static final String COOKIE_NAME = "petclinic-read-primary";
+
+	private final Duration window;
+
+	ReadYourWritesFilter(Duration window) {
+		this.window = window;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		ReadYourWrites scope = ReadYourWrites.begin(wroteRecently(request), () -> rememberWrite(response));
+		try {
+			chain.doFilter(request, response);
+		}
+		finally {
+			scope.end();
+		}
+	}
+
+	private boolean wroteRecently(HttpServletRequest request) {
+		Cookie[] cookies = request.getCookies();
+		if (cookies == null) {
+			return false;
+		}
+		for (Cookie cookie : cookies) {
+			if (COOKIE_NAME.equals(cookie.getName())) {
+				try {
+					return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+				}
+				catch (NumberFormatException ex) {
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void rememberWrite(HttpServletResponse response) {
+		if (response.isCommitted()) {
+			return;
+		}
+		// the value is when to stop, the max age only rounds it up to whole seconds
+		Cookie cookie = new Cookie(COOKIE_NAME, String.valueOf(System.currentTimeMillis() + this.window.toMillis()));
+		cookie.setMaxAge((int) Math.max(1, (this.window.toMillis() + 999) / 1000));
+		cookie.setPath("/");
+		cookie.setHttpOnly(true);
+		response.addCookie(cookie);
+	}
+
+}
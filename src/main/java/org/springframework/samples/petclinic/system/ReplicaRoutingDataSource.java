@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * {@link DataSource} that hands out connections to a replica inside read-only transactions
+ * and to the primary otherwise.
+ * <p>
+ * Replicas are used in turn. A replica that fails to give out a connection is skipped for
+ * the retry interval, and if no replica is available the primary serves the reads. Once
+ * the current {@link ReadYourWrites} scope has written, its reads go to the primary too.
+ * <p>
+ * The read-only flag of a transaction is only known after its connection has been
+ * requested, so this data source has to be wrapped in a
+ * {@link LazyConnectionDataSourceProxy}, which defers fetching the connection until the
+ * first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+	private final DataSource primary;
+
+	private final List<Replica> replicas = new ArrayList<>();
+
+	private final long retryIntervalMillis;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration retryInterval) {
+		this.primary = primary;
+		for (DataSource replica : replicas) {
+			this.replicas.add(new Replica(this.replicas.size(), replica));
+		}
+		this.retryIntervalMillis = retryInterval.toMillis();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return getConnection(null, null);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReadYourWrites.isPinned()) {
+			Connection connection = getReplicaConnection(username, password);
+			if (connection != null) {
+				return connection;
+			}
+		}
+		else if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			ReadYourWrites.written();
+		}
+		return connect(this.primary, username, password);
+	}
+
+	/**
+	 * Return a connection to the next available replica, or {@code null} if none is.
+	 */
+	private Connection getReplicaConnection(String username, String password) {
+		int size = this.replicas.size();
+		if (size == 0) {
+			return null;
+		}
+		int start = Math.floorMod(this.next.getAndIncrement(), size);
+		for (int i = 0; i < size; i++) {
+			Replica replica = this.replicas.get((start + i) % size);
+			long now = System.currentTimeMillis();
+			if (replica.unavailableUntil > now) {
+				continue;
+			}
+			try {
+				return connect(replica.dataSource, username, password);
+			}
+			catch (SQLException ex) {
+				replica.unavailableUntil = now + this.retryIntervalMillis;
+				log.warn("Replica {} is unavailable, skipping it for {} ms: {}", replica.index,
+						this.retryIntervalMillis, ex.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Number of replicas that are not currently skipped after a failure.
+	 */
+	public int getAvailableReplicas() {
+		long now = System.currentTimeMillis();
+		return (int) this.replicas.stream().filter(replica -> replica.unavailableUntil <= now).count();
+	}
+
+	private static Connection connect(DataSource dataSource, String username, String password)
+			throws SQLException {
+		return (username != null) ? dataSource.getConnection(username, password) : dataSource.getConnection();
+	}
+
+	/**
+	 * Close the primary and replica data sources, if they can be closed.
+	 */
+	@Override
+	public void close() throws Exception {
+		close(this.primary);
+		for (Replica replica : this.replicas) {
+			close(replica.dataSource);
+		}
+	}
+
+	private static void close(DataSource dataSource) throws Exception {
+		if (dataSource instanceof AutoCloseable) {
+			((AutoCloseable) dataSource).close();
+		}
+	}
+
+	private static final class Replica {
+
+		private final int index;
+
+		private final DataSource dataSource;
+
+		private volatile long unavailableUntil;
+
+		Replica(int index, DataSource dataSource) {
+			this.index = index;
+			this.dataSource = dataSource;
+		}
+
+	}
+
+}
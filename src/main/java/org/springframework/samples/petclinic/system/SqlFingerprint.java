@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes SQL so that statements differing only in literal values, comments,
+ * whitespace, case or the length of {@code IN} lists share one fingerprint. For example
+ * {@code SELECT * FROM owners WHERE id IN (1, 2, 3)} and
+ * {@code select * from owners where id in (?,?)} both become
+ * {@code select * from owners where id in (?)}.
+ */
+final class SqlFingerprint {
+
+	/** A parenthesized list of placeholders, as produced by IN lists and VALUES rows. */
+	private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\?(?: ?, ?\\?)+\\)");
+
+	/** Repeated rows of a multi-row insert, once each row has been reduced to (?). */
+	private static final Pattern REPEATED_ROWS = Pattern.compile("\\(\\?\\)(?: ?, ?\\(\\?\\))+");
+
+	private SqlFingerprint() {
+	}
+
+	static String of(String sql) {
+		StringBuilder out = new StringBuilder(sql.length());
+		int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				i = skipQuoted(sql, i, '\'');
+				out.append('?');
+			}
+			else if (c == '"' || c == '`') {
+				int end = skipQuoted(sql, i, c);
+				out.append(sql, i, end);
+				i = end;
+			}
+			else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				while (i < length && sql.charAt(i) != '\n') {
+					i++;
+				}
+			}
+			else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = (end < 0) ? length : end + 2;
+			}
+			else if (Character.isWhitespace(c)) {
+				if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+					out.append(' ');
+				}
+				i++;
+			}
+			else if (Character.isDigit(c)) {
+				while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+					i++;
+				}
+				out.append('?');
+			}
+			else if (Character.isLetter(c) || c == '_' || c == '$') {
+				// identifiers and keywords, including digits inside them such as owner0_
+				int start = i;
+				while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+						|| sql.charAt(i) == '$')) {
+					i++;
+				}
+				out.append(sql.substring(start, i).toLowerCase(Locale.ROOT));
+			}
+			else {
+				out.append(c);
+				i++;
+			}
+		}
+		int end = out.length();
+		while (end > 0 && (out.charAt(end - 1) == ' ' || out.charAt(end - 1) == ';')) {
+			end--;
+		}
+		out.setLength(end);
+		String fingerprint = out.toString();
+		if (fingerprint.indexOf("(?") >= 0) {
+			fingerprint = PLACEHOLDER_LIST.matcher(fingerprint).replaceAll("(?)");
+			fingerprint = REPEATED_ROWS.matcher(fingerprint).replaceAll("(?)");
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Return the index just after the quoted section starting at {@code start}, where a
+	 * doubled quote character stands for the character itself.
+	 */
+	private static int skipQuoted(String sql, int start, char quote) {
+		int i = start + 1;
+		while (i < sql.length()) {
+			if (sql.charAt(i) == quote) {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return sql.length();
+	}
+
+}
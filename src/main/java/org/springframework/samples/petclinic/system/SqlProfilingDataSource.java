@@ -0,0 +1,249 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * {@link DataSource} that times every statement executed through its connections and
+ * records it in {@link SqlStatistics}, together with the number of rows it returned (as
+ * they are read) or changed.
+ */
+public class SqlProfilingDataSource extends DelegatingDataSource {
+
+	private final SqlStatistics statistics;
+
+	public SqlProfilingDataSource(DataSource target, SqlStatistics statistics) {
+		super(target);
+		this.statistics = statistics;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection()));
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return proxy(Connection.class,
+				new ConnectionHandler(obtainTargetDataSource().getConnection(username, password)));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(SqlProfilingDataSource.class.getClassLoader(), new Class<?>[] { type },
+				handler);
+	}
+
+	/**
+	 * Passes calls on to the target JDBC object, keeping equality to the proxy itself.
+	 */
+	private abstract static class Handler<T> implements InvocationHandler {
+
+		protected final T target;
+
+		Handler(T target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				return handle(method, args);
+			}
+		}
+
+		protected abstract Object handle(Method method, Object[] args) throws Throwable;
+
+		protected Object invokeTarget(Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(this.target, args);
+			}
+			catch (InvocationTargetException ex) {
+				throw ex.getTargetException();
+			}
+		}
+
+	}
+
+	private final class ConnectionHandler extends Handler<Connection> {
+
+		ConnectionHandler(Connection target) {
+			super(target);
+		}
+
+		@Override
+		protected Object handle(Method method, Object[] args) throws Throwable {
+			Object result = invokeTarget(method, args);
+			switch (method.getName()) {
+			case "prepareStatement":
+				return proxy(PreparedStatement.class, new StatementHandler((Statement) result,
+						SqlProfilingDataSource.this.statistics.entry((String) args[0])));
+			case "prepareCall":
+				return proxy(CallableStatement.class, new StatementHandler((Statement) result,
+						SqlProfilingDataSource.this.statistics.entry((String) args[0])));
+			case "createStatement":
+				return proxy(Statement.class, new StatementHandler((Statement) result, null));
+			default:
+				return result;
+			}
+		}
+
+	}
+
+	private final class StatementHandler extends Handler<Statement> {
+
+		/** Entry of the prepared SQL, {@code null} for plain statements. */
+		private final SqlStatistics.Entry prepared;
+
+		/** Entry of the last execution, which a result set fetched later belongs to. */
+		private SqlStatistics.Entry executed;
+
+		private final List<Object> parameters = new ArrayList<>();
+
+		StatementHandler(Statement target, SqlStatistics.Entry prepared) {
+			super(target);
+			this.prepared = prepared;
+		}
+
+		@Override
+		protected Object handle(Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.startsWith("execute")) {
+				return execute(method, args);
+			}
+			if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+				bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+			}
+			else if (name.equals("clearParameters")) {
+				this.parameters.clear();
+			}
+			else if (name.equals("addBatch") && args != null && args.length == 1) {
+				this.executed = SqlProfilingDataSource.this.statistics.entry((String) args[0]);
+			}
+			Object result = invokeTarget(method, args);
+			if (name.equals("getResultSet") && result != null && this.executed != null) {
+				return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, this.executed));
+			}
+			return result;
+		}
+
+		private Object execute(Method method, Object[] args) throws Throwable {
+			SqlStatistics.Entry entry = this.prepared;
+			if (args != null && args.length > 0 && args[0] instanceof String) {
+				entry = SqlProfilingDataSource.this.statistics.entry((String) args[0]);
+			}
+			else if (entry == null) {
+				// a batch of plain statements, counted as the last statement added
+				entry = this.executed;
+			}
+			long start = System.nanoTime();
+			Object result = invokeTarget(method, args);
+			long nanos = System.nanoTime() - start;
+			if (entry == null) {
+				return result;
+			}
+			this.executed = entry;
+			SqlProfilingDataSource.this.statistics.record(entry, nanos, this::describeParameters);
+			if (result instanceof ResultSet) {
+				return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, entry));
+			}
+			if (result instanceof Number) {
+				entry.rows.add(Math.max(0, ((Number) result).longValue()));
+			}
+			else if (result instanceof int[]) {
+				for (int count : (int[]) result) {
+					entry.rows.add(Math.max(0, count));
+				}
+			}
+			else if (result instanceof long[]) {
+				for (long count : (long[]) result) {
+					entry.rows.add(Math.max(0, count));
+				}
+			}
+			return result;
+		}
+
+		private void bind(int index, Object value) {
+			while (this.parameters.size() < index) {
+				this.parameters.add(null);
+			}
+			this.parameters.set(index - 1, value);
+		}
+
+		/**
+		 * Describe the bind parameters by type, and strings by length, without their values.
+		 */
+		private String describeParameters() {
+			List<String> shapes = new ArrayList<>(this.parameters.size());
+			for (Object value : this.parameters) {
+				if (value == null) {
+					shapes.add("null");
+				}
+				else if (value instanceof CharSequence) {
+					shapes.add(value.getClass().getSimpleName() + "(" + ((CharSequence) value).length() + ")");
+				}
+				else {
+					shapes.add(value.getClass().getSimpleName());
+				}
+			}
+			return shapes.toString();
+		}
+
+	}
+
+	private static final class ResultSetHandler extends Handler<ResultSet> {
+
+		private final SqlStatistics.Entry entry;
+
+		ResultSetHandler(ResultSet target, SqlStatistics.Entry entry) {
+			super(target);
+			this.entry = entry;
+		}
+
+		@Override
+		protected Object handle(Method method, Object[] args) throws Throwable {
+			Object result = invokeTarget(method, args);
+			if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+				this.entry.rows.increment();
+			}
+			return result;
+		}
+
+	}
+
+}
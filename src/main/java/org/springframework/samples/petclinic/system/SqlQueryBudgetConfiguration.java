@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+
+/**
+ * Holds every request to its {@link SqlQueryBudget}, unless
+ * {@code petclinic.sql.query-budget.enabled=false}. Statements are counted as Hibernate
+ * prepares them, by the {@link SqlQueryCountingInspector}.
+ *
+ * @see SqlQueryBudgetInterceptor
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "petclinic.sql.query-budget.enabled", havingValue = "true", matchIfMissing = true)
+class SqlQueryBudgetConfiguration {
+
+	@Bean
+	public MappedInterceptor sqlQueryBudgetInterceptor(MeterRegistry registry,
+			@Value("${petclinic.sql.query-budget.default:10}") int defaultBudget) {
+		return new MappedInterceptor(null, new SqlQueryBudgetInterceptor(registry, defaultBudget));
+	}
+
+	@Bean
+	public HibernatePropertiesCustomizer sqlQueryCountingCustomizer() {
+		return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlQueryCountingInspector());
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Counts the SQL statements of each request to a handler method with a
+ * {@link SqlQueryCounter}, from the handler's model attributes to the rendered view, and
+ * records them per handler in a {@link DistributionSummary} named {@value #METRIC_NAME}.
+ * A request that executes more statements than the handler's {@link SqlQueryBudget} is
+ * logged, with the handler and the count, and counted in {@value #OVER_BUDGET_METRIC_NAME},
+ * so that a new N+1 loop shows up as soon as it runs rather than once the tables have
+ * grown.
+ * <p>
+ * The count and the budget are also left in the request attributes
+ * {@link #COUNT_ATTRIBUTE} and {@link #BUDGET_ATTRIBUTE} for tests to check.
+ */
+class SqlQueryBudgetInterceptor implements HandlerInterceptor {
+
+	static final String METRIC_NAME = "sql.queries";
+
+	static final String OVER_BUDGET_METRIC_NAME = "sql.queries.over.budget";
+
+	static final String COUNT_ATTRIBUTE = SqlQueryBudgetInterceptor.class.getName() + ".count";
+
+	static final String BUDGET_ATTRIBUTE = SqlQueryBudgetInterceptor.class.getName() + ".budget";
+
+	private static final Logger log = LoggerFactory.getLogger(SqlQueryBudgetInterceptor.class);
+
+	private static final String COUNTER_ATTRIBUTE = SqlQueryBudgetInterceptor.class.getName() + ".counter";
+
+	private final MeterRegistry registry;
+
+	private final int defaultBudget;
+
+	private final Map<Method, Handler> handlers = new ConcurrentHashMap<>();
+
+	SqlQueryBudgetInterceptor(MeterRegistry registry, int defaultBudget) {
+		this.registry = registry;
+		this.defaultBudget = defaultBudget;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		// a forwarded request is counted as part of the request that forwarded it
+		if (handler instanceof HandlerMethod && SqlQueryCounter.current() == null) {
+			request.setAttribute(COUNTER_ATTRIBUTE, SqlQueryCounter.start());
+		}
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		SqlQueryCounter counter = (SqlQueryCounter) request.getAttribute(COUNTER_ATTRIBUTE);
+		if (counter == null || SqlQueryCounter.current() != counter) {
+			return;
+		}
+		request.removeAttribute(COUNTER_ATTRIBUTE);
+		int count = counter.stop();
+		Handler budget = this.handlers.computeIfAbsent(((HandlerMethod) handler).getMethod(),
+				(method) -> new Handler((HandlerMethod) handler));
+		budget.queries.record(count);
+		request.setAttribute(COUNT_ATTRIBUTE, count);
+		request.setAttribute(BUDGET_ATTRIBUTE, budget.budget);
+		if (count > budget.budget) {
+			budget.overBudget.increment();
+			log.warn("{} {} ran {} SQL statements in {}, over its budget of {}", request.getMethod(),
+					request.getRequestURI(), count, budget.name, budget.budget);
+		}
+	}
+
+	/**
+	 * The budget and the meters of one handler method.
+	 */
+	private final class Handler {
+
+		private final String name;
+
+		private final int budget;
+
+		private final DistributionSummary queries;
+
+		private final Counter overBudget;
+
+		Handler(HandlerMethod handler) {
+			this.name = handler.getBeanType().getSimpleName() + "." + handler.getMethod().getName();
+			SqlQueryBudget budget = AnnotatedElementUtils.findMergedAnnotation(handler.getMethod(),
+					SqlQueryBudget.class);
+			if (budget == null) {
+				budget = AnnotatedElementUtils.findMergedAnnotation(handler.getBeanType(), SqlQueryBudget.class);
+			}
+			this.budget = budget != null ? budget.value() : SqlQueryBudgetInterceptor.this.defaultBudget;
+			this.queries = DistributionSummary.builder(METRIC_NAME).baseUnit("statements").tag("handler", this.name)
+					.register(SqlQueryBudgetInterceptor.this.registry);
+			this.overBudget = Counter.builder(OVER_BUDGET_METRIC_NAME).tag("handler", this.name)
+					.register(SqlQueryBudgetInterceptor.this.registry);
+		}
+
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+/**
+ * Counts the SQL statements that the current unit of work, usually a web request, has
+ * Hibernate prepare, as reported by the {@link SqlQueryCountingInspector}. A batch counts
+ * as one statement, as it is one round trip to the database.
+ * <p>
+ * Outside of a count opened with {@link #start()} statements are not counted.
+ */
+public final class SqlQueryCounter {
+
+	private static final ThreadLocal<SqlQueryCounter> current = new ThreadLocal<>();
+
+	private int count;
+
+	private SqlQueryCounter() {
+	}
+
+	/**
+	 * Start counting on the current thread, to be stopped with {@link #stop()}.
+	 * @return the count
+	 */
+	public static SqlQueryCounter start() {
+		SqlQueryCounter counter = new SqlQueryCounter();
+		current.set(counter);
+		return counter;
+	}
+
+	/**
+	 * Return the count that is open on the current thread, if any.
+	 */
+	public static SqlQueryCounter current() {
+		return current.get();
+	}
+
+	/**
+	 * Stop counting on the current thread.
+	 * @return the number of statements counted
+	 */
+	public int stop() {
+		if (current.get() == this) {
+			current.remove();
+		}
+		return this.count;
+	}
+
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Record that the current thread has executed a statement.
+	 */
+	static void increment() {
+		SqlQueryCounter counter = current.get();
+		if (counter != null) {
+			counter.count++;
+		}
+	}
+
+}
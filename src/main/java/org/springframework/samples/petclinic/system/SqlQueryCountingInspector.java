@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts each statement Hibernate prepares in the thread's {@link SqlQueryCounter}, if
+ * one is open, and leaves the SQL as it is. Hibernate prepares a statement for every
+ * query it runs and one per batch of inserts or updates, so this counts the round trips
+ * to the database without wrapping the JDBC objects.
+ */
+class SqlQueryCountingInspector implements StatementInspector {
+
+	@Override
+	public String inspect(String sql) {
+		SqlQueryCounter.increment();
+		return sql;
+	}
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Execution statistics of SQL statements, grouped by {@link SqlFingerprint}: how often each
+ * statement ran, how many rows it returned or changed, and a histogram of its latencies.
+ * Statements slower than the threshold are logged with the shapes of their bind
+ * parameters, but never their values.
+ *
+ * @see SqlProfilingDataSource
+ * @see SqlStatisticsEndpoint
+ */
+public class SqlStatistics {
+
+	private static final Logger log = LoggerFactory.getLogger(SqlStatistics.class);
+
+	/** Upper bounds of the latency histogram buckets, in milliseconds. */
+	static final long[] BUCKETS = { 1, 5, 10, 50, 100, 500, 1000, 5000 };
+
+	/** Fingerprints beyond this many are counted together, so memory stays bounded. */
+	static final int MAX_FINGERPRINTS = 1000;
+
+	static final String OTHER = "(other statements)";
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/** Fingerprints of recently seen SQL strings, so they are not normalized again. */
+	private final Map<String, Entry> entriesBySql = new ConcurrentHashMap<>();
+
+	private final long slowThresholdNanos;
+
+	public SqlStatistics(Duration slowThreshold) {
+		this.slowThresholdNanos = slowThreshold.toNanos();
+	}
+
+	/**
+	 * Return the entry that the executions of the given SQL are recorded in.
+	 */
+	Entry entry(String sql) {
+		Entry entry = this.entriesBySql.get(sql);
+		if (entry == null) {
+			String fingerprint = SqlFingerprint.of(sql);
+			entry = this.entries.get(fingerprint);
+			if (entry == null) {
+				entry = (this.entries.size() < MAX_FINGERPRINTS)
+						? this.entries.computeIfAbsent(fingerprint, Entry::new)
+						: this.entries.computeIfAbsent(OTHER, Entry::new);
+			}
+			if (this.entriesBySql.size() < MAX_FINGERPRINTS * 4) {
+				this.entriesBySql.put(sql, entry);
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Record one execution, logging it if it was slow.
+	 * @param parameters describes the bind parameters, only called for slow statements
+	 */
+	void record(Entry entry, long nanos, Supplier<String> parameters) {
+		entry.record(nanos);
+		if (nanos >= this.slowThresholdNanos) {
+			entry.slow.increment();
+			log.warn("Slow SQL took {} ms: {} with parameters {}", TimeUnit.NANOSECONDS.toMillis(nanos),
+					entry.fingerprint, parameters.get());
+		}
+	}
+
+	/**
+	 * Statistics of every statement that ran since the last reset, the statements with the
+	 * most time spent first.
+	 */
+	public List<Snapshot> snapshot() {
+		List<Snapshot> snapshots = new ArrayList<>();
+		for (Entry entry : this.entries.values()) {
+			if (entry.count.sum() > 0) {
+				snapshots.add(new Snapshot(entry));
+			}
+		}
+		snapshots.sort(Comparator.comparingDouble(Snapshot::getTotalMillis).reversed());
+		return snapshots;
+	}
+
+	/**
+	 * Zero all statistics. Entries are kept, since open statements still refer to them.
+	 */
+	public void reset() {
+		this.entries.values().forEach(Entry::reset);
+	}
+
+	static final class Entry {
+
+		final String fingerprint;
+
+		final LongAdder count = new LongAdder();
+
+		final LongAdder rows = new LongAdder();
+
+		final LongAdder nanos = new LongAdder();
+
+		final LongAdder slow = new LongAdder();
+
+		final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+		/** One bucket per bound in {@link #BUCKETS} plus one for slower executions. */
+		final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+
+		Entry(String fingerprint) {
+			this.fingerprint = fingerprint;
+			for (int i = 0; i < this.buckets.length; i++) {
+				this.buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos) {
+			this.count.increment();
+			this.nanos.add(nanos);
+			this.maxNanos.accumulate(nanos);
+			long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+			int bucket = 0;
+			while (bucket < BUCKETS.length && millis >= BUCKETS[bucket]) {
+				bucket++;
+			}
+			this.buckets[bucket].increment();
+		}
+
+		void reset() {
+			this.count.reset();
+			this.rows.reset();
+			this.nanos.reset();
+			this.slow.reset();
+			this.maxNanos.reset();
+			for (LongAdder bucket : this.buckets) {
+				bucket.reset();
+			}
+		}
+
+	}
+
+	/**
+	 * Point in time copy of the statistics of one fingerprint.
+	 */
+	public static final class Snapshot {
+
+		private final String fingerprint;
+
+		private final long count;
+
+		private final long rows;
+
+		private final long slow;
+
+		private final double totalMillis;
+
+		private final double maxMillis;
+
+		private final Map<String, Long> histogram = new LinkedHashMap<>();
+
+		private Snapshot(Entry entry) {
+			this.fingerprint = entry.fingerprint;
+			this.count = entry.count.sum();
+			this.rows = entry.rows.sum();
+			this.slow = entry.slow.sum();
+			this.totalMillis = entry.nanos.sum() / 1e6;
+			this.maxMillis = entry.maxNanos.get() / 1e6;
+			for (int i = 0; i < BUCKETS.length; i++) {
+				this.histogram.put("<" + BUCKETS[i] + "ms", entry.buckets[i].sum());
+			}
+			this.histogram.put(">=" + BUCKETS[BUCKETS.length - 1] + "ms", entry.buckets[BUCKETS.length].sum());
+		}
+
+		public String getFingerprint() {
+			return this.fingerprint;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		public long getRows() {
+			return this.rows;
+		}
+
+		public long getSlow() {
+			return this.slow;
+		}
+
+		public double getTotalMillis() {
+			return this.totalMillis;
+		}
+
+		public double getMeanMillis() {
+			return this.count == 0 ? 0 : this.totalMillis / this.count;
+		}
+
+		public double getMaxMillis() {
+			return this.maxMillis;
+		}
+
+		/**
+		 * Number of executions per latency bucket, keyed by the bucket's bound.
+		 */
+		public Map<String, Long> getHistogram() {
+			return this.histogram;
+		}
+
+	}
+
+}
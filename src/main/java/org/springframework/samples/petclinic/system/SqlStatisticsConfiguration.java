@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Records {@link SqlStatistics} for every data source in the context when
+ * {@code petclinic.sql.statistics.enabled=true}. It is off by default, as it proxies
+ * every connection, statement and result set. The wrapped data sources still unwrap to
+ * their pool, so that the pool's metrics and metadata are bound as usual.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "petclinic.sql.statistics.enabled", havingValue = "true")
+class SqlStatisticsConfiguration {
+
+	@Bean
+	public SqlStatistics sqlStatistics(@Value("${petclinic.sql.slow-threshold:200ms}") Duration slowThreshold) {
+		return new SqlStatistics(slowThreshold);
+	}
+
+	@Bean
+	public SqlStatisticsEndpoint sqlStatisticsEndpoint(SqlStatistics sqlStatistics) {
+		return new SqlStatisticsEndpoint(sqlStatistics);
+	}
+
+	@Bean
+	public static BeanPostProcessor sqlProfilingDataSourcePostProcessor(ObjectProvider<SqlStatistics> statistics) {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource && !(bean instanceof SqlProfilingDataSource)) {
+					return new SqlProfilingDataSource((DataSource) bean, statistics.getObject());
+				}
+				return bean;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Actuator endpoint at {@code /actuator/sql} listing the {@link SqlStatistics} of each
+ * statement fingerprint, most total time first. A {@code DELETE} starts over.
+ */
+@Endpoint(id = "sql")
+public class SqlStatisticsEndpoint {
+
+	private final SqlStatistics statistics;
+
+	public SqlStatisticsEndpoint(SqlStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	@ReadOperation
+	public List<SqlStatistics.Snapshot> statements() {
+		return this.statistics.snapshot();
+	}
+
+	@DeleteOperation
+	public void reset() {
+		this.statistics.reset();
+	}
+
+}
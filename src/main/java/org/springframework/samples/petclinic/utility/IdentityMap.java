@@ -1,115 +1,256 @@
 package org.springframework.samples.petclinic.utility;
+
 import org.springframework.samples.petclinic.model.BaseEntity;
 
-import java.util.*;
-import java.util.function.Supplier;
-import java.util.stream.Collector;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * This is a utility class to provide a sortable map
- * for more information see https://docs.oracle.com/javase/8/docs/api/java/util/Collection.html
+ * Set of entities that holds at most one entity per id.
+ * <p>
+ * Persisted entities are indexed by their primitive id in an {@link IntEntityMap} and
+ * new (transient) entities by object identity, so {@link #add}, {@link #remove} and
+ * {@link #contains} are O(1) and do not box the id. Adding an entity whose id is already
+ * present replaces the entity held for that id. Iteration returns the persisted
+ * entities in insertion order, followed by the new ones.
+ * <p>
+ * Once a comparator has been given to {@link #sort(Comparator)}, a sorted view is kept
+ * up to date on every change by binary insertion, so {@link #sorted()} never has to
+ * re-sort the whole collection. An entity whose sort key changes after it was added has
+ * to be added again, which moves it to its new place.
  */
-public class IdentityMap<Entity extends BaseEntity> implements Collection<Entity> {
+public class IdentityMap<Entity extends BaseEntity> extends AbstractSet<Entity> {
+
+	private final IntEntityMap<Entity> byId = new IntEntityMap<>();
+
+	/**
+	 * Entities that had no id yet when they were added.
+	 */
+	private final Map<IdentityKey, Entity> transients = new LinkedHashMap<>();
+
+	private Comparator<? super Entity> comparator;
 
-	private ArrayList<Entity> entities = new ArrayList<>();
-	private Set<Integer> ids = new HashSet<>();
+	private List<Entity> sorted;
 
+	public IdentityMap() {
+	}
+
+	public IdentityMap(Iterable<? extends Entity> entities) {
+		for (Entity entity : entities) {
+			add(entity);
+		}
+	}
 
 	@Override
 	public int size() {
-		return ids.size();
+		return byId.size() + transients.size();
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return ids.isEmpty();
+		return byId.isEmpty() && transients.isEmpty();
 	}
 
 	@Override
 	public boolean contains(Object o) {
-		if(o instanceof BaseEntity) {
-			return ids.contains(((BaseEntity) o).getId());
-		} else {
+		if (!(o instanceof BaseEntity)) {
 			return false;
 		}
+		BaseEntity entity = (BaseEntity) o;
+		return (!entity.isNew() && byId.containsKey(entity.getId()))
+				|| (!transients.isEmpty() && transients.containsKey(new IdentityKey(entity)));
 	}
 
-	@Override
-	public Iterator<Entity> iterator() {
-		throw new UnsupportedOperationException();
-	}
-
-	@Override
-	public Object[] toArray() {
-		throw new UnsupportedOperationException();
+	/**
+	 * Return the entity held for the given id, or {@code null} if there is none.
+	 */
+	public Entity get(int id) {
+		return byId.get(id);
 	}
 
 	@Override
-	public <T> T[] toArray(T[] ts) {
-		throw new UnsupportedOperationException();
+	public Iterator<Entity> iterator() {
+		return new Itr();
 	}
 
 	@Override
 	public boolean add(Entity entity) {
-		if(!ids.contains(entity)) {
-			ids.add(entity.getId());
-			entities.add(entity);
-		} else {
-			entities.removeIf(entity::sameId);
-			this.add(entity);
+		Entity previous;
+		if (entity.isNew()) {
+			previous = transients.put(new IdentityKey(entity), entity);
+		}
+		else {
+			previous = byId.put(entity.getId(), entity);
+		}
+		if (previous == entity) {
+			// the same entity again: its sort key may have changed since it was added
+			if (sorted != null) {
+				removeSorted(entity);
+				insertSorted(entity);
+			}
+			return false;
+		}
+		if (previous != null) {
+			removeSorted(previous);
+		}
+		else if (!entity.isNew() && !transients.isEmpty()) {
+			// the entity may have been added while it was still new and saved since
+			if (transients.remove(new IdentityKey(entity)) != null) {
+				removeSorted(entity);
+			}
 		}
+		insertSorted(entity);
 		return true;
 	}
 
 	@Override
 	public boolean remove(Object object) {
-		if(object instanceof BaseEntity) {
-			if(ids.remove(((BaseEntity) object).getId())) {
-				return entities.removeIf(((BaseEntity) object)::sameId);
-			}
+		if (!(object instanceof BaseEntity)) {
+			return false;
+		}
+		BaseEntity entity = (BaseEntity) object;
+		Entity removed = null;
+		if (!entity.isNew()) {
+			removed = byId.remove(entity.getId());
 		}
-		return false;
+		if (removed == null && !transients.isEmpty()) {
+			removed = transients.remove(new IdentityKey(entity));
+		}
+		if (removed == null) {
+			return false;
+		}
+		removeSorted(removed);
+		return true;
 	}
 
 	@Override
-	public boolean containsAll(Collection<?> collection) {
-		for(Object object: collection) {
-			if(!contains(object))
-				return false;
+	public void clear() {
+		byId.clear();
+		transients.clear();
+		if (sorted != null) {
+			sorted.clear();
 		}
-		return true;
 	}
 
-	@Override
-	public boolean addAll(Collection<? extends Entity> collection) {
-		boolean collectionChaged = false;
-		for(Entity entity: collection) {
-			collectionChaged |= add(entity);
+	/**
+	 * Keep a view of this collection sorted by the given comparator. Calling this again
+	 * with the same comparator is a no-op.
+	 * @see #sorted()
+	 */
+	public void sort(Comparator<? super Entity> comparator) {
+		if (comparator == this.comparator) {
+			return;
 		}
-		return collectionChaged;
+		List<Entity> sorted = new ArrayList<>(this);
+		sorted.sort(comparator);
+		this.comparator = comparator;
+		this.sorted = sorted;
 	}
 
-	@Override
-	public boolean removeAll(Collection<?> collection) {
-		boolean collectionChaged = false;
-		for(Object object: collection) {
-			collectionChaged |= remove(object);
+	/**
+	 * Return an unmodifiable view of the entities in the order of the comparator last
+	 * given to {@link #sort(Comparator)}, or in insertion order if there is none.
+	 */
+	public List<Entity> sorted() {
+		if (sorted == null) {
+			return Collections.unmodifiableList(new ArrayList<>(this));
 		}
-		return collectionChaged;
+		return Collections.unmodifiableList(sorted);
 	}
 
-	@Override
-	public boolean retainAll(Collection<?> collection) {
-		throw new UnsupportedOperationException();
+	private void insertSorted(Entity entity) {
+		if (sorted == null) {
+			return;
+		}
+		int index = Collections.binarySearch(sorted, entity, comparator);
+		sorted.add(index < 0 ? -index - 1 : index, entity);
 	}
 
-	@Override
-	public void clear() {
-		ids.clear();
-		entities.clear();
+	private void removeSorted(Entity entity) {
+		if (sorted == null) {
+			return;
+		}
+		int index = Collections.binarySearch(sorted, entity, comparator);
+		if (index >= 0) {
+			// equal elements may sit on either side of the one the search landed on
+			for (int i = index; i >= 0 && comparator.compare(sorted.get(i), entity) == 0; i--) {
+				if (sorted.get(i) == entity) {
+					sorted.remove(i);
+					return;
+				}
+			}
+			for (int i = index + 1; i < sorted.size() && comparator.compare(sorted.get(i), entity) == 0; i++) {
+				if (sorted.get(i) == entity) {
+					sorted.remove(i);
+					return;
+				}
+			}
+		}
+		// the sort key changed since the entity was added
+		for (Iterator<Entity> it = sorted.iterator(); it.hasNext();) {
+			if (it.next() == entity) {
+				it.remove();
+				return;
+			}
+		}
+	}
+
+	private final class Itr implements Iterator<Entity> {
+
+		private final Iterator<Entity> transientIterator = transients.values().iterator();
+
+		private Iterator<Entity> delegate = byId.iterator();
+
+		private Entity current;
+
+		@Override
+		public boolean hasNext() {
+			if (!delegate.hasNext() && delegate != transientIterator) {
+				delegate = transientIterator;
+			}
+			return delegate.hasNext();
+		}
+
+		@Override
+		public Entity next() {
+			hasNext();
+			current = delegate.next();
+			return current;
+		}
+
+		@Override
+		public void remove() {
+			delegate.remove();
+			removeSorted(current);
+			current = null;
+		}
+
 	}
 
-	public void sort(Comparator<Entity> comparator) {
-		entities.sort(comparator);
+	private static final class IdentityKey {
+
+		private final Object target;
+
+		IdentityKey(Object target) {
+			this.target = target;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof IdentityKey && ((IdentityKey) other).target == target;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(target);
+		}
+
 	}
+
 }
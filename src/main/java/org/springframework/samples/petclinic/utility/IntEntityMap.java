@@ -0,0 +1,265 @@
+package org.springframework.samples.petclinic.utility;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Map from primitive {@code int} entity ids to values, so that looking up an entity by id
+ * does not box the id.
+ * <p>
+ * Entries are appended to parallel {@code keys}/{@code values} arrays in insertion order,
+ * and an open-addressing table with linear probing maps each id to its position in
+ * those arrays. Removal leaves a hole in the arrays, which are compacted once they fill
+ * up, and shifts following table slots back so that no tombstones are needed. Iteration
+ * therefore follows insertion order.
+ * <p>
+ * Values must not be {@code null}. This class is not thread-safe.
+ */
+public class IntEntityMap<V> implements Iterable<V> {
+
+	private static final int MINIMUM_CAPACITY = 8;
+
+	/**
+	 * Position of each entry in {@link #keys}/{@link #values} plus one, or 0 for a free
+	 * slot. Always twice the length of {@link #keys}.
+	 */
+	private int[] table;
+
+	private int[] keys;
+
+	private Object[] values;
+
+	/** Number of live entries. */
+	private int size;
+
+	/** Position the next entry is appended at; holes before it hold {@code null}. */
+	private int end;
+
+	private int modCount;
+
+	public IntEntityMap() {
+		this(MINIMUM_CAPACITY);
+	}
+
+	public IntEntityMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public boolean containsKey(int key) {
+		return slotOf(key) >= 0;
+	}
+
+	/**
+	 * Return the value for the given id, or {@code null} if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int slot = slotOf(key);
+		return slot < 0 ? null : (V) this.values[this.table[slot] - 1];
+	}
+
+	/**
+	 * Associate the value with the given id.
+	 * @return the value previously held for the id, or {@code null} if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		Objects.requireNonNull(value, "value");
+		int slot = slotOf(key);
+		if (slot >= 0) {
+			int index = this.table[slot] - 1;
+			V previous = (V) this.values[index];
+			this.values[index] = value;
+			return previous;
+		}
+		if (this.end == this.keys.length) {
+			// compact if at least half of the entries are holes, grow otherwise
+			rehash(this.size <= this.keys.length / 2 ? this.keys.length : this.keys.length * 2);
+			slot = freeSlot(key);
+		}
+		else {
+			slot = -slot - 1;
+		}
+		this.keys[this.end] = key;
+		this.values[this.end] = value;
+		this.table[slot] = ++this.end;
+		this.size++;
+		this.modCount++;
+		return null;
+	}
+
+	/**
+	 * Remove the value for the given id.
+	 * @return the removed value, or {@code null} if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int slot = slotOf(key);
+		if (slot < 0) {
+			return null;
+		}
+		int index = this.table[slot] - 1;
+		V previous = (V) this.values[index];
+		this.values[index] = null;
+		this.size--;
+		this.modCount++;
+		deleteSlot(slot);
+		if (index == this.end - 1) {
+			this.end--;
+		}
+		return previous;
+	}
+
+	public void clear() {
+		Arrays.fill(this.table, 0);
+		Arrays.fill(this.values, 0, this.end, null);
+		this.size = 0;
+		this.end = 0;
+		this.modCount++;
+	}
+
+	/**
+	 * Iterate over the values in insertion order. The iterator supports
+	 * {@link Iterator#remove()}.
+	 */
+	@Override
+	public Iterator<V> iterator() {
+		return new ValueIterator();
+	}
+
+	/**
+	 * Return the table slot holding the given id, or {@code -(free slot) - 1} if the id is
+	 * not present.
+	 */
+	private int slotOf(int key) {
+		int mask = this.table.length - 1;
+		for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+			int entry = this.table[slot];
+			if (entry == 0) {
+				return -slot - 1;
+			}
+			if (this.keys[entry - 1] == key) {
+				return slot;
+			}
+		}
+	}
+
+	private int freeSlot(int key) {
+		int mask = this.table.length - 1;
+		int slot = hash(key) & mask;
+		while (this.table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Free the given slot, moving later entries of the same probe sequence back into the
+	 * gap so that lookups never stop early at it.
+	 */
+	private void deleteSlot(int gap) {
+		int mask = this.table.length - 1;
+		for (int slot = (gap + 1) & mask; this.table[slot] != 0; slot = (slot + 1) & mask) {
+			int home = hash(this.keys[this.table[slot] - 1]) & mask;
+			if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+				this.table[gap] = this.table[slot];
+				gap = slot;
+			}
+		}
+		this.table[gap] = 0;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		int oldEnd = this.end;
+		allocate(capacity);
+		for (int i = 0; i < oldEnd; i++) {
+			if (oldValues[i] != null) {
+				this.keys[this.end] = oldKeys[i];
+				this.values[this.end] = oldValues[i];
+				this.table[freeSlot(oldKeys[i])] = ++this.end;
+			}
+		}
+		this.modCount++;
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.table = new int[capacity * 2];
+		this.end = 0;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = MINIMUM_CAPACITY;
+		while (capacity < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int hash(int key) {
+		// spread sequential ids over the whole table
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private final class ValueIterator implements Iterator<V> {
+
+		private int next;
+
+		private int current = -1;
+
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			while (this.next < end && values[this.next] == null) {
+				this.next++;
+			}
+			return this.next < end;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V next() {
+			checkForComodification();
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.current = this.next++;
+			return (V) values[this.current];
+		}
+
+		@Override
+		public void remove() {
+			checkForComodification();
+			if (this.current < 0) {
+				throw new IllegalStateException();
+			}
+			IntEntityMap.this.remove(keys[this.current]);
+			this.current = -1;
+			this.expectedModCount = modCount;
+		}
+
+		private void checkForComodification() {
+			if (modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
+	}
+
+}
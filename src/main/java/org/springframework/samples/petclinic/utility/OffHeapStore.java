@@ -0,0 +1,226 @@
+package org.springframework.samples.petclinic.utility;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Byte array values keyed by a primitive {@code int} id, held outside the Java heap in
+ * direct {@link ByteBuffer} slabs.
+ * <p>
+ * Values are appended to the current slab. When it is full the next slab is written,
+ * and once the capacity is used up the oldest slab is reused: whatever was still stored
+ * in it is dropped and counted as evicted. Space of a value that was removed or replaced
+ * is only reclaimed when its slab is reused. Slabs are allocated as they are first
+ * needed, so an empty store takes no memory beyond its index.
+ * <p>
+ * Only the index, one small object per value, lives on the heap. This class is
+ * thread-safe.
+ */
+final class OffHeapStore {
+
+	static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+	private final int slabSize;
+
+	private final ByteBuffer[] slabs;
+
+	/**
+	 * Ids written to each slab, to drop them from the index when the slab is reused.
+	 */
+	private final int[][] slabKeys;
+
+	private final int[] slabKeyCounts;
+
+	private final IntEntityMap<Slot> index = new IntEntityMap<>();
+
+	/** Slab being written, {@code -1} before the first write. */
+	private int current = -1;
+
+	/** Offset of the next write in the current slab. */
+	private int position;
+
+	/** Bytes held by the values in the index. */
+	private long usedBytes;
+
+	private long evictionCount;
+
+	OffHeapStore(long capacityInBytes) {
+		this(capacityInBytes, DEFAULT_SLAB_SIZE);
+	}
+
+	OffHeapStore(long capacityInBytes, int slabSize) {
+		if (capacityInBytes <= 0 || slabSize <= 0) {
+			throw new IllegalArgumentException("capacity and slab size must be positive");
+		}
+		this.slabSize = (int) Math.min(slabSize, capacityInBytes);
+		int slabCount = (int) Math.min(Integer.MAX_VALUE, capacityInBytes / this.slabSize);
+		this.slabs = new ByteBuffer[slabCount];
+		this.slabKeys = new int[slabCount][];
+		this.slabKeyCounts = new int[slabCount];
+	}
+
+	/**
+	 * Store a value, replacing the one held for the id.
+	 * @return {@code false} if the value is larger than a slab and was not stored
+	 */
+	synchronized boolean put(int key, byte[] value) {
+		remove(key);
+		if (value.length > this.slabSize) {
+			return false;
+		}
+		if (this.current < 0 || this.position + value.length > this.slabSize) {
+			nextSlab();
+		}
+		ByteBuffer slab = this.slabs[this.current];
+		slab.position(this.position);
+		slab.put(value);
+		this.index.put(key, new Slot(this.current, this.position, value.length));
+		addSlabKey(key);
+		this.position += value.length;
+		this.usedBytes += value.length;
+		return true;
+	}
+
+	/**
+	 * Store a value for an id that has none, if the condition holds. The condition is
+	 * checked while the store is locked, so a caller can keep it from storing a value
+	 * that is stale by removing the id after making the condition false.
+	 * @return whether a value is held for the id
+	 */
+	synchronized boolean putIfAbsent(int key, byte[] value, BooleanSupplier condition) {
+		if (this.index.containsKey(key)) {
+			return true;
+		}
+		return condition.getAsBoolean() && put(key, value);
+	}
+
+	/**
+	 * Return a copy of the value held for the id, or {@code null} if there is none.
+	 */
+	synchronized byte[] get(int key) {
+		Slot slot = this.index.get(key);
+		if (slot == null) {
+			return null;
+		}
+		byte[] value = new byte[slot.length];
+		ByteBuffer slab = this.slabs[slot.slab];
+		slab.position(slot.offset);
+		slab.get(value);
+		return value;
+	}
+
+	/**
+	 * Read the value held for the id. The value is copied while the store is locked and
+	 * the reader gets a read-only buffer over the copy once it is no longer locked, so
+	 * that a slow reader does not hold up other callers.
+	 * @return what the reader returned, or {@code null} if there is no value for the id
+	 */
+	<T> T read(int key, Function<ByteBuffer, T> reader) {
+		byte[] value = get(key);
+		if (value == null) {
+			return null;
+		}
+		return reader.apply(ByteBuffer.wrap(value).asReadOnlyBuffer());
+	}
+
+	synchronized boolean contains(int key) {
+		return this.index.containsKey(key);
+	}
+
+	synchronized void remove(int key) {
+		Slot slot = this.index.remove(key);
+		if (slot != null) {
+			this.usedBytes -= slot.length;
+		}
+	}
+
+	synchronized int size() {
+		return this.index.size();
+	}
+
+	/**
+	 * Return the number of bytes the slabs may take up.
+	 */
+	long getCapacity() {
+		return (long) this.slabs.length * this.slabSize;
+	}
+
+	/**
+	 * Return the number of bytes of direct memory allocated for slabs so far.
+	 */
+	synchronized long getAllocatedBytes() {
+		long allocated = 0;
+		for (ByteBuffer slab : this.slabs) {
+			if (slab != null) {
+				allocated += slab.capacity();
+			}
+		}
+		return allocated;
+	}
+
+	/**
+	 * Return the number of bytes held by stored values, not counting space left behind by
+	 * removed or replaced ones.
+	 */
+	synchronized long getUsedBytes() {
+		return this.usedBytes;
+	}
+
+	/**
+	 * Return the number of values dropped because their slab was reused.
+	 */
+	synchronized long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	private void nextSlab() {
+		this.current = (this.current + 1) % this.slabs.length;
+		this.position = 0;
+		if (this.slabs[this.current] == null) {
+			this.slabs[this.current] = ByteBuffer.allocateDirect(this.slabSize);
+			this.slabKeys[this.current] = new int[64];
+			return;
+		}
+		int[] keys = this.slabKeys[this.current];
+		for (int i = 0; i < this.slabKeyCounts[this.current]; i++) {
+			Slot slot = this.index.get(keys[i]);
+			// the id may have been removed, or written again to another slab since
+			if (slot != null && slot.slab == this.current) {
+				this.index.remove(keys[i]);
+				this.usedBytes -= slot.length;
+				this.evictionCount++;
+			}
+		}
+		this.slabKeyCounts[this.current] = 0;
+	}
+
+	private void addSlabKey(int key) {
+		int[] keys = this.slabKeys[this.current];
+		int count = this.slabKeyCounts[this.current];
+		if (count == keys.length) {
+			keys = Arrays.copyOf(keys, count * 2);
+			this.slabKeys[this.current] = keys;
+		}
+		keys[count] = key;
+		this.slabKeyCounts[this.current] = count + 1;
+	}
+
+	private static final class Slot {
+
+		final int slab;
+
+		final int offset;
+
+		final int length;
+
+		Slot(int slab, int offset, int length) {
+			this.slab = slab;
+			this.offset = offset;
+			this.length = length;
+		}
+
+	}
+
+}
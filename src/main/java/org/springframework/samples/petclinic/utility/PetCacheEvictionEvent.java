@@ -0,0 +1,27 @@
+package org.springframework.samples.petclinic.utility;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a {@link PetTimedCache} evicting a pet from the heap to make
+ * room.
+ */
+@Name("org.springframework.samples.petclinic.PetCacheEviction")
+@Label("Pet Cache Eviction")
+@Category({ "Petclinic", "Pet Cache" })
+@StackTrace(false)
+class PetCacheEvictionEvent extends Event {
+
+	@Label("Pet Id")
+	int petId;
+
+	@Label("Moved Off-Heap")
+	@Description("Whether the pet was kept in the off-heap tier")
+	boolean movedOffHeap;
+
+}
@@ -0,0 +1,21 @@
+package org.springframework.samples.petclinic.utility;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a {@link PetTimedCache} lookup served from the cache.
+ */
+@Name("org.springframework.samples.petclinic.PetCacheHit")
+@Label("Pet Cache Hit")
+@Category({ "Petclinic", "Pet Cache" })
+@StackTrace(false)
+class PetCacheHitEvent extends Event {
+
+	@Label("Pet Id")
+	int petId;
+
+}
@@ -0,0 +1,27 @@
+package org.springframework.samples.petclinic.utility;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a {@link PetTimedCache} loading a pet from the repository,
+ * lasting as long as the load.
+ */
+@Name("org.springframework.samples.petclinic.PetCacheLoad")
+@Label("Pet Cache Load")
+@Category({ "Petclinic", "Pet Cache" })
+@StackTrace(false)
+class PetCacheLoadEvent extends Event {
+
+	@Label("Pet Id")
+	int petId;
+
+	@Label("Found")
+	@Description("Whether the repository had the pet")
+	boolean found;
+
+}
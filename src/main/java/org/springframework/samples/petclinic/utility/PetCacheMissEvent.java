@@ -0,0 +1,21 @@
+package org.springframework.samples.petclinic.utility;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a {@link PetTimedCache} lookup that has to load the pet.
+ */
+@Name("org.springframework.samples.petclinic.PetCacheMiss")
+@Label("Pet Cache Miss")
+@Category({ "Petclinic", "Pet Cache" })
+@StackTrace(false)
+class PetCacheMissEvent extends Event {
+
+	@Label("Pet Id")
+	int petId;
+
+}
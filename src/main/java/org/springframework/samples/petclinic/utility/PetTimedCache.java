@@ -2,17 +2,70 @@ package org.springframework.samples.petclinic.utility;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.samples.petclinic.owner.ClinicCodec;
 import org.springframework.samples.petclinic.owner.Pet;
 import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.system.MethodCallEvent;
+import org.springframework.samples.petclinic.system.MethodTimer;
+import org.springframework.samples.petclinic.system.MethodTimers;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
-import java.text.SimpleDateFormat;
-	import java.util.Date;
-	import java.util.Map;
-	import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
 
 /**
+ * Bounded, time-to-live cache of {@link Pet}s in front of the {@link PetRepository}.
+ * <p>
+ * Every cached pet lives in a single {@link Entry} that carries both the value and its
+ * expiry deadline. Entries are kept on an access-ordered (LRU) list so that once
+ * {@code maximumSize} is reached the least recently used entry is evicted in O(1). A
+ * large cache is split by pet id into up to {@value #MAX_SEGMENTS} segments, each with
+ * its own list, lock and share of the size, so that concurrent hits seldom wait for each
+ * other; a segment evicts its own least recently used pet.
+ * Expiry is lazy: an entry whose deadline has passed is dropped when it is read or when
+ * it reaches the tail of the LRU list, so there is no background thread sweeping the
+ * whole cache.
+ * <p>
+ * Entries are indexed by the primitive pet id in an {@link IntEntityMap}, so a hit does
+ * not box the id.
+ * <p>
+ * Misses are loaded single-flight: the first caller to miss a key runs the repository
+ * lookup while concurrent callers for the same key wait on its result instead of
+ * issuing their own query.
+ * <p>
+ * With an off-heap capacity, the LRU list is the small hot tier in front of an
+ * {@link OffHeapStore} that holds pets encoded with the {@link ClinicCodec}, each with its
+ * owner and visits, outside the Java heap, so far more pets can be cached without adding
+ * to the garbage collector's work. A pet evicted from the heap is moved off-heap unless
+ * a copy is already there, and a heap miss that finds the pet off-heap decodes it
+ * straight from the slab and promotes it back onto the heap, keeping its original expiry
+ * deadline. The off-heap copy stays in place until its slab is reused or the pet is
+ * invalidated, so a pet that keeps moving between the tiers is encoded only once. Slabs
+ * are direct buffers, limited by {@code -XX:MaxDirectMemorySize}.
+ * <p>
+ * Loading a pet from the repository, decoding it from the off-heap tier and encoding an
+ * evicted pet all run outside the locks. To keep them from putting back a pet that was
+ * invalidated meanwhile, each invalidation bumps a generation, striped by pet id, and a
+ * pet is only put on the heap, or moved off-heap, if the generation of its stripe is
+ * still the one seen before it was read or evicted.
+ * <p>
+ * The misses of {@link #get(int)}, which load the pet, are timed with a
+ * {@link MethodTimer}, while the hits are only counted. While a flight recording is
+ * running, hits, misses, loads and evictions are also recorded as
+ * {@code org.springframework.samples.petclinic.PetCache*} events. The events are only
+ * filled in when they are enabled, and otherwise never leave the method that creates
+ * them, so the compiler removes them.
  *
  * @author Vivekananthan M
  */
@@ -20,80 +73,560 @@ import java.text.SimpleDateFormat;
 public class PetTimedCache {
 
 	private final static Logger log = LoggerFactory.getLogger(PetTimedCache.class);
+
+	static final long DEFAULT_EXPIRY_IN_MILLIS = 10000;
+
+	static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+	/** Number of invalidation generations, a power of two. */
+	private static final int GENERATION_STRIPES = 256;
+
+	/** Most segments the heap tier is split into, a power of two. */
+	private static final int MAX_SEGMENTS = 16;
+
+	/** Fewest pets a segment holds, so that a small cache keeps a single LRU list. */
+	private static final int MIN_SEGMENT_SIZE = 64;
+
+	/** Returned by {@link Segment#insert} when the pet was not put. */
+	private static final Entry NOT_INSERTED = new Entry(0, null, 0);
+
 	private final PetRepository repository;
 
-	private Map<Integer, Long> timeMap = new ConcurrentHashMap<Integer, Long>();
-	private Map<Integer, Pet> actualMap = new ConcurrentHashMap<Integer, Pet>();
+	private final long expiryInNanos;
+
+	private final LongSupplier ticker;
+
+	/** Heap tier, split by pet id, a power of two of them. */
+	private final Segment[] segments;
+
+	/** Off-heap tier, {@code null} if there is none. */
+	private final OffHeapStore offHeap;
 
-	private long expiryInMillis = 10000;
-	private static final SimpleDateFormat SIMPLE_DATE_FORMAT = new SimpleDateFormat("hh:mm:ss:SSS");
+	/**
+	 * Invalidation generations by pet id. A stripe is only bumped while the segment of the
+	 * pet is locked.
+	 */
+	private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+	private final Map<Integer, CompletableFuture<Pet>> loading = new ConcurrentHashMap<>();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private final AtomicLong putCount = new AtomicLong();
+
+	private final AtomicLong offHeapHitCount = new AtomicLong();
+
+	private final MethodTimer loadTimer;
 
 	@Autowired
+	public PetTimedCache(PetRepository repository,
+			@Value("${petclinic.pets.cache.off-heap-capacity:0}") DataSize offHeapCapacity,
+			ObjectProvider<MethodTimers> timers) {
+		this(DEFAULT_EXPIRY_IN_MILLIS, DEFAULT_MAXIMUM_SIZE, repository, offHeapStore(offHeapCapacity.toBytes()),
+				System::nanoTime, timers.getIfAvailable(() -> MethodTimers.NONE));
+	}
+
 	public PetTimedCache(PetRepository repository) {
-		this.repository = repository;
-		initialize();
+		this(DEFAULT_EXPIRY_IN_MILLIS, repository);
 	}
 
 	public PetTimedCache(long expiryInMillis, PetRepository repository) {
-		this.expiryInMillis = expiryInMillis;
+		this(expiryInMillis, DEFAULT_MAXIMUM_SIZE, repository);
+	}
+
+	public PetTimedCache(long expiryInMillis, int maximumSize, PetRepository repository) {
+		this(expiryInMillis, maximumSize, 0, repository);
+	}
+
+	/**
+	 * Create a cache that keeps up to {@code maximumSize} pets on the heap and, if
+	 * {@code offHeapCapacityInBytes} is positive, moves those it evicts to an off-heap
+	 * tier of that many bytes.
+	 */
+	public PetTimedCache(long expiryInMillis, int maximumSize, long offHeapCapacityInBytes,
+			PetRepository repository) {
+		this(expiryInMillis, maximumSize, repository, offHeapStore(offHeapCapacityInBytes), System::nanoTime);
+	}
+
+	/**
+	 * Create a cache that keeps up to {@code maximumSize} pets on the heap and times
+	 * its loads with the given timers.
+	 */
+	public PetTimedCache(long expiryInMillis, int maximumSize, PetRepository repository, MethodTimers timers) {
+		this(expiryInMillis, maximumSize, repository, null, System::nanoTime, timers);
+	}
+
+	PetTimedCache(long expiryInMillis, int maximumSize, PetRepository repository, LongSupplier ticker) {
+		this(expiryInMillis, maximumSize, repository, null, ticker);
+	}
+
+	PetTimedCache(long expiryInMillis, int maximumSize, PetRepository repository, OffHeapStore offHeap,
+			LongSupplier ticker) {
+		this(expiryInMillis, maximumSize, repository, offHeap, ticker, MethodTimers.NONE);
+	}
+
+	PetTimedCache(long expiryInMillis, int maximumSize, PetRepository repository, OffHeapStore offHeap,
+			LongSupplier ticker, MethodTimers timers) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be positive");
+		}
+		this.expiryInNanos = TimeUnit.MILLISECONDS.toNanos(expiryInMillis);
 		this.repository = repository;
-		initialize();
+		this.offHeap = offHeap;
+		this.ticker = ticker;
+		int segmentCount = 1;
+		while (segmentCount < MAX_SEGMENTS && maximumSize / (segmentCount * 2) >= MIN_SEGMENT_SIZE) {
+			segmentCount *= 2;
+		}
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			this.segments[i] = new Segment((maximumSize + segmentCount - 1) / segmentCount);
+		}
+		this.loadTimer = timers.timer(PetTimedCache.class, "load");
+	}
+
+	private static OffHeapStore offHeapStore(long capacityInBytes) {
+		return capacityInBytes > 0 ? new OffHeapStore(capacityInBytes) : null;
+	}
+
+	private void put(Pet pet, long generation) {
+		if (insert(pet.getId(), pet, this.ticker.getAsLong() + this.expiryInNanos, generation)) {
+			this.putCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Put a pet on the heap, unless it has been invalidated since the given generation,
+	 * and move the pet it evicts, if any, off-heap.
+	 * @return whether the pet was put
+	 */
+	private boolean insert(int key, Pet pet, long expiresAt, long generation) {
+		Entry evicted = segment(key).insert(key, pet, expiresAt, generation);
+		if (evicted == NOT_INSERTED) {
+			log.debug("Not inserting invalidated : {}", key);
+			return false;
+		}
+		if (evicted != null) {
+			evicted(evicted);
+		}
+		return true;
 	}
 
-	void initialize() {
-		new CleanerThread().start();
+	private Segment segment(int key) {
+		return this.segments[key & (this.segments.length - 1)];
 	}
 
-	private Pet put(Pet pet) {
-		Integer key = pet.getId();
-		Date date = new Date();
-		timeMap.put(key, date.getTime());
-		log.info("Inserting : " + SIMPLE_DATE_FORMAT.format(date) + " : " + key + " : " + pet);
-		Pet returnVal = actualMap.put(key, pet);
-		return returnVal;
+	private static int stripe(int key) {
+		return key & (GENERATION_STRIPES - 1);
+	}
+
+	private long generation(int key) {
+		return this.generations.get(stripe(key));
+	}
+
+	public Pet get(int key) {
+		Pet cached = getIfPresent(key);
+		if (cached != null) {
+			log.debug("cache hit");
+			return cached;
+		}
+		log.debug("cache miss");
+		// hits are counted rather than timed, as timing them would cost more than the
+		// hits themselves
+		MethodCallEvent event = this.loadTimer.begin();
+		long start = this.loadTimer.start();
+		Pet pet;
+		try {
+			pet = load(key);
+		}
+		catch (RuntimeException | Error ex) {
+			this.loadTimer.record(start, event, ex);
+			throw ex;
+		}
+		this.loadTimer.record(start, event, null);
+		return pet;
 	}
 
-	public Pet get(Integer key) {
-		if(actualMap.containsKey(key)) {
-			log.info("cache hit");
-			return actualMap.get(key);
-		} else {
-			log.info("cache miss");
-			Pet pet = repository.findById(key);
-			if(pet != null) {
-				put(pet);
+	private Pet load(int key) {
+		// only misses box the id, to coordinate with other loaders of the same pet
+		Integer id = key;
+		CompletableFuture<Pet> future = new CompletableFuture<>();
+		CompletableFuture<Pet> inFlight = this.loading.putIfAbsent(id, future);
+		if (inFlight != null) {
+			return await(inFlight);
+		}
+		try {
+			// a loader that finished between our miss and claiming the key has already
+			// populated the heap, so look again before going to the repository
+			long generation = generation(key);
+			Pet pet = lookup(key);
+			if (pet == null) {
+				PetCacheLoadEvent event = new PetCacheLoadEvent();
+				event.begin();
+				pet = repository.findById(id);
+				if (event.shouldCommit()) {
+					event.petId = key;
+					event.found = pet != null;
+					event.commit();
+				}
+				if (pet != null) {
+					put(pet, generation);
+				}
 			}
+			future.complete(pet);
 			return pet;
 		}
+		catch (RuntimeException | Error ex) {
+			future.completeExceptionally(ex);
+			throw ex;
+		}
+		finally {
+			this.loading.remove(id, future);
+		}
+	}
+
+	private static Pet await(CompletableFuture<Pet> inFlight) {
+		try {
+			return inFlight.join();
+		}
+		catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			if (ex.getCause() instanceof Error) {
+				throw (Error) ex.getCause();
+			}
+			throw ex;
+		}
+	}
+
+	private Pet getIfPresent(int key) {
+		Pet pet = lookupOrPromote(key);
+		if (pet != null) {
+			this.hitCount.incrementAndGet();
+			PetCacheHitEvent event = new PetCacheHitEvent();
+			if (event.shouldCommit()) {
+				event.petId = key;
+				event.commit();
+			}
+		}
+		else {
+			this.missCount.incrementAndGet();
+			PetCacheMissEvent event = new PetCacheMissEvent();
+			if (event.shouldCommit()) {
+				event.petId = key;
+				event.commit();
+			}
+		}
+		return pet;
+	}
+
+	private Pet lookup(int key) {
+		return segment(key).lookup(key, this.ticker);
 	}
 
 	public void save(Pet pet) {
 		repository.save(pet);
+		if (!pet.isNew()) {
+			invalidate(pet.getId());
+		}
 	}
 
-	class CleanerThread extends Thread {
-		@Override
-		public void run() {
-			log.info("Initiating Cleaner Thread...");
-			while (true) {
-				cleanMap();
-				try {
-					Thread.sleep(expiryInMillis / 2);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+	public void invalidate(int key) {
+		segment(key).invalidate(key);
+		// after the generation has moved on, so a copy being moved off-heap is either
+		// refused or removed here
+		if (this.offHeap != null) {
+			this.offHeap.remove(key);
+		}
+	}
+
+	/**
+	 * Return the number of pets on the heap.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	/**
+	 * Return the number of pets evicted from the heap, including those that were moved
+	 * off-heap.
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	/**
+	 * Return the number of pets loaded from the repository into the cache.
+	 */
+	public long getPutCount() {
+		return this.putCount.get();
+	}
+
+	public boolean hasOffHeapTier() {
+		return this.offHeap != null;
+	}
+
+	/**
+	 * Return the number of pets held off-heap, including those that have been promoted
+	 * to the heap since.
+	 */
+	public int getOffHeapSize() {
+		return this.offHeap == null ? 0 : this.offHeap.size();
+	}
+
+	/**
+	 * Return the number of hits served by promoting a pet from the off-heap tier; they
+	 * are included in {@link #getHitCount()}.
+	 */
+	public long getOffHeapHitCount() {
+		return this.offHeapHitCount.get();
+	}
+
+	/**
+	 * Return the number of pets dropped from the off-heap tier to make room.
+	 */
+	public long getOffHeapEvictionCount() {
+		return this.offHeap == null ? 0 : this.offHeap.getEvictionCount();
+	}
+
+	/**
+	 * Return the number of bytes the off-heap tier may take up.
+	 */
+	public long getOffHeapCapacity() {
+		return this.offHeap == null ? 0 : this.offHeap.getCapacity();
+	}
+
+	/**
+	 * Return the number of bytes of direct memory allocated by the off-heap tier.
+	 */
+	public long getOffHeapAllocatedBytes() {
+		return this.offHeap == null ? 0 : this.offHeap.getAllocatedBytes();
+	}
+
+	/**
+	 * Return the number of bytes taken up by the pets held off-heap.
+	 */
+	public long getOffHeapUsedBytes() {
+		return this.offHeap == null ? 0 : this.offHeap.getUsedBytes();
+	}
+
+	private Pet lookupOrPromote(int key) {
+		Pet pet = lookup(key);
+		if (pet == null && this.offHeap != null) {
+			pet = promote(key);
+		}
+		return pet;
+	}
+
+	private Pet promote(int key) {
+		long generation = generation(key);
+		// the store copies the bytes while it is locked, and they are decoded after
+		Entry entry = this.offHeap.read(key, record -> {
+			long expiresAt = record.getLong();
+			if (this.ticker.getAsLong() - expiresAt > 0) {
+				return NOT_INSERTED;
 			}
+			return new Entry(key, ClinicCodec.decodePet(record), expiresAt);
+		});
+		if (entry == null) {
+			return null;
 		}
+		if (entry == NOT_INSERTED) {
+			this.offHeap.remove(key);
+			return null;
+		}
+		if (!insert(key, entry.value, entry.expiresAt, generation)) {
+			return null;
+		}
+		this.offHeapHitCount.incrementAndGet();
+		return entry.value;
+	}
 
-		private void cleanMap() {
-			long currentTime = new Date().getTime();
-			for (Integer key : timeMap.keySet()) {
-				if (currentTime > (timeMap.get(key) + expiryInMillis)) {
-					Pet value = actualMap.remove(key);
-					timeMap.remove(key);
-					log.info("Removing : " + SIMPLE_DATE_FORMAT.format(new Date()) + " : " + key + " : " + value);
-				}
+	/**
+	 * Count a pet evicted from the heap and move it off-heap. This runs once the segment
+	 * is no longer locked, so that encoding the pet holds up no lookups.
+	 */
+	private void evicted(Entry entry) {
+		// expired entries that were never read again are not counted as evictions
+		if (!entry.isExpired(this.ticker.getAsLong())) {
+			this.evictionCount.incrementAndGet();
+			boolean movedOffHeap = demote(entry);
+			PetCacheEvictionEvent event = new PetCacheEvictionEvent();
+			if (event.shouldCommit()) {
+				event.petId = entry.key;
+				event.movedOffHeap = movedOffHeap;
+				event.commit();
 			}
 		}
+		if (log.isDebugEnabled()) {
+			log.debug("Removing : {} : {}", entry.key, entry.value);
+		}
 	}
+
+	/**
+	 * Move an entry evicted from the heap off-heap, unless a copy is already there or the
+	 * pet has been invalidated since it was evicted. The generation is checked while the
+	 * store is locked, and an invalidation bumps it before removing the pet from the
+	 * store, so a stale copy is either refused or removed.
+	 * @return whether the pet is held off-heap
+	 */
+	private boolean demote(Entry entry) {
+		if (this.offHeap == null) {
+			return false;
+		}
+		if (this.offHeap.contains(entry.key)) {
+			return true;
+		}
+		byte[] value = encode(entry);
+		int stripe = stripe(entry.key);
+		return this.offHeap.putIfAbsent(entry.key, value,
+				() -> this.generations.get(stripe) == entry.evictedGeneration);
+	}
+
+	/**
+	 * Encode an entry as its expiry deadline followed by the pet, so that the deadline
+	 * can be checked without decoding the pet.
+	 */
+	private static byte[] encode(Entry entry) {
+		byte[] pet = ClinicCodec.encode(entry.value);
+		return ByteBuffer.allocate(Long.BYTES + pet.length).putLong(entry.expiresAt).put(pet).array();
+	}
+
+	/**
+	 * Part of the heap tier: the pets whose ids fall in it, on an LRU list of their own, so
+	 * that lookups of pets in different segments do not wait for each other.
+	 */
+	private final class Segment {
+
+		private final int maximumSize;
+
+		private final IntEntityMap<Entry> entries = new IntEntityMap<>();
+
+		/**
+		 * Sentinel of the circular LRU list: {@code head.next} is the most and
+		 * {@code head.prev} the least recently used entry.
+		 */
+		private final Entry head = new Entry(0, null, 0);
+
+		Segment(int maximumSize) {
+			this.maximumSize = maximumSize;
+			this.head.prev = this.head;
+			this.head.next = this.head;
+		}
+
+		synchronized Pet lookup(int key, LongSupplier ticker) {
+			Entry entry = this.entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.isExpired(ticker.getAsLong())) {
+				this.entries.remove(key);
+				unlink(entry);
+				return null;
+			}
+			if (this.head.next != entry) {
+				unlink(entry);
+				linkFirst(entry);
+			}
+			return entry.value;
+		}
+
+		/**
+		 * Put a pet, unless it has been invalidated since the given generation.
+		 * @return the entry evicted to make room, {@code null} if none was, or
+		 * {@link #NOT_INSERTED} if the pet was not put
+		 */
+		synchronized Entry insert(int key, Pet pet, long expiresAt, long generation) {
+			if (generations.get(stripe(key)) != generation) {
+				return NOT_INSERTED;
+			}
+			log.debug("Inserting : {} : {}", key, pet);
+			Entry entry = new Entry(key, pet, expiresAt);
+			Entry previous = this.entries.put(key, entry);
+			if (previous != null) {
+				unlink(previous);
+			}
+			linkFirst(entry);
+			if (this.entries.size() <= this.maximumSize) {
+				return null;
+			}
+			Entry evicted = this.head.prev;
+			this.entries.remove(evicted.key);
+			unlink(evicted);
+			evicted.evictedGeneration = generations.get(stripe(evicted.key));
+			return evicted;
+		}
+
+		synchronized void invalidate(int key) {
+			generations.incrementAndGet(stripe(key));
+			Entry entry = this.entries.remove(key);
+			if (entry != null) {
+				unlink(entry);
+			}
+		}
+
+		synchronized int size() {
+			return this.entries.size();
+		}
+
+		private void linkFirst(Entry entry) {
+			entry.prev = this.head;
+			entry.next = this.head.next;
+			this.head.next.prev = entry;
+			this.head.next = entry;
+		}
+
+		private void unlink(Entry entry) {
+			entry.prev.next = entry.next;
+			entry.next.prev = entry.prev;
+			entry.prev = null;
+			entry.next = null;
+		}
+
+	}
+
+	private static final class Entry {
+
+		final int key;
+
+		final Pet value;
+
+		final long expiresAt;
+
+		Entry prev;
+
+		Entry next;
+
+		/** Generation of the pet's stripe when it was evicted from the heap. */
+		long evictedGeneration;
+
+		Entry(int key, Pet value, long expiresAt) {
+			this.key = key;
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired(long now) {
+			return now - this.expiresAt > 0;
+		}
+
+	}
+
 }
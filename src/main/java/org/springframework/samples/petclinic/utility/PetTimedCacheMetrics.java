@@ -0,0 +1,77 @@
+package org.springframework.samples.petclinic.utility;
+
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the {@link PetTimedCache} as the {@code pets} cache next to the JCache caches,
+ * with {@code cache.size} counting the pets on the heap. With an off-heap tier the pets,
+ * hits, evictions and memory of that tier are published as {@code cache.offheap.*}.
+ */
+@Component
+public class PetTimedCacheMetrics extends CacheMeterBinder {
+
+	private final PetTimedCache cache;
+
+	public PetTimedCacheMetrics(PetTimedCache cache) {
+		super(cache, "pets", Tags.empty());
+		this.cache = cache;
+	}
+
+	@Override
+	protected Long size() {
+		return (long) this.cache.size();
+	}
+
+	@Override
+	protected long hitCount() {
+		return this.cache.getHitCount();
+	}
+
+	@Override
+	protected Long missCount() {
+		return this.cache.getMissCount();
+	}
+
+	@Override
+	protected Long evictionCount() {
+		return this.cache.getEvictionCount();
+	}
+
+	@Override
+	protected long putCount() {
+		return this.cache.getPutCount();
+	}
+
+	@Override
+	protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+		if (!this.cache.hasOffHeapTier()) {
+			return;
+		}
+		Gauge.builder("cache.offheap.size", this.cache, PetTimedCache::getOffHeapSize).tags(getTagsWithCacheName())
+				.description("The number of entries held off-heap").register(registry);
+		FunctionCounter.builder("cache.offheap.hits", this.cache, PetTimedCache::getOffHeapHitCount)
+				.tags(getTagsWithCacheName()).description("Hits served by promoting an entry from off-heap")
+				.register(registry);
+		FunctionCounter.builder("cache.offheap.evictions", this.cache, PetTimedCache::getOffHeapEvictionCount)
+				.tags(getTagsWithCacheName()).description("Entries dropped from off-heap to make room")
+				.register(registry);
+		memory(registry, "used", PetTimedCache::getOffHeapUsedBytes, "Bytes taken up by the entries held off-heap");
+		memory(registry, "allocated", PetTimedCache::getOffHeapAllocatedBytes, "Bytes of direct memory allocated");
+		memory(registry, "capacity", PetTimedCache::getOffHeapCapacity, "Bytes the off-heap tier may take up");
+	}
+
+	private void memory(MeterRegistry registry, String name, ToDoubleFunction<PetTimedCache> bytes,
+			String description) {
+		Gauge.builder("cache.offheap.memory." + name, this.cache, bytes).tags(getTagsWithCacheName())
+				.baseUnit(BaseUnits.BYTES).description(description).register(registry);
+	}
+
+}
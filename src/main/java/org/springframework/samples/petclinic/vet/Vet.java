@@ -17,10 +17,12 @@ package org.springframework.samples.petclinic.vet;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
@@ -29,8 +31,8 @@ import javax.persistence.ManyToMany;
 import javax.persistence.Table;
 import javax.xml.bind.annotation.XmlElement;
 
-import org.springframework.beans.support.MutableSortDefinition;
-import org.springframework.beans.support.PropertyComparator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.samples.petclinic.model.Person;
 
 /**
@@ -43,13 +45,24 @@ import org.springframework.samples.petclinic.model.Person;
  */
 @Entity
 @Table(name = "vets")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Vet extends Person {
 
+	private static final Comparator<Specialty> SPECIALTIES_BY_NAME = Comparator.comparing(Specialty::getName,
+			Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
 	@ManyToMany(fetch = FetchType.EAGER)
 	@JoinTable(name = "vet_specialties", joinColumns = @JoinColumn(name = "vet_id"),
 			inverseJoinColumns = @JoinColumn(name = "specialty_id"))
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 	private Set<Specialty> specialties;
 
+	/**
+	 * Sorted copy of {@link #specialties}, or {@code null} if it has to be rebuilt.
+	 */
+	private transient List<Specialty> sortedSpecialties;
+
 	protected Set<Specialty> getSpecialtiesInternal() {
 		if (this.specialties == null) {
 			this.specialties = new HashSet<>();
@@ -59,13 +72,17 @@ public class Vet extends Person {
 
 	protected void setSpecialtiesInternal(Set<Specialty> specialties) {
 		this.specialties = specialties;
+		this.sortedSpecialties = null;
 	}
 
 	@XmlElement
 	public List<Specialty> getSpecialties() {
-		List<Specialty> sortedSpecs = new ArrayList<>(getSpecialtiesInternal());
-		PropertyComparator.sort(sortedSpecs, new MutableSortDefinition("name", true, true));
-		return Collections.unmodifiableList(sortedSpecs);
+		if (this.sortedSpecialties == null) {
+			List<Specialty> sortedSpecs = new ArrayList<>(getSpecialtiesInternal());
+			sortedSpecs.sort(SPECIALTIES_BY_NAME);
+			this.sortedSpecialties = Collections.unmodifiableList(sortedSpecs);
+		}
+		return this.sortedSpecialties;
 	}
 
 	public int getNrOfSpecialties() {
@@ -74,6 +91,7 @@ public class Vet extends Person {
 
 	public void addSpecialty(Specialty specialty) {
 		getSpecialtiesInternal().add(specialty);
+		this.sortedSpecialties = null;
 	}
 
 }
@@ -38,11 +38,8 @@ class VetController {
 
 	@GetMapping("/vets.html")
 	public String showVetList(Map<String, Object> model) {
-		// Here we are returning an object of type 'Vets' rather than a collection of Vet
-		// objects so it is simpler for Object-Xml mapping
-		Vets vets = new Vets();
-		vets.getVetList().addAll(this.vets.findAll());
-		model.put("vets", vets);
+		// the page only shows names, so it renders from read-only summaries
+		model.put("vets", VetSummary.fromRows(this.vets.findAllSummaryRows()));
 		return "vets/vetList";
 	}
 
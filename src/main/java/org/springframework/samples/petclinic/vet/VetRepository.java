@@ -16,10 +16,18 @@
 package org.springframework.samples.petclinic.vet;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -43,4 +51,57 @@ public interface VetRepository extends Repository<Vet, Integer> {
 	@Cacheable("vets")
 	Collection<Vet> findAll() throws DataAccessException;
 
+	/**
+	 * Retrieve what the vet list shows of every {@link Vet}, as scalar rows that are not
+	 * tracked by the persistence context. The rows are cached next to {@link #findAll()}
+	 * and evicted with it.
+	 * @return one {@code [id, firstName, lastName, specialtyName]} row per specialty (one
+	 * with a {@code null} specialty name for vets without specialties), ordered by vet id
+	 * @see VetSummary#fromRows(List)
+	 */
+	@Query("SELECT vet.id, vet.firstName, vet.lastName, specialty.name FROM Vet vet "
+			+ "LEFT JOIN vet.specialties specialty ORDER BY vet.id")
+	@Transactional(readOnly = true)
+	@Cacheable(cacheNames = "vets", key = "'summaryRows'")
+	List<Object[]> findAllSummaryRows() throws DataAccessException;
+
+	/**
+	 * Stream every {@link Vet} with the names of its specialties, as scalar rows that are
+	 * not tracked by the persistence context. Rows are read from a database cursor
+	 * {@code 500} at a time. Must be called inside a (read-only) transaction that stays open
+	 * while the stream is consumed.
+	 * @return one {@code [id, firstName, lastName, specialtyName]} row per specialty (one
+	 * with a {@code null} specialty name for vets without specialties), ordered by vet id
+	 * and specialty name, to be closed after use
+	 */
+	@Query("SELECT vet.id, vet.firstName, vet.lastName, specialty.name FROM Vet vet "
+			+ "LEFT JOIN vet.specialties specialty ORDER BY vet.id, specialty.name")
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+	Stream<Object[]> streamAllSummaryRows();
+
+	/**
+	 * Retrieve a {@link Specialty} by name.
+	 * @param name the name of the specialty
+	 * @return the specialty, or {@code null} if there is none of that name
+	 */
+	@Query("SELECT specialty FROM Specialty specialty WHERE specialty.name = :name")
+	@Transactional(readOnly = true)
+	Specialty findSpecialtyByName(@Param("name") String name) throws DataAccessException;
+
+	/**
+	 * Save a <code>Vet</code> to the data store, either inserting or updating it. The
+	 * cached vet list and rows are evicted, so {@link #findAll()} and
+	 * {@link #findAllSummaryRows()} see the change straight away.
+	 * @param vet the <code>Vet</code> to save
+	 */
+	@CacheEvict(cacheNames = "vets", allEntries = true)
+	void save(Vet vet) throws DataAccessException;
+
+	/**
+	 * Delete a <code>Vet</code> from the data store and evict the cached vet list and rows.
+	 * @param vet the <code>Vet</code> to delete
+	 */
+	@CacheEvict(cacheNames = "vets", allEntries = true)
+	void delete(Vet vet) throws DataAccessException;
+
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.vet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.core.style.ToStringCreator;
+
+/**
+ * Read-only view of a {@link Vet} with just what the vet list shows: the name and the
+ * names of the specialties.
+ *
+ * @see VetRepository#findAllSummaryRows()
+ */
+public final class VetSummary {
+
+	private final Integer id;
+
+	private final String firstName;
+
+	private final String lastName;
+
+	private final List<String> specialties;
+
+	public VetSummary(Integer id, String firstName, String lastName, List<String> specialties) {
+		this.id = id;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.specialties = Collections.unmodifiableList(new ArrayList<>(specialties));
+	}
+
+	/**
+	 * Fold {@code [id, firstName, lastName, specialtyName]} rows, grouped by vet, into one
+	 * summary per vet. Vets without specialties come with a {@code null} specialty name.
+	 * @param rows the query rows, with the rows of a vet next to each other
+	 * @return the summaries, in the order of the rows
+	 */
+	public static List<VetSummary> fromRows(List<Object[]> rows) {
+		List<VetSummary> summaries = new ArrayList<>();
+		List<String> specialties = new ArrayList<>();
+		Object[] vet = null;
+		for (Object[] row : rows) {
+			if (vet != null && !vet[0].equals(row[0])) {
+				summaries.add(summary(vet, specialties));
+				specialties.clear();
+			}
+			vet = row;
+			if (row[3] != null) {
+				specialties.add((String) row[3]);
+			}
+		}
+		if (vet != null) {
+			summaries.add(summary(vet, specialties));
+		}
+		return summaries;
+	}
+
+	private static VetSummary summary(Object[] row, List<String> specialties) {
+		// same order as Vet#getSpecialties()
+		specialties.sort(String.CASE_INSENSITIVE_ORDER);
+		return new VetSummary((Integer) row[0], (String) row[1], (String) row[2], specialties);
+	}
+
+	public Integer getId() {
+		return this.id;
+	}
+
+	public String getFirstName() {
+		return this.firstName;
+	}
+
+	public String getLastName() {
+		return this.lastName;
+	}
+
+	public List<String> getSpecialties() {
+		return this.specialties;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof VetSummary)) {
+			return false;
+		}
+		VetSummary that = (VetSummary) other;
+		return Objects.equals(this.id, that.id) && Objects.equals(this.firstName, that.firstName)
+				&& Objects.equals(this.lastName, that.lastName) && this.specialties.equals(that.specialties);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.id, this.firstName, this.lastName, this.specialties);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringCreator(this).append("id", this.id).append("lastName", this.lastName)
+				.append("firstName", this.firstName).append("specialties", this.specialties).toString();
+	}
+
+}
@@ -16,12 +16,18 @@
 package org.springframework.samples.petclinic.visit;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.PrePersist;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.validation.constraints.NotEmpty;
 
+import org.springframework.data.domain.AfterDomainEventPublication;
+import org.springframework.data.domain.DomainEvents;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.samples.petclinic.model.BaseEntity;
 
@@ -46,6 +52,12 @@ public class Visit extends BaseEntity {
 	@Column(name = "pet_id")
 	private Integer petId;
 
+	/**
+	 * Whether this visit has been persisted since its events were last published.
+	 */
+	@Transient
+	private boolean inserted;
+
 	/**
 	 * Creates a new instance of Visit for the current date
 	 */
@@ -78,4 +90,23 @@ public class Visit extends BaseEntity {
 		this.petId = petId;
 	}
 
+	@PrePersist
+	void onPersist() {
+		this.inserted = true;
+	}
+
+	/**
+	 * Events published by Spring Data when this visit is saved through
+	 * {@link VisitRepository#save(Visit)} for the first time; later saves publish none.
+	 */
+	@DomainEvents
+	Collection<VisitSavedEvent> domainEvents() {
+		return this.inserted ? Collections.singletonList(new VisitSavedEvent(this)) : Collections.emptyList();
+	}
+
+	@AfterDomainEventPublication
+	void clearDomainEvents() {
+		this.inserted = false;
+	}
+
 }
@@ -15,11 +15,16 @@
  */
 package org.springframework.samples.petclinic.visit;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repository class for <code>Visit</code> domain objects All method names are compliant
@@ -43,4 +48,61 @@ public interface VisitRepository extends Repository<Visit, Integer> {
 
 	List<Visit> findByPetId(Integer petId);
 
+	/**
+	 * Retrieve the <code>Visit</code>s of several pets with a single query.
+	 * @param petIds the ids of the pets
+	 * @return the visits of all given pets, in no particular order
+	 */
+	List<Visit> findByPetIdIn(Collection<Integer> petIds);
+
+	/**
+	 * Retrieve the <code>Visit</code>s of a pet after {@code start} and before {@code end}
+	 * (both exclusive), most recent first, without loading the rest of its history.
+	 * @see org.springframework.samples.petclinic.owner.Pet#getVisitsBetween
+	 */
+	@Query("SELECT visit FROM Visit visit WHERE visit.petId = :petId AND visit.date > :start AND visit.date < :end "
+			+ "ORDER BY visit.date DESC")
+	@Transactional(readOnly = true)
+	List<Visit> findByPetIdBetween(@Param("petId") Integer petId, @Param("start") LocalDate start,
+			@Param("end") LocalDate end);
+
+	/**
+	 * Retrieve the <code>Visit</code>s of a pet before the given date, most recent first.
+	 * Pass {@link org.springframework.samples.petclinic.owner.Pet#getBirthday(int)} to load
+	 * what {@link org.springframework.samples.petclinic.owner.Pet#getVisitsUntilAge(int)}
+	 * returns.
+	 */
+	@Query("SELECT visit FROM Visit visit WHERE visit.petId = :petId AND visit.date < :date "
+			+ "ORDER BY visit.date DESC")
+	@Transactional(readOnly = true)
+	List<Visit> findByPetIdBefore(@Param("petId") Integer petId, @Param("date") LocalDate date);
+
+	/**
+	 * Retrieve the lowest and highest visit id, to split a scan of all visits into ranges.
+	 * @return a single {@code [minId, maxId]} row, both {@code null} if there are no visits
+	 */
+	@Query("SELECT MIN(visit.id), MAX(visit.id) FROM Visit visit")
+	@Transactional(readOnly = true)
+	List<Object[]> findIdRange();
+
+	/**
+	 * Count the visits with ids in the given range by month and by the type of the pet.
+	 * @return one {@code [year, month, petTypeName, count]} row per month and pet type,
+	 * with a {@code null} year and month for visits without a date
+	 * @see VisitRollups
+	 */
+	@Query("SELECT YEAR(visit.date), MONTH(visit.date), type.name, COUNT(visit) FROM Visit visit, Pet pet "
+			+ "JOIN pet.type type WHERE pet.id = visit.petId AND visit.id BETWEEN :fromId AND :toId "
+			+ "GROUP BY YEAR(visit.date), MONTH(visit.date), type.name")
+	@Transactional(readOnly = true)
+	List<Object[]> countByMonthAndPetType(@Param("fromId") int fromId, @Param("toId") int toId);
+
+	/**
+	 * Retrieve the type names of the given pets.
+	 * @return one {@code [petId, petTypeName]} row per pet found
+	 */
+	@Query("SELECT pet.id, type.name FROM Pet pet JOIN pet.type type WHERE pet.id IN :petIds")
+	@Transactional(readOnly = true)
+	List<Object[]> findPetTypeNames(@Param("petIds") Collection<Integer> petIds);
+
 }
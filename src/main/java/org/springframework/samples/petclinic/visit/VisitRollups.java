@@ -0,0 +1,343 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visit;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Running counts of visits per month and per pet type, so that dashboards do not have to
+ * scan the visits table.
+ * <p>
+ * The counts are rebuilt at startup by scanning the visits in parallel, one id range per
+ * task, and then kept current from the {@link VisitSavedEvent}s of new visits. The pet
+ * types of the visits saved in a transaction are looked up with a single query just
+ * before it commits, and the counts are only bumped once it has. Each count is a
+ * {@link LongAdder}, so concurrent saves do not contend on it and reading it takes
+ * constant time.
+ * <p>
+ * Visits that are changed or deleted later are not tracked, and neither are visits
+ * whose pet has no type. The scheduled {@link #check()} compares the counts against a
+ * full scan of the table and logs any difference.
+ */
+@Component
+@ConditionalOnProperty(name = "petclinic.visits.rollups.enabled", havingValue = "true", matchIfMissing = true)
+public class VisitRollups implements SmartInitializingSingleton {
+
+	private static final Logger log = LoggerFactory.getLogger(VisitRollups.class);
+
+	private final VisitRepository visits;
+
+	private final int scanThreads;
+
+	private final ConcurrentMap<YearMonth, LongAdder> byMonth = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, LongAdder> byPetType = new ConcurrentHashMap<>();
+
+	private volatile Check lastCheck;
+
+	public VisitRollups(VisitRepository visits,
+			@Value("${petclinic.visits.rollups.scan-threads:4}") int scanThreads) {
+		this.visits = visits;
+		this.scanThreads = Math.max(1, scanThreads);
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		long start = System.currentTimeMillis();
+		Counts counts = scan();
+		counts.byMonth.forEach((month, count) -> counter(this.byMonth, month).add(count));
+		counts.byPetType.forEach((petType, count) -> counter(this.byPetType, petType).add(count));
+		log.info("Counted {} visits for the rollups in {} ms", counts.total, System.currentTimeMillis() - start);
+	}
+
+	@EventListener
+	public void onVisitSaved(VisitSavedEvent event) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			List<Visit> visits = Collections.singletonList(event.getVisit());
+			record(visits, findPetTypes(visits));
+			return;
+		}
+		PendingVisits pending = (PendingVisits) TransactionSynchronizationManager.getResource(this);
+		if (pending == null) {
+			pending = new PendingVisits();
+			TransactionSynchronizationManager.bindResource(this, pending);
+			TransactionSynchronizationManager.registerSynchronization(pending);
+		}
+		pending.visits.add(event.getVisit());
+	}
+
+	/**
+	 * Return the number of visits in the given month.
+	 */
+	public long getVisits(YearMonth month) {
+		LongAdder count = this.byMonth.get(month);
+		return (count != null) ? count.sum() : 0;
+	}
+
+	/**
+	 * Return the number of visits of pets of the given type.
+	 */
+	public long getVisits(String petType) {
+		LongAdder count = this.byPetType.get(petType);
+		return (count != null) ? count.sum() : 0;
+	}
+
+	public SortedMap<YearMonth, Long> getVisitsByMonth() {
+		return snapshot(this.byMonth);
+	}
+
+	public SortedMap<String, Long> getVisitsByPetType() {
+		return snapshot(this.byPetType);
+	}
+
+	/**
+	 * Return the result of the last {@link #check()}, or {@code null} if there has been
+	 * none yet.
+	 */
+	public Check getLastCheck() {
+		return this.lastCheck;
+	}
+
+	/**
+	 * Compare the counts against a full scan of the visits. Visits saved while the scan
+	 * runs may or may not be seen by it, so a count passes if the scan found at least as
+	 * many visits as were counted before it started and at most as many as afterwards.
+	 * @return the result, also kept as the {@link #getLastCheck() last check}
+	 */
+	@Scheduled(initialDelayString = "${petclinic.visits.rollups.check-interval:PT1H}",
+			fixedDelayString = "${petclinic.visits.rollups.check-interval:PT1H}")
+	public Check check() {
+		Map<YearMonth, Long> monthsBefore = getVisitsByMonth();
+		Map<String, Long> petTypesBefore = getVisitsByPetType();
+		Counts scanned = scan();
+		List<String> differences = new ArrayList<>();
+		compare(monthsBefore, scanned.byMonth, getVisitsByMonth(), differences);
+		compare(petTypesBefore, scanned.byPetType, getVisitsByPetType(), differences);
+		Check check = new Check(Instant.now(), differences);
+		if (differences.isEmpty()) {
+			log.debug("Visit rollups match the {} visits in the table", scanned.total);
+		}
+		else {
+			log.warn("Visit rollups differ from the visits table: {}", differences);
+		}
+		this.lastCheck = check;
+		return check;
+	}
+
+	private static <K> void compare(Map<K, Long> before, Map<K, Long> scanned, Map<K, Long> after,
+			List<String> differences) {
+		Set<K> keys = new LinkedHashSet<>(after.keySet());
+		keys.addAll(scanned.keySet());
+		for (K key : keys) {
+			long found = scanned.getOrDefault(key, 0L);
+			if (found < before.getOrDefault(key, 0L) || found > after.getOrDefault(key, 0L)) {
+				differences.add(key + ": " + after.getOrDefault(key, 0L) + " counted, " + found + " in the table");
+			}
+		}
+	}
+
+	/**
+	 * Count all visits, splitting the id range into more tasks than there are threads so
+	 * that gaps in the ids do not leave a thread with all the work.
+	 */
+	private Counts scan() {
+		Counts counts = new Counts();
+		List<Object[]> range = this.visits.findIdRange();
+		if (range.isEmpty() || range.get(0)[0] == null) {
+			return counts;
+		}
+		int min = (Integer) range.get(0)[0];
+		long span = (long) (Integer) range.get(0)[1] - min + 1;
+		int tasks = (int) Math.min(span, this.scanThreads * 4L);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks, this.scanThreads),
+				new CustomizableThreadFactory("visit-rollups-"));
+		try {
+			List<Future<List<Object[]>>> results = new ArrayList<>(tasks);
+			for (int task = 0; task < tasks; task++) {
+				int fromId = (int) (min + span * task / tasks);
+				int toId = (int) (min + span * (task + 1) / tasks - 1);
+				results.add(executor.submit(() -> this.visits.countByMonthAndPetType(fromId, toId)));
+			}
+			for (Future<List<Object[]>> result : results) {
+				counts.add(result.get());
+			}
+			return counts;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while counting visits", ex);
+		}
+		catch (ExecutionException ex) {
+			throw new IllegalStateException("Failed to count visits", ex.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Map<Integer, String> findPetTypes(List<Visit> visits) {
+		Set<Integer> petIds = new HashSet<>();
+		for (Visit visit : visits) {
+			if (visit.getPetId() != null) {
+				petIds.add(visit.getPetId());
+			}
+		}
+		if (petIds.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<Integer, String> petTypes = new HashMap<>();
+		for (Object[] row : this.visits.findPetTypeNames(petIds)) {
+			petTypes.put((Integer) row[0], (String) row[1]);
+		}
+		return petTypes;
+	}
+
+	private void record(List<Visit> visits, Map<Integer, String> petTypes) {
+		for (Visit visit : visits) {
+			// the scan only sees visits of pets with a type, so skip the others here too
+			String petType = petTypes.get(visit.getPetId());
+			if (petType != null) {
+				counter(this.byPetType, petType).increment();
+				if (visit.getDate() != null) {
+					counter(this.byMonth, YearMonth.from(visit.getDate())).increment();
+				}
+			}
+		}
+	}
+
+	private static <K> LongAdder counter(ConcurrentMap<K, LongAdder> counters, K key) {
+		LongAdder counter = counters.get(key);
+		return (counter != null) ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+	}
+
+	private static <K> SortedMap<K, Long> snapshot(Map<K, LongAdder> counters) {
+		SortedMap<K, Long> snapshot = new TreeMap<>();
+		counters.forEach((key, count) -> snapshot.put(key, count.sum()));
+		return snapshot;
+	}
+
+	/**
+	 * Outcome of a {@link VisitRollups#check()}.
+	 */
+	public static final class Check {
+
+		private final Instant time;
+
+		private final List<String> differences;
+
+		Check(Instant time, List<String> differences) {
+			this.time = time;
+			this.differences = Collections.unmodifiableList(differences);
+		}
+
+		public Instant getTime() {
+			return this.time;
+		}
+
+		/**
+		 * Return a description of each count that did not match the table.
+		 */
+		public List<String> getDifferences() {
+			return this.differences;
+		}
+
+		public boolean isConsistent() {
+			return this.differences.isEmpty();
+		}
+
+	}
+
+	/**
+	 * Counts of a scan, before they are added to the rollups.
+	 */
+	private static final class Counts {
+
+		private final Map<YearMonth, Long> byMonth = new HashMap<>();
+
+		private final Map<String, Long> byPetType = new HashMap<>();
+
+		private long total;
+
+		void add(List<Object[]> rows) {
+			for (Object[] row : rows) {
+				long count = (Long) row[3];
+				if (row[0] != null) {
+					this.byMonth.merge(YearMonth.of((Integer) row[0], (Integer) row[1]), count, Long::sum);
+				}
+				this.byPetType.merge((String) row[2], count, Long::sum);
+				this.total += count;
+			}
+		}
+
+	}
+
+	/**
+	 * The visits saved in the current transaction, counted once it commits.
+	 */
+	private final class PendingVisits implements TransactionSynchronization {
+
+		private final List<Visit> visits = new ArrayList<>();
+
+		private Map<Integer, String> petTypes = Collections.emptyMap();
+
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			this.petTypes = findPetTypes(this.visits);
+		}
+
+		@Override
+		public void afterCommit() {
+			record(this.visits, this.petTypes);
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResource(VisitRollups.this);
+		}
+
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Actuator endpoint at {@code /actuator/rollups} serving the {@link VisitRollups} and the
+ * outcome of their last consistency check.
+ */
+@Endpoint(id = "rollups")
+public class VisitRollupsEndpoint {
+
+	private final VisitRollups rollups;
+
+	public VisitRollupsEndpoint(VisitRollups rollups) {
+		this.rollups = rollups;
+	}
+
+	@ReadOperation
+	public Map<String, Object> rollups() {
+		Map<String, Object> rollups = new LinkedHashMap<>();
+		rollups.put("visitsByMonth", this.rollups.getVisitsByMonth());
+		rollups.put("visitsByPetType", this.rollups.getVisitsByPetType());
+		rollups.put("lastCheck", this.rollups.getLastCheck());
+		return rollups;
+	}
+
+}
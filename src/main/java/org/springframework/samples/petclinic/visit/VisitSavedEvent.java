@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visit;
+
+/**
+ * Published by Spring Data when a new {@link Visit} goes through
+ * {@link VisitRepository#save(Visit)}.
+ */
+public class VisitSavedEvent {
+
+	private final Visit visit;
+
+	VisitSavedEvent(Visit visit) {
+		this.visit = visit;
+	}
+
+	public Visit getVisit() {
+		return this.visit;
+	}
+
+}
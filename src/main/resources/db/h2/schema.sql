@@ -5,6 +5,12 @@ DROP TABLE visits IF EXISTS;
 DROP TABLE pets IF EXISTS;
 DROP TABLE types IF EXISTS;
 DROP TABLE owners IF EXISTS;
+DROP SEQUENCE IF EXISTS Vet_seq;
+DROP SEQUENCE IF EXISTS Specialty_seq;
+DROP SEQUENCE IF EXISTS pet_type_seq;
+DROP SEQUENCE IF EXISTS Owner_seq;
+DROP SEQUENCE IF EXISTS Pet_seq;
+DROP SEQUENCE IF EXISTS Visit_seq;
 
 
 CREATE TABLE vets (
@@ -61,4 +67,12 @@ CREATE TABLE visits (
   description VARCHAR(255)
 );
 ALTER TABLE visits ADD CONSTRAINT fk_visits_pets FOREIGN KEY (pet_id) REFERENCES pets (id);
-CREATE INDEX visits_pet_id ON visits (pet_id);
+CREATE INDEX visits_pet_id_visit_date ON visits (pet_id, visit_date);
+
+-- one sequence per entity, see BaseEntity; ids below 100 are reserved for data.sql
+CREATE SEQUENCE Vet_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE Specialty_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE pet_type_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE Owner_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE Pet_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE Visit_seq START WITH 100 INCREMENT BY 50;
@@ -51,5 +51,48 @@ CREATE TABLE IF NOT EXISTS visits (
   pet_id INT(4) UNSIGNED NOT NULL,
   visit_date DATE,
   description VARCHAR(255),
+  INDEX(pet_id, visit_date),
   FOREIGN KEY (pet_id) REFERENCES pets(id)
 ) engine=InnoDB;
+
+-- MySQL has no sequences, so Hibernate emulates the per-entity sequences of BaseEntity
+-- with these tables. The pooled optimizer hands out the 50 ids up to the value it reads
+-- (from the value on when it reads the initial 100), so each value is raised to a multiple
+-- of 50 at least 50 above the highest id of its table. That keeps existing databases from
+-- getting ids they already hold, and starts empty tables, before data.sql, at 100.
+
+CREATE TABLE IF NOT EXISTS Vet_seq (
+  next_val BIGINT
+) engine=InnoDB;
+INSERT INTO Vet_seq SELECT 0 FROM DUAL WHERE NOT EXISTS (SELECT * FROM Vet_seq);
+UPDATE Vet_seq SET next_val = GREATEST(next_val, (SELECT (FLOOR(COALESCE(MAX(id), 0) / 50) + 2) * 50 FROM vets));
+
+CREATE TABLE IF NOT EXISTS Specialty_seq (
+  next_val BIGINT
+) engine=InnoDB;
+INSERT INTO Specialty_seq SELECT 0 FROM DUAL WHERE NOT EXISTS (SELECT * FROM Specialty_seq);
+UPDATE Specialty_seq SET next_val = GREATEST(next_val, (SELECT (FLOOR(COALESCE(MAX(id), 0) / 50) + 2) * 50 FROM specialties));
+
+CREATE TABLE IF NOT EXISTS pet_type_seq (
+  next_val BIGINT
+) engine=InnoDB;
+INSERT INTO pet_type_seq SELECT 0 FROM DUAL WHERE NOT EXISTS (SELECT * FROM pet_type_seq);
+UPDATE pet_type_seq SET next_val = GREATEST(next_val, (SELECT (FLOOR(COALESCE(MAX(id), 0) / 50) + 2) * 50 FROM types));
+
+CREATE TABLE IF NOT EXISTS Owner_seq (
+  next_val BIGINT
+) engine=InnoDB;
+INSERT INTO Owner_seq SELECT 0 FROM DUAL WHERE NOT EXISTS (SELECT * FROM Owner_seq);
+UPDATE Owner_seq SET next_val = GREATEST(next_val, (SELECT (FLOOR(COALESCE(MAX(id), 0) / 50) + 2) * 50 FROM owners));
+
+CREATE TABLE IF NOT EXISTS Pet_seq (
+  next_val BIGINT
+) engine=InnoDB;
+INSERT INTO Pet_seq SELECT 0 FROM DUAL WHERE NOT EXISTS (SELECT * FROM Pet_seq);
+UPDATE Pet_seq SET next_val = GREATEST(next_val, (SELECT (FLOOR(COALESCE(MAX(id), 0) / 50) + 2) * 50 FROM pets));
+
+CREATE TABLE IF NOT EXISTS Visit_seq (
+  next_val BIGINT
+) engine=InnoDB;
+INSERT INTO Visit_seq SELECT 0 FROM DUAL WHERE NOT EXISTS (SELECT * FROM Visit_seq);
+UPDATE Visit_seq SET next_val = GREATEST(next_val, (SELECT (FLOOR(COALESCE(MAX(id), 0) / 50) + 2) * 50 FROM visits));
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.CacheManager;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Checks the SQL statistics, the cache and pool metrics and the method timers against
+ * the whole application, which the slice tests cannot do. Each test runs in a
+ * transaction that is rolled back.
+ */
+@SpringBootTest(properties = "petclinic.sql.statistics.enabled=true")
+@AutoConfigureMockMvc
+@Transactional
+class PetclinicMetricsTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private VetRepository vets;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Test
+	void testVetCacheIsSizedFromEhcacheConfiguration() {
+		ResourcePools pools = this.cacheManager.unwrap(org.ehcache.CacheManager.class).getRuntimeConfiguration()
+				.getCacheConfigurations().get("vets").getResourcePools();
+
+		assertThat(pools.getPoolForResource(ResourceType.Core.HEAP).getUnit()).isEqualTo(EntryUnit.ENTRIES);
+		assertThat(pools.getPoolForResource(ResourceType.Core.OFFHEAP).getUnit()).isEqualTo(MemoryUnit.MB);
+	}
+
+	@Test
+	void testVetCacheIsEvictedOnWriteAndMetered() {
+		this.vets.findAll();
+		double hits = cacheGets("hit");
+		double misses = cacheGets("miss");
+
+		this.vets.findAll();
+		assertThat(cacheGets("hit")).isEqualTo(hits + 1);
+
+		Vet vet = this.vets.findAll().iterator().next();
+		this.vets.save(vet);
+		this.vets.findAll();
+		assertThat(cacheGets("miss")).isEqualTo(misses + 1);
+		assertThat(this.meterRegistry.get("cache.evictions").tag("cache", "vets").functionCounter()).isNotNull();
+	}
+
+	@Test
+	void testSqlStatisticsAreServedByTheEndpoint() throws Exception {
+		this.owners.findByLastName("Davis");
+
+		this.mockMvc.perform(get("/actuator/sql")).andExpect(status().isOk())
+				.andExpect(content().string(containsString("from owners owner0_")));
+		// the pool behind the statistics is still found, and its metrics bound
+		assertThat(DataSourceUnwrapper.unwrap(this.dataSource, HikariDataSource.class)).isNotNull();
+		assertThat(this.meterRegistry.get("hikaricp.connections.max").gauge().value()).isGreaterThan(0);
+	}
+
+	@Test
+	void testRepositoryCallsAreTimedWithLatencyObjectives() {
+		this.owners.findByLastName("Davis");
+
+		Timer timer = this.meterRegistry.get("method.timed").tag("class", "OwnerRepository")
+				.tag("method", "findByLastName").tag("exception", "none").timer();
+		assertThat(timer.count()).isGreaterThanOrEqualTo(1);
+		assertThat(timer.takeSnapshot().histogramCounts())
+				.anySatisfy(bucket -> assertThat(bucket.bucket(TimeUnit.MILLISECONDS)).isEqualTo(5));
+	}
+
+	private double cacheGets(String result) {
+		return this.meterRegistry.get("cache.gets").tag("cache", "vets").tag("result", result).functionCounter()
+				.count();
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic;
+
+import static org.springframework.samples.petclinic.system.SqlQueryResultMatchers.sqlQueries;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.samples.petclinic.system.SqlQueryBudget;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Pins the SQL statements that the owner, pet, visit and vet pages run against the whole
+ * application, so that an N+1 loop fails here rather than in production. The controller
+ * tests cannot check this, as their repositories are mocks. Each page is also checked
+ * against its handler's {@link SqlQueryBudget}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class PetclinicSqlQueryTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void testShowOwnerQueriesDoNotGrowWithPets() throws Exception {
+		// George has one pet, Jean has two with visits
+		mockMvc.perform(get("/owners/{ownerId}", 1)).andExpect(status().isOk()).andExpect(sqlQueries().count(2))
+				.andExpect(sqlQueries().withinBudget());
+		mockMvc.perform(get("/owners/{ownerId}", 6)).andExpect(status().isOk()).andExpect(sqlQueries().count(2))
+				.andExpect(sqlQueries().withinBudget());
+	}
+
+	@Test
+	void testFindOwnersQueriesDoNotGrowWithOwners() throws Exception {
+		mockMvc.perform(get("/owners").param("lastName", "Franklin")).andExpect(status().is3xxRedirection())
+				.andExpect(sqlQueries().count(2)).andExpect(sqlQueries().withinBudget());
+		mockMvc.perform(get("/owners").param("lastName", "Davis")).andExpect(status().isOk())
+				.andExpect(sqlQueries().count(2)).andExpect(sqlQueries().withinBudget());
+	}
+
+	@Test
+	void testOwnerFormsQueryOnlyTheOwner() throws Exception {
+		mockMvc.perform(get("/owners/new")).andExpect(sqlQueries().count(0));
+		mockMvc.perform(get("/owners/find")).andExpect(sqlQueries().count(0));
+		mockMvc.perform(get("/owners/{ownerId}/edit", 1)).andExpect(sqlQueries().count(1));
+	}
+
+	@Test
+	void testPetFormsQueryOnlyTheOwner() throws Exception {
+		// the pet types come from the cache, and so does the pet once it has been loaded
+		mockMvc.perform(get("/owners/{ownerId}/pets/new", 6)).andExpect(status().isOk())
+				.andExpect(sqlQueries().count(1)).andExpect(sqlQueries().withinBudget());
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/edit", 6, 7));
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/edit", 6, 7)).andExpect(status().isOk())
+				.andExpect(sqlQueries().count(1)).andExpect(sqlQueries().withinBudget());
+	}
+
+	@Test
+	void testVetListIsServedFromTheCache() throws Exception {
+		mockMvc.perform(get("/vets.html")).andExpect(status().isOk()).andExpect(sqlQueries().atMost(1))
+				.andExpect(sqlQueries().withinBudget());
+		mockMvc.perform(get("/vets.html")).andExpect(status().isOk()).andExpect(sqlQueries().count(0));
+	}
+
+	@Test
+	void testNewVisitFormQueriesThePetAndItsVisits() throws Exception {
+		mockMvc.perform(get("/owners/*/pets/{petId}/visits/new", 7)).andExpect(status().isOk())
+				.andExpect(sqlQueries().count(2)).andExpect(sqlQueries().withinBudget());
+	}
+
+}
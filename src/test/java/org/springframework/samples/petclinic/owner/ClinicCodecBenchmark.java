@@ -0,0 +1,152 @@
+package org.springframework.samples.petclinic.owner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.visit.Visit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding with the {@link ClinicCodec} against Java serialization, for a
+ * pet as {@link PetRepository#findById} loads it (with its type, owner and
+ * {@value #VISITS} visits) and for the vet list ({@value #VETS} vets sharing
+ * {@value #SPECIALTIES} specialties). The codec decodes from a direct buffer, the way the
+ * off-heap tier of the {@code PetTimedCache} reads it. The encoded sizes are printed
+ * before the run. See the readme for how to run it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ClinicCodecBenchmark {
+
+	private static final int VISITS = 5;
+
+	private static final int VETS = 20;
+
+	private static final int SPECIALTIES = 4;
+
+	@Param({ "pet", "vets" })
+	public String graph;
+
+	@Param({ "codec", "java" })
+	public String format;
+
+	private Object value;
+
+	private byte[] encoded;
+
+	private ByteBuffer direct;
+
+	@Setup
+	public void setup() throws IOException {
+		this.value = "pet".equals(this.graph) ? pet() : vets();
+		this.encoded = encode();
+		this.direct = ByteBuffer.allocateDirect(this.encoded.length);
+		this.direct.put(this.encoded);
+		System.out.printf("%n%s as %s: %d bytes%n", this.graph, this.format, this.encoded.length);
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		if ("java".equals(this.format)) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(this.value);
+			}
+			return bytes.toByteArray();
+		}
+		return this.value instanceof Pet ? ClinicCodec.encode((Pet) this.value)
+				: ClinicCodec.encode(vetList(this.value));
+	}
+
+	@Benchmark
+	public Object decode() throws IOException, ClassNotFoundException {
+		if ("java".equals(this.format)) {
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(this.encoded))) {
+				return in.readObject();
+			}
+		}
+		this.direct.clear();
+		return this.value instanceof Pet ? ClinicCodec.decodePet(this.direct) : ClinicCodec.decodeVets(this.direct);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Vet> vetList(Object value) {
+		return (List<Vet>) value;
+	}
+
+	private static Pet pet() {
+		PetType type = new PetType();
+		type.setId(2);
+		type.setName("dog");
+		Owner owner = new Owner();
+		owner.setId(10_001);
+		owner.setFirstName("George");
+		owner.setLastName("Franklin");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		Pet pet = new Pet();
+		pet.setId(20_001);
+		pet.setName("Leo");
+		pet.setBirthDate(LocalDate.of(2010, 9, 7));
+		pet.setType(type);
+		// as loaded, with the owner's own pets left to the persistence provider
+		pet.setOwner(owner);
+		for (int i = 0; i < VISITS; i++) {
+			Visit visit = new Visit();
+			visit.setId(30_001 + i);
+			visit.setDate(LocalDate.of(2013, 1, 1).plusMonths(i));
+			visit.setDescription(i % 2 == 0 ? "rabies shot" : "check-up");
+			pet.addVisit(visit);
+		}
+		return pet;
+	}
+
+	private static List<Vet> vets() {
+		String[] names = { "radiology", "surgery", "dentistry", "cardiology" };
+		List<Specialty> specialties = new ArrayList<>();
+		for (int i = 0; i < SPECIALTIES; i++) {
+			Specialty specialty = new Specialty();
+			specialty.setId(i + 1);
+			specialty.setName(names[i]);
+			specialties.add(specialty);
+		}
+		List<Vet> vets = new ArrayList<>();
+		for (int i = 0; i < VETS; i++) {
+			Vet vet = new Vet();
+			vet.setId(i + 1);
+			vet.setFirstName("Vet");
+			vet.setLastName("Number " + i);
+			for (int j = 0; j < i % 3; j++) {
+				vet.addSpecialty(specialties.get((i + j) % SPECIALTIES));
+			}
+			vets.add(vet);
+		}
+		return vets;
+	}
+
+}
@@ -0,0 +1,200 @@
+package org.springframework.samples.petclinic.owner;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.visit.Visit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClinicCodecTest {
+
+	@Test
+	void petIsReadBackWithTypeOwnerAndVisits() {
+		Owner owner = owner(7);
+		Pet pet = pet(3, "Leo", type(1, "cat"));
+		owner.getPetsInternal().add(pet);
+		pet.setOwner(owner);
+
+		Pet decoded = ClinicCodec.decodePet(ByteBuffer.wrap(ClinicCodec.encode(pet)));
+
+		assertEquals(3, decoded.getId());
+		assertEquals("Leo", decoded.getName());
+		assertEquals(LocalDate.of(2010, 9, 7), decoded.getBirthDate());
+		assertEquals("cat", decoded.getType().getName());
+		assertEquals(1, decoded.getType().getId());
+		assertEquals(2, decoded.getVisits().size());
+		Visit visit = decoded.getVisits().get(0);
+		assertEquals(31, visit.getId());
+		assertEquals(LocalDate.of(2013, 1, 2), visit.getDate());
+		assertEquals("spayed", visit.getDescription());
+		assertEquals(3, visit.getPetId());
+		assertEquals("Franklin", decoded.getOwner().getLastName());
+		assertEquals("6085551023", decoded.getOwner().getTelephone());
+		assertEquals(Arrays.asList(decoded), decoded.getOwner().getPets());
+	}
+
+	@Test
+	void ownerIsReadBackWithPetsSharingTheirType() {
+		Owner owner = owner(7);
+		PetType dog = type(2, "dog");
+		for (Pet pet : Arrays.asList(pet(3, "Rosy", dog), pet(4, "Jewel", dog), pet(5, "Iggy", type(6, "lizard")))) {
+			owner.getPetsInternal().add(pet);
+			pet.setOwner(owner);
+		}
+
+		Owner decoded = ClinicCodec.decodeOwner(ByteBuffer.wrap(ClinicCodec.encode(owner)));
+
+		assertEquals(7, decoded.getId());
+		assertEquals("George", decoded.getFirstName());
+		assertEquals("110 W. Liberty St.", decoded.getAddress());
+		assertEquals("Madison", decoded.getCity());
+		List<Pet> pets = decoded.getPets();
+		assertEquals(3, pets.size());
+		assertEquals("Iggy", pets.get(0).getName());
+		assertEquals("lizard", pets.get(0).getType().getName());
+		assertSame(pets.get(1).getType(), pets.get(2).getType());
+		assertSame(decoded, pets.get(1).getOwner());
+	}
+
+	@Test
+	void vetsAreReadBackSharingTheirSpecialties() {
+		Specialty radiology = specialty(1, "radiology");
+		Specialty surgery = specialty(2, "surgery");
+		Vet linda = vet(2, "Linda", "Douglas", surgery, radiology);
+		Vet henry = vet(4, "Henry", "Stevens", radiology);
+		Vet james = vet(1, "James", "Carter");
+
+		List<Vet> decoded = ClinicCodec
+				.decodeVets(ByteBuffer.wrap(ClinicCodec.encode(Arrays.asList(linda, henry, james))));
+
+		assertEquals(3, decoded.size());
+		assertEquals("Douglas", decoded.get(0).getLastName());
+		assertEquals(2, decoded.get(0).getNrOfSpecialties());
+		assertEquals("radiology", decoded.get(0).getSpecialties().get(0).getName());
+		assertSame(decoded.get(0).getSpecialties().get(0), decoded.get(1).getSpecialties().get(0));
+		assertEquals(0, decoded.get(2).getNrOfSpecialties());
+	}
+
+	@Test
+	void newEntitiesAndMissingValuesAreReadBackAsNull() {
+		Pet pet = new Pet();
+		pet.setName("Nameless");
+		Visit visit = new Visit();
+		visit.setDate(null);
+		pet.addVisit(visit);
+
+		Pet decoded = ClinicCodec.decodePet(ByteBuffer.wrap(ClinicCodec.encode(pet)));
+
+		assertNull(decoded.getId());
+		assertNull(decoded.getBirthDate());
+		assertNull(decoded.getType());
+		assertNull(decoded.getOwner());
+		assertNull(decoded.getVisits().get(0).getDate());
+		assertNull(decoded.getVisits().get(0).getDescription());
+	}
+
+	@Test
+	void datesBeforeTheEpochAndNonAsciiNamesAreReadBack() {
+		Pet pet = pet(1, "Mäxchen 🐕", type(1, "dog"));
+		pet.setBirthDate(LocalDate.of(1969, 12, 31));
+
+		Pet decoded = ClinicCodec.decodePet(ByteBuffer.wrap(ClinicCodec.encode(pet)));
+
+		assertEquals(LocalDate.of(1969, 12, 31), decoded.getBirthDate());
+		assertEquals("Mäxchen 🐕", decoded.getName());
+	}
+
+	@Test
+	void petIsReadInPlaceFromDirectBuffer() {
+		byte[] encoded = ClinicCodec.encode(pet(300, "Samantha", type(1, "cat")));
+		ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length + 10);
+		buffer.position(5);
+		buffer.put(encoded);
+		buffer.position(5);
+
+		Pet decoded = ClinicCodec.decodePet(buffer.asReadOnlyBuffer());
+
+		assertEquals(300, decoded.getId());
+		assertEquals("Samantha", decoded.getName());
+		assertEquals("neutered", decoded.getVisits().get(1).getDescription());
+	}
+
+	@Test
+	void encodedPetIsFarSmallerThanJavaSerialization() throws IOException {
+		Pet pet = pet(3, "Leo", type(1, "cat"));
+		// as loaded by PetRepository, with the owner's own pets left to the provider
+		pet.setOwner(owner(7));
+
+		ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+			out.writeObject(pet);
+		}
+
+		assertTrue(ClinicCodec.encode(pet).length * 5 < serialized.size());
+	}
+
+	private static Owner owner(int id) {
+		Owner owner = new Owner();
+		owner.setId(id);
+		owner.setFirstName("George");
+		owner.setLastName("Franklin");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		return owner;
+	}
+
+	private static Pet pet(int id, String name, PetType type) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName(name);
+		pet.setBirthDate(LocalDate.of(2010, 9, 7));
+		pet.setType(type);
+		pet.addVisit(visit(id * 10 + 1, LocalDate.of(2013, 1, 2), "spayed"));
+		pet.addVisit(visit(id * 10 + 2, LocalDate.of(2011, 3, 4), "neutered"));
+		return pet;
+	}
+
+	private static Visit visit(int id, LocalDate date, String description) {
+		Visit visit = new Visit();
+		visit.setId(id);
+		visit.setDate(date);
+		visit.setDescription(description);
+		return visit;
+	}
+
+	private static PetType type(int id, String name) {
+		PetType type = new PetType();
+		type.setId(id);
+		type.setName(name);
+		return type;
+	}
+
+	private static Specialty specialty(int id, String name) {
+		Specialty specialty = new Specialty();
+		specialty.setId(id);
+		specialty.setName(name);
+		return specialty;
+	}
+
+	private static Vet vet(int id, String firstName, String lastName, Specialty... specialties) {
+		Vet vet = new Vet();
+		vet.setId(id);
+		vet.setFirstName(firstName);
+		vet.setLastName(lastName);
+		for (Specialty specialty : specialties) {
+			vet.addSpecialty(specialty);
+		}
+		return vet;
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link ClinicExporter}, against the sample data. The batch size is
+ * small so that the persistence context is cleared while the rows are read.
+ */
+@DataJpaTest(properties = "petclinic.export.batch-size=2", includeFilters = @ComponentScan.Filter(
+		value = ClinicExporter.class, type = FilterType.ASSIGNABLE_TYPE))
+class ClinicExporterTests {
+
+	@Autowired
+	private ClinicExporter exporter;
+
+	@Test
+	void shouldExportOwnersFollowedByTheirPetsAndVisitsThenVets() throws IOException {
+		StringWriter out = new StringWriter();
+		long records = this.exporter.exportRecords(ImportRecordWriter.csv(out));
+
+		// 10 owners, 13 pets, 4 visits and 6 vets
+		assertThat(records).isEqualTo(33);
+		String[] lines = out.toString().split("\n");
+		assertThat(lines).hasSize(33);
+		assertThat(lines[0]).isEqualTo("owner,George,Franklin,110 W. Liberty St.,Madison,6085551023");
+		assertThat(lines[1]).isEqualTo("pet,Leo,2010-09-07,cat");
+		assertThat(lines).containsSubsequence("owner,Jean,Coleman,105 N. Lake St.,Monona,6085552654",
+				"pet,Samantha,2012-09-04,cat", "visit,2013-01-01,rabies shot", "visit,2013-01-04,spayed",
+				"pet,Max,2012-09-04,cat", "visit,2013-01-02,rabies shot", "visit,2013-01-03,neutered");
+		assertThat(Arrays.copyOfRange(lines, 27, 33)).containsExactly("vet,James,Carter,", "vet,Helen,Leary,radiology",
+				"vet,Linda,Douglas,dentistry;surgery", "vet,Rafael,Ortega,surgery", "vet,Henry,Stevens,radiology",
+				"vet,Sharon,Jenkins,");
+	}
+
+	@Test
+	void shouldExportNdjsonThatReadsBack() throws IOException {
+		StringWriter out = new StringWriter();
+		ObjectMapper objectMapper = new ObjectMapper();
+		this.exporter.exportRecords(ImportRecordWriter.ndjson(out, objectMapper));
+
+		assertThat(out.toString()).startsWith("{\"kind\":\"owner\",\"firstName\":\"George\",\"lastName\":\"Franklin\","
+				+ "\"address\":\"110 W. Liberty St.\",\"city\":\"Madison\",\"telephone\":\"6085551023\"}\n"
+				+ "{\"kind\":\"pet\",\"name\":\"Leo\",\"birthDate\":\"2010-09-07\",\"type\":\"cat\"}\n");
+		ImportRecordReader reader = ImportRecordReader.ndjson(new StringReader(out.toString()), objectMapper);
+		Map<ImportRecord.Kind, Integer> kinds = new EnumMap<>(ImportRecord.Kind.class);
+		for (ImportRecord record = reader.next(); record != null; record = reader.next()) {
+			kinds.merge(record.getKind(), 1, Integer::sum);
+		}
+		assertThat(kinds).containsEntry(ImportRecord.Kind.OWNER, 10).containsEntry(ImportRecord.Kind.PET, 13)
+				.containsEntry(ImportRecord.Kind.VISIT, 4).containsEntry(ImportRecord.Kind.VET, 6);
+	}
+
+	@Test
+	void shouldQuoteCsvValuesSoTheyReadBack() throws IOException {
+		StringWriter out = new StringWriter();
+		ImportRecordWriter writer = ImportRecordWriter.csv(out);
+		writer.write(ImportRecord.Kind.VISIT, null, "said \"ouch\", twice\nthen slept");
+
+		assertThat(out.toString()).isEqualTo("visit,,\"said \"\"ouch\"\", twice then slept\"\n");
+		ImportRecord record = ImportRecordReader.csv(new StringReader(out.toString())).next();
+		assertThat(record.get("date")).isNull();
+		assertThat(record.get("description")).isEqualTo("said \"ouch\", twice then slept");
+	}
+
+}
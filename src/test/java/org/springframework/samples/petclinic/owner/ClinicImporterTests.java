@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link ClinicImporter}. The importer manages its own transactions, so
+ * the tests run outside of one and use last names no other test uses.
+ */
+@DataJpaTest(properties = "petclinic.import.batch-size=3", includeFilters = {
+		@ComponentScan.Filter(value = ClinicImporter.class, type = FilterType.ASSIGNABLE_TYPE),
+		@ComponentScan.Filter(value = PetTypeDictionary.class, type = FilterType.ASSIGNABLE_TYPE) })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ClinicImporterTests {
+
+	@Autowired
+	private ClinicImporter importer;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private VetRepository vets;
+
+	@Test
+	void shouldImportCsvInBatches() throws IOException {
+		RecordingListener listener = new RecordingListener();
+		ImportProgress progress = this.importer.importRecords(ImportRecordReader.csv(new StringReader(
+				"# owners with their pets and visits\n" + "owner,Ada,Csvimport,1 Main St.,Madison,6085551111\n"
+						+ "pet,Leo,2018-02-01,cat\n" + "visit,2020-03-04,\"rabies shot, booster\"\n"
+						+ "visit,2020-04-05,neutered\n" + "\n" + "owner,Bob,Csvimport,2 Main St.,Madison,6085552222\n"
+						+ "pet,Max,2019-05-06,dog\n")),
+				listener);
+
+		assertThat(listener.rejected).isEmpty();
+		assertThat(progress.getOwners()).isEqualTo(2);
+		assertThat(progress.getPets()).isEqualTo(2);
+		assertThat(progress.getVisits()).isEqualTo(2);
+		assertThat(progress.getLines()).isEqualTo(8);
+		assertThat(listener.batches).isEqualTo(3);
+
+		Collection<Owner> imported = this.owners.findByLastName("Csvimport");
+		assertThat(imported).hasSize(2);
+		Owner ada = imported.stream().filter(owner -> owner.getFirstName().equals("Ada")).findFirst().get();
+		Pet leo = ada.getPet("Leo");
+		assertThat(leo.getType().getName()).isEqualTo("cat");
+		assertThat(this.visits.findByPetId(leo.getId())).extracting("description")
+				.containsExactlyInAnyOrder("rabies shot, booster", "neutered");
+	}
+
+	@Test
+	void shouldRejectInvalidLinesAndCarryOn() throws IOException {
+		RecordingListener listener = new RecordingListener();
+		ImportProgress progress = this.importer.importRecords(ImportRecordReader.csv(new StringReader(
+				"pet,Orphan,2018-02-01,cat\n" + "owner,Cy,Rejectimport,3 Main St.,Madison,not-a-number\n"
+						+ "pet,Stray,2018-02-01,cat\n" + "owner,Di,Rejectimport,4 Main St.,Madison,6085553333\n"
+						+ "pet,Rex,2018-02-01,dragon\n" + "pet,Rex,01/02/2018,dog\n" + "llama,Rex\n"
+						+ "pet,Rex,2018-02-01,dog\n" + "visit,2020-01-01,\n")),
+				listener);
+
+		assertThat(listener.rejected).containsExactly("1: pet has no owner above it",
+				"2: telephone: numeric value out of bounds (<10 digits>.<0 digits> expected)",
+				"3: pet has no owner above it", "5: type: unknown pet type 'dragon'",
+				"6: birthDate: '01/02/2018' is not a date in the form yyyy-MM-dd", "7: unknown record kind 'llama'",
+				"9: description: must not be empty");
+		assertThat(progress.getRejected()).isEqualTo(7);
+		assertThat(progress.getOwners()).isEqualTo(1);
+		assertThat(progress.getPets()).isEqualTo(1);
+		assertThat(this.owners.findByLastName("Rejectimport")).extracting("firstName").containsExactly("Di");
+	}
+
+	@Test
+	void shouldRollBackFailedBatchOnly() throws IOException {
+		StringBuilder tooLong = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			tooLong.append('x');
+		}
+		RecordingListener listener = new RecordingListener();
+		ImportProgress progress = this.importer.importRecords(ImportRecordReader.csv(new StringReader(
+				"owner,Ed,Rollbackimport,5 Main St.,Madison,6085554444\n" + "pet,Leo,2018-02-01,cat\n"
+						+ "visit,2020-01-01,check-up\n" + "owner,Flo,Rollbackimport,6 Main St.,Madison,6085555555\n"
+						+ "pet,Max,2018-02-01,dog\n" + "visit,2020-01-01," + tooLong + "\n" + "visit,2020-02-01,orphaned\n"
+						+ "owner,Gus,Rollbackimport,7 Main St.,Madison,6085556666\n")),
+				listener);
+
+		assertThat(listener.rejected).hasSize(2);
+		assertThat(listener.rejected.get(0)).startsWith("4: batch of lines 4 to 6 rolled back");
+		assertThat(listener.rejected.get(1)).isEqualTo("7: visit has no pet above it");
+		assertThat(progress.getOwners()).isEqualTo(2);
+		assertThat(progress.getRejected()).isEqualTo(4);
+		assertThat(this.owners.findByLastName("Rollbackimport")).extracting("firstName")
+				.containsExactlyInAnyOrder("Ed", "Gus");
+	}
+
+	@Test
+	void shouldImportNdjson() throws IOException {
+		RecordingListener listener = new RecordingListener();
+		ImportProgress progress = this.importer.importRecords(ImportRecordReader.ndjson(new StringReader(
+				"{\"kind\":\"owner\",\"firstName\":\"Hal\",\"lastName\":\"Jsonimport\",\"address\":\"8 Main St.\","
+						+ "\"city\":\"Madison\",\"telephone\":\"6085557777\"}\n"
+						+ "{\"kind\":\"pet\",\"name\":\"Iggy\",\"birthDate\":\"2017-07-07\",\"type\":\"lizard\"}\n"
+						+ "{\"kind\":\"visit\",\"date\":\"2020-01-01\",\"description\":\"shedding\"}\n"
+						+ "{\"kind\":\"visit\"\n"),
+				new ObjectMapper()), listener);
+
+		assertThat(progress.getVisits()).isEqualTo(1);
+		assertThat(listener.rejected).hasSize(1);
+		assertThat(listener.rejected.get(0)).startsWith("4: malformed JSON");
+		assertThat(this.owners.findByLastName("Jsonimport").iterator().next().getPet("Iggy")).isNotNull();
+	}
+
+	@Test
+	void shouldImportVetsWithTheirSpecialties() throws IOException {
+		RecordingListener listener = new RecordingListener();
+		ImportProgress progress = this.importer.importRecords(ImportRecordReader.csv(new StringReader(
+				"vet,Ivy,Vetimport,radiology;surgery\n" + "vet,Jo,Vetimport,\n" + "pet,Leo,2018-02-01,cat\n"
+						+ "vet,Kim,Vetimport,astrology\n")),
+				listener);
+
+		assertThat(listener.rejected).containsExactly("3: pet has no owner above it",
+				"4: specialties: unknown specialty 'astrology'");
+		assertThat(progress.getVets()).isEqualTo(2);
+		Vet ivy = this.vets.findAll().stream().filter(vet -> vet.getLastName().equals("Vetimport"))
+				.filter(vet -> vet.getFirstName().equals("Ivy")).findFirst().get();
+		assertThat(ivy.getSpecialties()).extracting("name").containsExactly("radiology", "surgery");
+	}
+
+	private static class RecordingListener implements ClinicImporter.Listener {
+
+		private final List<String> rejected = new ArrayList<>();
+
+		private int batches;
+
+		@Override
+		public void progress(ImportProgress progress) {
+			this.batches++;
+		}
+
+		@Override
+		public void rejected(long line, String message) {
+			this.rejected.add(line + ": " + message);
+		}
+
+	}
+
+	@TestConfiguration
+	@EnableCaching
+	static class Config {
+
+		@Bean
+		LocalValidatorFactoryBean validator() {
+			return new LocalValidatorFactoryBean();
+		}
+
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link ExportController}
+ */
+@WebMvcTest(ExportController.class)
+class ExportControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private ClinicExporter exporter;
+
+	@BeforeEach
+	void setup() throws Exception {
+		given(this.exporter.exportRecords(any())).willAnswer(invocation -> {
+			ImportRecordWriter writer = invocation.getArgument(0);
+			writer.write(ImportRecord.Kind.OWNER, "George", "Franklin", "110 W. Liberty St.", "Madison", "6085551023");
+			writer.write(ImportRecord.Kind.PET, "Leo", null, "cat");
+			writer.flush();
+			return 2L;
+		});
+	}
+
+	@Test
+	void testExportCsvByDefault() throws Exception {
+		mockMvc.perform(get("/owners/export")).andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith("text/csv"))
+				.andExpect(header().string("Content-Disposition", "attachment; filename=\"petclinic.csv\""))
+				.andExpect(content().string(
+						"owner,George,Franklin,110 W. Liberty St.,Madison,6085551023\n" + "pet,Leo,,cat\n"));
+	}
+
+	@Test
+	void testExportNdjson() throws Exception {
+		mockMvc.perform(get("/owners/export").accept(ImportController.NDJSON)).andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(ImportController.NDJSON))
+				.andExpect(content().string("{\"kind\":\"owner\",\"firstName\":\"George\",\"lastName\":\"Franklin\","
+						+ "\"address\":\"110 W. Liberty St.\",\"city\":\"Madison\",\"telephone\":\"6085551023\"}\n"
+						+ "{\"kind\":\"pet\",\"name\":\"Leo\",\"type\":\"cat\"}\n"));
+	}
+
+	@Test
+	void testExportRejectsOtherMediaTypes() throws Exception {
+		mockMvc.perform(get("/owners/export").accept("application/xml")).andExpect(status().isNotAcceptable());
+	}
+
+}
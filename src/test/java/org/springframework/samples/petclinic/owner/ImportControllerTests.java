@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link ImportController}
+ */
+@WebMvcTest(ImportController.class)
+class ImportControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private ClinicImporter importer;
+
+	@BeforeEach
+	void setup() throws Exception {
+		// read every record and reject the owners, so the response shows what was parsed
+		given(this.importer.importRecords(any(), any())).willAnswer(invocation -> {
+			ImportRecordReader reader = invocation.getArgument(0);
+			ClinicImporter.Listener listener = invocation.getArgument(1);
+			ImportProgress progress = new ImportProgress();
+			for (ImportRecord record = reader.next(); record != null; record = reader.next()) {
+				listener.rejected(record.getLine(), record.getKind() + " " + record.get("lastName"));
+				progress.reject(1);
+			}
+			progress.setLines(reader.getLine());
+			listener.progress(progress);
+			return progress;
+		});
+	}
+
+	@Test
+	void testImportCsv() throws Exception {
+		mockMvc.perform(post("/owners/import").contentType("text/csv")
+				.content("owner,George,Franklin,110 W. Liberty St.,Madison,6085551023\n")).andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(ImportController.NDJSON))
+				.andExpect(content().string("{\"event\":\"rejected\",\"line\":1,\"message\":\"OWNER Franklin\"}\n"
+						+ "{\"event\":\"progress\",\"lines\":1,\"owners\":0,\"pets\":0,\"visits\":0,\"vets\":0,\"rejected\":1}\n"
+						+ "{\"event\":\"done\",\"lines\":1,\"owners\":0,\"pets\":0,\"visits\":0,\"vets\":0,\"rejected\":1}\n"));
+	}
+
+	@Test
+	void testImportNdjson() throws Exception {
+		mockMvc.perform(post("/owners/import").contentType(ImportController.NDJSON)
+				.content("{\"kind\":\"owner\",\"lastName\":\"Davis\"}\n")).andExpect(status().isOk())
+				.andExpect(content().string(startsWith(
+						"{\"event\":\"rejected\",\"line\":1,\"message\":\"OWNER Davis\"}\n")));
+	}
+
+	@Test
+	void testImportRejectsOtherContentTypes() throws Exception {
+		mockMvc.perform(post("/owners/import").contentType("text/plain").content("owner,George"))
+				.andExpect(status().isUnsupportedMediaType());
+	}
+
+}
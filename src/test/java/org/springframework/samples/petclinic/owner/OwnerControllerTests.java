@@ -17,6 +17,7 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -28,17 +29,27 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.samples.petclinic.visit.Visit;
 import org.springframework.samples.petclinic.visit.VisitRepository;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.hasToString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
@@ -48,7 +59,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  *
  * @author Colin But
  */
-@WebMvcTest(OwnerController.class)
+@WebMvcTest(value = OwnerController.class,
+		includeFilters = {
+	@ComponentScan.Filter(value = OwnerFinder.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = PetVisitLoader.class, type = FilterType.ASSIGNABLE_TYPE)
+	}
+	)
 class OwnerControllerTests {
 
 	private static final int TEST_OWNER_ID = 1;
@@ -84,7 +100,8 @@ class OwnerControllerTests {
 		given(this.owners.findById(TEST_OWNER_ID)).willReturn(george);
 		Visit visit = new Visit();
 		visit.setDate(LocalDate.now());
-		given(this.visits.findByPetId(max.getId())).willReturn(Collections.singletonList(visit));
+		visit.setPetId(max.getId());
+		given(this.visits.findByPetIdIn(anyCollection())).willReturn(Collections.singletonList(visit));
 	}
 
 	@Test
@@ -118,13 +135,58 @@ class OwnerControllerTests {
 
 	@Test
 	void testProcessFindFormSuccess() throws Exception {
-		given(this.owners.findByLastName("")).willReturn(Lists.newArrayList(george, new Owner()));
-		mockMvc.perform(get("/owners")).andExpect(status().isOk()).andExpect(view().name("owners/ownersList"));
+		Owner betty = owner(2, "Davis");
+		given(this.owners.findCursorsByLastName(eq(""), any()))
+				.willReturn(Lists.newArrayList(cursor(george), cursor(betty)));
+		given(this.owners.findSummaryRowsByIdIn(anyCollection()))
+				.willReturn(Lists.newArrayList(row(george, "Max"), row(betty, null)));
+		mockMvc.perform(get("/owners")).andExpect(status().isOk()).andExpect(view().name("owners/ownersList"))
+				.andExpect(model().attribute("selections", contains(summary(george, "Max"), summary(betty))))
+				.andExpect(model().attribute("page", hasProperty("previous", nullValue())))
+				.andExpect(model().attribute("page", hasProperty("next", nullValue())));
+	}
+
+	@Test
+	void testProcessFindFormNextPage() throws Exception {
+		Owner betty = owner(2, "Davis");
+		Owner harold = owner(4, "Davis");
+		given(this.owners.findCursorsByLastNameAfter(eq(""), eq("Franklin"), eq(TEST_OWNER_ID), any()))
+				.willReturn(Lists.newArrayList(cursor(betty), cursor(harold), cursor(owner(5, "Davis"))));
+		given(this.owners.findSummaryRowsByIdIn(anyCollection()))
+				.willReturn(Lists.newArrayList(row(betty, "Basil"), row(betty, "Aster"), row(harold, null)));
+		mockMvc.perform(get("/owners").param("after", "1:Franklin").param("size", "2")).andExpect(status().isOk())
+				.andExpect(view().name("owners/ownersList"))
+				.andExpect(model().attribute("selections",
+						contains(summary(betty, "Aster", "Basil"), summary(harold))))
+				.andExpect(model().attribute("page", hasProperty("previous", hasToString("2:Davis"))))
+				.andExpect(model().attribute("page", hasProperty("next", hasToString("4:Davis"))))
+				.andExpect(content().string(containsString("before=2:Davis&amp;size=2")))
+				.andExpect(content().string(containsString("after=4:Davis&amp;size=2")));
+	}
+
+	@Test
+	void testProcessFindFormPageOfDeletedOwners() throws Exception {
+		// the owners were deleted between finding their ids and loading them
+		given(this.owners.findCursorsByLastNameAfter(eq(""), eq("Franklin"), eq(TEST_OWNER_ID), any()))
+				.willReturn(Lists.newArrayList(cursor(owner(2, "Davis")), cursor(owner(4, "Davis")),
+						cursor(owner(5, "Davis"))));
+		mockMvc.perform(get("/owners").param("after", "1:Franklin").param("size", "2")).andExpect(status().isOk())
+				.andExpect(model().attribute("selections", empty()))
+				.andExpect(model().attribute("page", hasProperty("next", hasToString("4:Davis"))));
+	}
+
+	@Test
+	void testProcessFindFormRejectsMalformedCursor() throws Exception {
+		mockMvc.perform(get("/owners").param("after", "Franklin")).andExpect(status().isBadRequest());
+		mockMvc.perform(get("/owners").param("before", "x:Davis")).andExpect(status().isBadRequest());
 	}
 
 	@Test
 	void testProcessFindFormByLastName() throws Exception {
-		given(this.owners.findByLastName(george.getLastName())).willReturn(Lists.newArrayList(george));
+		given(this.owners.findCursorsByLastName(eq(george.getLastName()), any()))
+				.willReturn(Lists.newArrayList(cursor(george)));
+		given(this.owners.findSummaryRowsByIdIn(anyCollection()))
+				.willReturn(Collections.singletonList(row(george, "Max")));
 		mockMvc.perform(get("/owners").param("lastName", "Franklin")).andExpect(status().is3xxRedirection())
 				.andExpect(view().name("redirect:/owners/" + TEST_OWNER_ID));
 	}
@@ -196,4 +258,26 @@ class OwnerControllerTests {
 				}))).andExpect(view().name("owners/ownerDetails"));
 	}
 
+	private static Owner owner(int id, String lastName) {
+		Owner owner = new Owner();
+		owner.setId(id);
+		owner.setFirstName("First");
+		owner.setLastName(lastName);
+		return owner;
+	}
+
+	private static OwnerCursor cursor(Owner owner) {
+		return new OwnerCursor(owner.getLastName(), owner.getId());
+	}
+
+	private static Object[] row(Owner owner, String petName) {
+		return new Object[] { owner.getId(), owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+				owner.getCity(), owner.getTelephone(), petName };
+	}
+
+	private static OwnerSummary summary(Owner owner, String... petNames) {
+		return new OwnerSummary(owner.getId(), owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+				owner.getCity(), owner.getTelephone(), Arrays.asList(petNames));
+	}
+
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.extras.java8time.dialect.Java8TimeDialect;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+/**
+ * Renders the {@code owners/ownerDetails} template for an owner with {@code pets} pets
+ * of {@code visits} visits each, which walks {@link Owner#getPets()} and
+ * {@link Pet#getVisits()} for every row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OwnerDetailsRenderingBenchmark {
+
+	private static final Writer NULL_WRITER = new Writer() {
+
+		@Override
+		public void write(char[] buffer, int offset, int length) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+	};
+
+	@Param({ "5", "50" })
+	public int pets;
+
+	@Param({ "20" })
+	public int visits;
+
+	private SpringTemplateEngine engine;
+
+	private WebContext context;
+
+	@Setup
+	public void setup() {
+		ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+		resolver.setPrefix("templates/");
+		resolver.setSuffix(".html");
+		resolver.setTemplateMode(TemplateMode.HTML);
+		resolver.setCacheable(true);
+		this.engine = new SpringTemplateEngine();
+		this.engine.setTemplateResolver(resolver);
+		this.engine.addDialect(new Java8TimeDialect());
+
+		MockServletContext servletContext = new MockServletContext();
+		this.context = new WebContext(new MockHttpServletRequest(servletContext), new MockHttpServletResponse(),
+				servletContext, Locale.ENGLISH, Collections.singletonMap("owner", owner()));
+	}
+
+	@Benchmark
+	public void ownerDetails() {
+		this.engine.process("owners/ownerDetails", this.context, NULL_WRITER);
+	}
+
+	private Owner owner() {
+		Owner owner = new Owner();
+		owner.setId(1);
+		owner.setFirstName("George");
+		owner.setLastName("Franklin");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		PetType type = new PetType();
+		type.setId(1);
+		type.setName("cat");
+		LocalDate today = LocalDate.of(2020, 1, 1);
+		for (int p = 0; p < this.pets; p++) {
+			Pet pet = new Pet();
+			pet.setName("pet-" + (this.pets - p));
+			pet.setType(type);
+			pet.setBirthDate(today.minusYears(3));
+			owner.addPet(pet);
+			pet.setId(p + 1);
+			for (int v = 0; v < this.visits; v++) {
+				Visit visit = new Visit();
+				visit.setId(p * this.visits + v + 1);
+				visit.setDate(today.minusDays(v * 7L));
+				visit.setDescription("check-up " + v);
+				pet.addVisit(visit);
+			}
+		}
+		return owner;
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Prefix lookups against an {@link OwnerLastNameIndex} holding one million synthetic
+ * owners. Each lookup fetches one page of {@link OwnerFinder#DEFAULT_PAGE_SIZE} ids for a
+ * random prefix of {@code prefixLength} characters, optionally seeking past a cursor in
+ * the middle of the matching range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OwnerLastNameIndexBenchmark {
+
+	private static final int OWNERS = 1_000_000;
+
+	private static final String[] SYLLABLES = { "an", "ber", "co", "da", "el", "fi", "gar", "ha", "in", "jo",
+			"ka", "le", "ma", "no", "ol", "pe", "qu", "ri", "son", "ta", "ul", "ve", "wi", "xa", "yo", "ze" };
+
+	@Param({ "1", "3", "5" })
+	public int prefixLength;
+
+	private OwnerLastNameIndex index;
+
+	private String[] names;
+
+	private int next;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		this.index = new OwnerLastNameIndex(null);
+		this.names = new String[OWNERS];
+		for (int id = 0; id < OWNERS; id++) {
+			StringBuilder name = new StringBuilder();
+			int syllables = 2 + random.nextInt(3);
+			for (int i = 0; i < syllables; i++) {
+				name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+			}
+			name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+			this.names[id] = name.toString();
+			this.index.put(id, this.names[id]);
+		}
+	}
+
+	@Benchmark
+	public List<OwnerCursor> firstPage() {
+		return this.index.findCursors(nextPrefix(), null, OwnerFinder.DEFAULT_PAGE_SIZE);
+	}
+
+	@Benchmark
+	public List<OwnerCursor> pageAfterCursor() {
+		int id = nextId();
+		String name = this.names[id];
+		return this.index.findCursors(prefix(name), new OwnerCursor(name, id), OwnerFinder.DEFAULT_PAGE_SIZE);
+	}
+
+	private String nextPrefix() {
+		return prefix(this.names[nextId()]);
+	}
+
+	private String prefix(String name) {
+		return name.substring(0, Math.min(this.prefixLength, name.length()));
+	}
+
+	private int nextId() {
+		this.next = (this.next + 7919) % OWNERS;
+		return this.next;
+	}
+
+}
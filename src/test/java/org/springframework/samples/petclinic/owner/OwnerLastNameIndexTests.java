@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link OwnerLastNameIndex}
+ */
+@DataJpaTest(properties = "petclinic.owners.last-name-index.enabled=true",
+		includeFilters = @ComponentScan.Filter(value = OwnerLastNameIndex.class, type = FilterType.ASSIGNABLE_TYPE))
+class OwnerLastNameIndexTests {
+
+	@Autowired
+	private OwnerLastNameIndex index;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Test
+	void shouldBeBuiltAtStartup() {
+		assertThat(this.index.size()).isGreaterThanOrEqualTo(10);
+		assertThat(ids(this.index.findCursors("Davis", null, 10))).containsExactly(2, 4);
+		assertThat(ids(this.index.findCursors("", null, 3))).containsExactly(7, 6, 2);
+	}
+
+	@Test
+	void shouldMatchPrefixIgnoringCase() {
+		OwnerLastNameIndex index = new OwnerLastNameIndex(this.owners);
+		index.put(1, "McTavish");
+		index.put(2, "mcdonald");
+		index.put(3, "MCA");
+		index.put(4, "Mc");
+		index.put(5, "Md");
+		assertThat(ids(index.findCursors("mc", null, 10))).containsExactly(4, 3, 2, 1);
+		assertThat(ids(index.findCursors("MCT", null, 10))).containsExactly(1);
+		assertThat(index.findCursors("MCT", null, 10)).extracting(OwnerCursor::getLastName)
+				.containsExactly("McTavish");
+		assertThat(ids(index.findCursors("x", null, 10))).isEmpty();
+	}
+
+	@Test
+	void shouldSeekAfterAndBeforeCursor() {
+		OwnerLastNameIndex index = new OwnerLastNameIndex(this.owners);
+		for (int id = 1; id <= 6; id++) {
+			index.put(id, "Davis");
+		}
+		index.put(7, "Black");
+		index.put(8, "Estaban");
+
+		assertThat(ids(index.findCursors("Da", new OwnerCursor("Davis", 2), 3))).containsExactly(3, 4, 5);
+		assertThat(ids(index.findCursors("Da", new OwnerCursor("Black", 7), 2))).containsExactly(1, 2);
+		assertThat(ids(index.findCursors("Da", new OwnerCursor("Estaban", 8), 2))).isEmpty();
+		assertThat(ids(index.findCursorsBefore("Da", new OwnerCursor("Davis", 5), 3))).containsExactly(4, 3, 2);
+		assertThat(ids(index.findCursorsBefore("Da", new OwnerCursor("Estaban", 8), 2))).containsExactly(6, 5);
+		assertThat(ids(index.findCursorsBefore("", new OwnerCursor("Davis", 1), 5))).containsExactly(7);
+	}
+
+	@Test
+	void shouldMoveOwnerWhenRenamed() {
+		OwnerLastNameIndex index = new OwnerLastNameIndex(this.owners);
+		index.put(1, "Davis");
+		index.put(1, "Franklin");
+		assertThat(ids(index.findCursors("Davis", null, 10))).isEmpty();
+		assertThat(ids(index.findCursors("Franklin", null, 10))).containsExactly(1);
+		assertThat(index.size()).isEqualTo(1);
+	}
+
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	void shouldFollowSavedOwners() {
+		Owner owner = new Owner();
+		owner.setFirstName("Sam");
+		owner.setLastName("Schultz");
+		owner.setAddress("4, Evans Street");
+		owner.setCity("Wollongong");
+		owner.setTelephone("4444444444");
+		this.owners.save(owner);
+		assertThat(ids(this.index.findCursors("schu", null, 10))).containsExactly(owner.getId());
+
+		owner.setLastName("Zimmer");
+		this.owners.save(owner);
+		assertThat(ids(this.index.findCursors("schu", null, 10))).isEmpty();
+		assertThat(ids(this.index.findCursors("Zim", null, 10))).containsExactly(owner.getId());
+	}
+
+	private static List<Integer> ids(List<OwnerCursor> cursors) {
+		return cursors.stream().map(OwnerCursor::getId).collect(Collectors.toList());
+	}
+
+}
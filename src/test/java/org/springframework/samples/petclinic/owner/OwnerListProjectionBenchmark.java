@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Loads the owner list for {@value #OWNERS} owners of {@value #PETS_PER_OWNER} pets each
+ * from the in-memory H2 database, once as managed {@link Owner} and {@link Pet} entities
+ * ({@link OwnerRepository#findByLastName(String)}) and once as {@link OwnerSummary}
+ * projections of the same owners, with the rows that
+ * {@link OwnerRepository#findSummaryRowsByIdIn(Collection)} reads. Each load runs
+ * in a read-only transaction, as it would in a request, and reads the pet names the list
+ * shows.
+ * <p>
+ * Run with {@code -prof gc} to compare the bytes allocated per load
+ * ({@code gc.alloc.rate.norm}) along with the latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OwnerListProjectionBenchmark {
+
+	private static final int OWNERS = 50_000;
+
+	private static final int PETS_PER_OWNER = 2;
+
+	private static final String SUMMARY_ROWS_BY_LAST_NAME = "SELECT owner.id, owner.firstName, owner.lastName, "
+			+ "owner.address, owner.city, owner.telephone, pet.name FROM Owner owner LEFT JOIN owner.pets pet "
+			+ "WHERE owner.lastName LIKE 'Benchmark%' ORDER BY owner.lastName, owner.id";
+
+	private ConfigurableApplicationContext context;
+
+	private OwnerRepository owners;
+
+	private EntityManager entityManager;
+
+	private TransactionTemplate transactions;
+
+	@Setup
+	public void setup() {
+		this.context = new SpringApplicationBuilder(Config.class).web(WebApplicationType.NONE)
+				.properties("spring.datasource.url=jdbc:h2:mem:owner-list-benchmark", "logging.level.root=warn")
+				.run();
+		JdbcTemplate jdbc = this.context.getBean(JdbcTemplate.class);
+		// ids above the sample data's
+		for (int owner = 1000; owner < 1000 + OWNERS; owner++) {
+			jdbc.update("INSERT INTO owners VALUES (?, 'First', 'Benchmark', '1 Main St.', 'Madison', '6085551023')",
+					owner);
+			for (int pet = 0; pet < PETS_PER_OWNER; pet++) {
+				jdbc.update("INSERT INTO pets VALUES (?, ?, '2015-01-01', 1, ?)", owner * PETS_PER_OWNER + pet,
+						"pet-" + pet, owner);
+			}
+		}
+		this.owners = this.context.getBean(OwnerRepository.class);
+		this.entityManager = SharedEntityManagerCreator
+				.createSharedEntityManager(this.context.getBean(EntityManagerFactory.class));
+		this.transactions = new TransactionTemplate(this.context.getBean(PlatformTransactionManager.class));
+		this.transactions.setReadOnly(true);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public void entities(Blackhole blackhole) {
+		this.transactions.executeWithoutResult(status -> {
+			Collection<Owner> owners = this.owners.findByLastName("Benchmark");
+			for (Owner owner : owners) {
+				for (Pet pet : owner.getPets()) {
+					blackhole.consume(pet.getName());
+				}
+			}
+		});
+	}
+
+	@Benchmark
+	public void projections(Blackhole blackhole) {
+		this.transactions.executeWithoutResult(status -> {
+			List<OwnerSummary> owners = OwnerSummary.fromRows(
+					this.entityManager.createQuery(SUMMARY_ROWS_BY_LAST_NAME, Object[].class).getResultList());
+			for (OwnerSummary owner : owners) {
+				for (String petName : owner.getPetNames()) {
+					blackhole.consume(petName);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Just the JPA side of the application: scanning the whole application would also
+	 * pick up the test configurations next to this class. Being a test configuration
+	 * keeps it out of the application's own scan in the tests.
+	 */
+	@TestConfiguration
+	@EnableAutoConfiguration
+	@EntityScan(basePackageClasses = PetClinicApplication.class)
+	@EnableJpaRepositories(basePackageClasses = OwnerRepository.class)
+	static class Config {
+
+	}
+
+}
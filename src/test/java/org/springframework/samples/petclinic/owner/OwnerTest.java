@@ -1,7 +1,37 @@
 package org.springframework.samples.petclinic.owner;
 
+import org.junit.jupiter.api.Test;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class OwnerTest {
 
+	@Test
+	void petsAreSortedByNameIgnoringCase() {
+		Owner owner = new Owner();
+		owner.addPet(pet("leo"));
+		owner.addPet(pet("Basil"));
+		assertEquals("Basil", owner.getPets().get(0).getName());
+		assertSame(owner.getPets(), owner.getPets());
+
+		Pet max = pet("Max");
+		owner.addPet(max);
+		assertEquals(3, owner.getPets().size());
+		assertEquals("Max", owner.getPets().get(2).getName());
+
+		max.setName("Alf");
+		owner.addPet(max);
+		assertSame(max, owner.getPets().get(0));
+
+		owner.removePet(max);
+		assertEquals(2, owner.getPets().size());
+		assertThrows(UnsupportedOperationException.class, () -> owner.getPets().clear());
+	}
+
+	private static Pet pet(String name) {
+		Pet pet = new Pet();
+		pet.setName(name);
+		return pet;
+	}
+
 }
@@ -17,6 +17,8 @@
 package org.springframework.samples.petclinic.owner;
 
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
@@ -27,8 +29,13 @@ import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
 import org.springframework.samples.petclinic.utility.PetTimedCache;
@@ -42,11 +49,13 @@ import org.springframework.test.web.servlet.MockMvc;
 @WebMvcTest(value = PetController.class,
 		includeFilters = {
 	@ComponentScan.Filter(value = PetTypeFormatter.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = PetTypeDictionary.class, type = FilterType.ASSIGNABLE_TYPE),
 	@ComponentScan.Filter(value = PetService.class, type = FilterType.ASSIGNABLE_TYPE),
 	@ComponentScan.Filter(value = LoggerConfig.class, type = FilterType.ASSIGNABLE_TYPE),
 	@ComponentScan.Filter(value = PetTimedCache.class, type = FilterType.ASSIGNABLE_TYPE),
 	}
 	)
+@AutoConfigureCache(cacheProvider = CacheType.SIMPLE)
 class PetControllerTests {
 
 	private static final int TEST_OWNER_ID = 1;
@@ -62,8 +71,12 @@ class PetControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@Autowired
+	private CacheManager cacheManager;
+
 	@BeforeEach
 	void setup() {
+		this.cacheManager.getCache(PetTypeDictionary.CACHE_NAME).clear();
 		PetType cat = new PetType();
 		cat.setId(3);
 		cat.setName("hamster");
@@ -97,6 +110,16 @@ class PetControllerTests {
 				.andExpect(view().name("pets/createOrUpdatePetForm"));
 	}
 
+	@Test
+	void testPetTypesAreQueriedOnceAcrossRequests() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}/pets/new", TEST_OWNER_ID)).andExpect(status().isOk());
+		mockMvc.perform(post("/owners/{ownerId}/pets/new", TEST_OWNER_ID).param("name", "Betty")
+				.param("type", "hamster").param("birthDate", "2015-02-12")).andExpect(status().is3xxRedirection());
+		mockMvc.perform(post("/owners/{ownerId}/pets/{petId}/edit", TEST_OWNER_ID, TEST_PET_ID).param("name", "Betty")
+				.param("type", "hamster").param("birthDate", "2015-02-12")).andExpect(status().is3xxRedirection());
+		verify(this.pets, times(1)).findPetTypes();
+	}
+
 	@Test
 	void testInitUpdateForm() throws Exception {
 		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/edit", TEST_OWNER_ID, TEST_PET_ID))
@@ -119,4 +142,14 @@ class PetControllerTests {
 				.andExpect(view().name("pets/createOrUpdatePetForm"));
 	}
 
+	/**
+	 * Test slices do not pick up the application's cache configuration, so enable
+	 * caching here to give {@link PetTypeDictionary} a cache manager.
+	 */
+	@TestConfiguration
+	@EnableCaching
+	static class CachingConfig {
+
+	}
+
 }
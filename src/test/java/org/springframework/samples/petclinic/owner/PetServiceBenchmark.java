@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
+
+/**
+ * Throughput of {@link PetService#findPet(int)} served from a warm {@link PetTimedCache}.
+ * <p>
+ * {@code level=DEBUG} writes every hit the way the read path used to log at INFO, while
+ * {@code level=INFO} is the default configuration where the guarded debug statements
+ * cost nothing. {@code appender} compares a synchronous appender with the
+ * {@link AsyncAppender} configured in {@code logback-spring.xml}. Events are encoded and
+ * then discarded so that the numbers do not depend on the console. See the readme for how
+ * to run it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PetServiceBenchmark {
+
+	private static final int PETS = 1024;
+
+	@Param({ "DEBUG", "INFO" })
+	public String level;
+
+	@Param({ "sync", "async" })
+	public String appender;
+
+	private PetService petService;
+
+	private int next;
+
+	@Setup
+	public void setup() {
+		configureLogging(Level.valueOf(this.level), "async".equals(this.appender));
+		PetTimedCache cache = new PetTimedCache(TimeUnit.HOURS.toMillis(1), PETS, new InMemoryPetRepository());
+		Logger criticalLogger = new LoggerConfig().getLogger();
+		this.petService = new PetService(cache, null, criticalLogger);
+		for (int i = 0; i < PETS; i++) {
+			this.petService.findPet(petId(i));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		((LoggerContext) LoggerFactory.getILoggerFactory()).reset();
+	}
+
+	@Benchmark
+	public Pet findPet() {
+		return this.petService.findPet(petId(this.next++ & (PETS - 1)));
+	}
+
+	// ids well outside the Integer cache, like production ids
+	private static int petId(int i) {
+		return 10_000 + i;
+	}
+
+	private static void configureLogging(Level level, boolean async) {
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.reset();
+		PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+		encoder.setContext(context);
+		encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} %5p [%t] %logger{39} : %m%n");
+		encoder.start();
+		OutputStreamAppender<ILoggingEvent> output = new OutputStreamAppender<>();
+		output.setContext(context);
+		output.setEncoder(encoder);
+		output.setOutputStream(new NullOutputStream());
+		output.start();
+		Appender<ILoggingEvent> root = output;
+		if (async) {
+			AsyncAppender asyncAppender = new AsyncAppender();
+			asyncAppender.setContext(context);
+			asyncAppender.setQueueSize(8192);
+			asyncAppender.setDiscardingThreshold(0);
+			asyncAppender.setNeverBlock(true);
+			asyncAppender.addAppender(output);
+			asyncAppender.start();
+			root = asyncAppender;
+		}
+		ch.qos.logback.classic.Logger rootLogger = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+		rootLogger.setLevel(level);
+		rootLogger.addAppender(root);
+	}
+
+	private static class InMemoryPetRepository implements PetRepository {
+
+		@Override
+		public List<PetType> findPetTypes() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Pet findById(Integer id) {
+			Pet pet = new Pet();
+			pet.setId(id);
+			pet.setName("pet-" + id);
+			return pet;
+		}
+
+		@Override
+		public void save(Pet pet) {
+		}
+
+	}
+
+}
@@ -4,8 +4,101 @@ import org.junit.jupiter.api.Test;
 import org.springframework.samples.petclinic.visit.Visit;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class PetTest {
 
-	// todo
+	@Test
+	void visitsAreSortedMostRecentFirst() {
+		Pet pet = new Pet();
+		pet.setId(1);
+		Visit older = visit(1, LocalDate.of(2020, 1, 1));
+		Visit newer = visit(2, LocalDate.of(2020, 6, 1));
+		pet.setVisitsInternal(Arrays.asList(older, newer));
+		assertEquals(Arrays.asList(newer, older), pet.getVisits());
+
+		Visit newest = visit(3, LocalDate.of(2021, 1, 1));
+		pet.addVisit(newest);
+		assertEquals(Arrays.asList(newest, newer, older), pet.getVisits());
+		assertEquals(1, newest.getPetId());
+
+		pet.removeVisit(newer);
+		assertEquals(Arrays.asList(newest, older), pet.getVisits());
+	}
+
+	@Test
+	void visitsAreSortedAgainWhenAddedAfterADateChange() {
+		Pet pet = new Pet();
+		Visit older = visit(1, LocalDate.of(2020, 1, 1));
+		Visit newer = visit(2, LocalDate.of(2020, 6, 1));
+		Visit moved = new Visit();
+		pet.setVisitsInternal(Arrays.asList(older, newer));
+		pet.addVisit(moved);
+
+		moved.setDate(LocalDate.of(2019, 1, 1));
+		pet.addVisit(moved);
+
+		assertEquals(Arrays.asList(newer, older, moved), pet.getVisits());
+		assertEquals(Arrays.asList(moved), pet.getVisitsBetween(LocalDate.of(2018, 12, 31), LocalDate.of(2020, 1, 1)));
+		assertEquals(3, pet.getVisitsBetween(LocalDate.of(2018, 1, 1), LocalDate.of(2021, 1, 1)).size());
+	}
+
+	@Test
+	void visitsCanBeAddedWhileIterating() {
+		Pet pet = new Pet();
+		pet.setVisitsInternal(Arrays.asList(visit(1, LocalDate.of(2020, 1, 1)), visit(2, LocalDate.of(2020, 6, 1))));
+
+		for (Visit visit : pet.getVisits()) {
+			pet.addVisit(visit(visit.getId() + 10, visit.getDate().plusDays(1)));
+		}
+
+		assertEquals(4, pet.getVisits().size());
+	}
+
+	@Test
+	void visitsBetweenExcludeBothEnds() {
+		Pet pet = new Pet();
+		Visit first = visit(1, LocalDate.of(2020, 1, 1));
+		Visit second = visit(2, LocalDate.of(2020, 2, 1));
+		Visit third = visit(3, LocalDate.of(2020, 2, 1));
+		Visit fourth = visit(4, LocalDate.of(2020, 3, 1));
+		Visit undated = visit(5, null);
+		pet.setVisitsInternal(Arrays.asList(fourth, undated, first, third, second));
+
+		List<Visit> between = pet.getVisitsBetween(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 3, 1));
+		assertEquals(2, between.size());
+		assertTrue(between.containsAll(Arrays.asList(second, third)));
+		List<Visit> all = pet.getVisitsBetween(LocalDate.of(2019, 12, 31), LocalDate.of(2020, 3, 2));
+		assertEquals(4, all.size());
+		assertEquals(fourth, all.get(0));
+		assertEquals(first, all.get(3));
+		assertTrue(pet.getVisitsBetween(LocalDate.of(2020, 3, 1), LocalDate.of(2020, 1, 1)).isEmpty());
+	}
+
+	@Test
+	void visitsUntilAgeStopAtTheBirthday() {
+		Pet pet = new Pet();
+		pet.setBirthDate(LocalDate.of(2016, 2, 29));
+		Visit puppy = visit(1, LocalDate.of(2016, 6, 1));
+		Visit lastDayAsOne = visit(2, LocalDate.of(2018, 2, 28));
+		Visit secondBirthday = visit(3, LocalDate.of(2018, 3, 1));
+		pet.setVisitsInternal(Arrays.asList(puppy, lastDayAsOne, secondBirthday));
+
+		assertEquals(LocalDate.of(2018, 3, 1), pet.getBirthday(2));
+		assertEquals(LocalDate.of(2020, 2, 29), pet.getBirthday(4));
+		assertEquals(Arrays.asList(lastDayAsOne, puppy), pet.getVisitsUntilAge(2));
+		assertEquals(Arrays.asList(secondBirthday, lastDayAsOne, puppy), pet.getVisitsUntilAge(3));
+		assertTrue(pet.getVisitsUntilAge(0).isEmpty());
+	}
+
+	private static Visit visit(int id, LocalDate date) {
+		Visit visit = new Visit();
+		visit.setId(id);
+		visit.setDate(date);
+		return visit;
+	}
+
 }
@@ -28,9 +28,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Test class for {@link PetTypeFormatter}
@@ -47,7 +50,8 @@ class PetTypeFormatterTests {
 
 	@BeforeEach
 	void setup() {
-		this.petTypeFormatter = new PetTypeFormatter(pets);
+		this.petTypeFormatter = new PetTypeFormatter(
+				new PetTypeDictionary(pets, new ConcurrentMapCacheManager(PetTypeDictionary.CACHE_NAME)));
 	}
 
 	@Test
@@ -73,6 +77,14 @@ class PetTypeFormatterTests {
 		});
 	}
 
+	@Test
+	void shouldQueryPetTypesOnlyOnce() throws ParseException {
+		given(this.pets.findPetTypes()).willReturn(makePetTypes());
+		petTypeFormatter.parse("Bird", Locale.ENGLISH);
+		petTypeFormatter.parse("Dog", Locale.ENGLISH);
+		verify(this.pets, times(1)).findPetTypes();
+	}
+
 	/**
 	 * Helper method to produce some sample pet types just for test purpose
 	 * @return {@link Collection} of {@link PetType}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link PetVisitLoader}, using Hibernate statistics to count the
+ * statements issued while showing an owner.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true",
+		includeFilters = @ComponentScan.Filter(value = PetVisitLoader.class, type = FilterType.ASSIGNABLE_TYPE))
+class PetVisitLoaderTests {
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private PetRepository pets;
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private PetVisitLoader visitLoader;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setup() {
+		this.statistics = this.entityManager.getEntityManager().getEntityManagerFactory()
+				.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	void shouldAttachVisitsToEachPet() {
+		int ownerId = createOwnerWithPets(3);
+
+		Owner owner = this.owners.findById(ownerId);
+		this.visitLoader.loadVisits(owner.getPets());
+
+		for (Pet pet : owner.getPets()) {
+			assertThat(pet.getVisits()).hasSize(2).allMatch(visit -> pet.getId().equals(visit.getPetId()));
+		}
+	}
+
+	@Test
+	void shouldUseConstantNumberOfQueriesRegardlessOfPetCount() {
+		long withOnePet = countStatementsToShowOwner(createOwnerWithPets(1));
+		long withFifteenPets = countStatementsToShowOwner(createOwnerWithPets(15));
+
+		assertThat(withFifteenPets).isEqualTo(withOnePet);
+		// the owner with its pets, their (shared) pet type and then all of their visits
+		assertThat(withFifteenPets).isEqualTo(3);
+	}
+
+	private long countStatementsToShowOwner(int ownerId) {
+		this.entityManager.clear();
+		// start cold, whatever other tests left in the (shared) second-level cache
+		this.entityManager.getEntityManager().getEntityManagerFactory().getCache().evictAll();
+		this.statistics.clear();
+		Owner owner = this.owners.findById(ownerId);
+		this.visitLoader.loadVisits(owner.getPets());
+		return this.statistics.getPrepareStatementCount();
+	}
+
+	private int createOwnerWithPets(int petCount) {
+		PetType cat = this.pets.findPetTypes().get(0);
+		Owner owner = new Owner();
+		owner.setFirstName("Sam");
+		owner.setLastName("Schultz");
+		owner.setAddress("4, Evans Street");
+		owner.setCity("Wollongong");
+		owner.setTelephone("4444444444");
+		for (int i = 0; i < petCount; i++) {
+			Pet pet = new Pet();
+			pet.setName("pet" + i);
+			pet.setType(cat);
+			pet.setBirthDate(LocalDate.now());
+			owner.addPet(pet);
+		}
+		this.owners.save(owner);
+		for (Pet pet : owner.getPets()) {
+			for (int i = 0; i < 2; i++) {
+				Visit visit = new Visit();
+				visit.setDescription("visit " + i);
+				pet.addVisit(visit);
+				this.visits.save(visit);
+			}
+		}
+		this.entityManager.flush();
+		return owner.getId();
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.samples.petclinic.owner;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -23,11 +24,15 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
+import java.time.LocalDate;
+import java.util.Collections;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.samples.petclinic.visit.Visit;
 import org.springframework.samples.petclinic.visit.VisitRepository;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -68,6 +73,31 @@ class VisitControllerTests {
 				.andExpect(view().name("redirect:/owners/{ownerId}"));
 	}
 
+	@Test
+	void testProcessNewVisitFormAddsTheVisitToThePet() throws Exception {
+		Pet pet = new Pet();
+		given(this.pets.findById(TEST_PET_ID)).willReturn(pet);
+		given(this.visits.findByPetId(TEST_PET_ID)).willReturn(Collections.singletonList(visit(LocalDate.of(2013, 1, 1))));
+
+		mockMvc.perform(post("/owners/*/pets/{petId}/visits/new", TEST_PET_ID).param("date", "2011-01-01")
+				.param("description", "Visit Description")).andExpect(status().is3xxRedirection());
+
+		assertThat(pet.getVisits()).extracting(Visit::getDate).containsExactly(LocalDate.of(2013, 1, 1),
+				LocalDate.of(2011, 1, 1));
+	}
+
+	@Test
+	void testProcessNewVisitFormWithErrorsLeavesThePetsVisits() throws Exception {
+		Pet pet = new Pet();
+		given(this.pets.findById(TEST_PET_ID)).willReturn(pet);
+		given(this.visits.findByPetId(TEST_PET_ID)).willReturn(Collections.singletonList(visit(LocalDate.of(2013, 1, 1))));
+
+		mockMvc.perform(post("/owners/*/pets/{petId}/visits/new", TEST_PET_ID).param("date", "2011-01-01"))
+				.andExpect(model().attributeHasErrors("visit"));
+
+		assertThat(pet.getVisits()).extracting(Visit::getDate).containsExactly(LocalDate.of(2013, 1, 1));
+	}
+
 	@Test
 	void testProcessNewVisitFormHasErrors() throws Exception {
 		mockMvc.perform(post("/owners/*/pets/{petId}/visits/new", TEST_PET_ID).param("name", "George"))
@@ -75,4 +105,11 @@ class VisitControllerTests {
 				.andExpect(view().name("pets/createOrUpdateVisitForm"));
 	}
 
+	private static Visit visit(LocalDate date) {
+		Visit visit = new Visit();
+		visit.setId(1);
+		visit.setDate(date);
+		return visit;
+	}
+
 }
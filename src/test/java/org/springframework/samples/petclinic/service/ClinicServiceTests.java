@@ -20,20 +20,26 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
 import org.springframework.samples.petclinic.owner.*;
 import org.springframework.samples.petclinic.utility.PetTimedCache;
 import org.springframework.samples.petclinic.vet.Vet;
 import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.samples.petclinic.vet.VetSummary;
 import org.springframework.samples.petclinic.visit.Visit;
 import org.springframework.samples.petclinic.visit.VisitRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 
 /**
  * Integration test of the Service and the Repository layer.
@@ -67,6 +73,7 @@ import org.springframework.transaction.annotation.Transactional;
 @DataJpaTest(includeFilters = {
 	@ComponentScan.Filter(Service.class),
 	@ComponentScan.Filter(value = PetTypeFormatter.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = PetTypeDictionary.class, type = FilterType.ASSIGNABLE_TYPE),
 	@ComponentScan.Filter(value = LoggerConfig.class, type = FilterType.ASSIGNABLE_TYPE),
 	@ComponentScan.Filter(value = PetTimedCache.class, type = FilterType.ASSIGNABLE_TYPE)
 })
@@ -93,6 +100,40 @@ class ClinicServiceTests {
 		assertThat(owners).isEmpty();
 	}
 
+	@Autowired
+	protected OwnerFinder ownerFinder;
+
+	@Test
+	void shouldPageThroughOwnersByLastName() {
+		OwnerPage first = this.ownerFinder.findPage("", null, null, 4);
+		assertThat(first.getOwners()).extracting(OwnerSummary::getLastName).containsExactly("Black", "Coleman", "Davis",
+				"Davis");
+		assertThat(first.getPrevious()).isNull();
+		assertThat(first.getNext()).isNotNull();
+
+		OwnerPage second = this.ownerFinder.findPage("", first.getNext(), null, 4);
+		assertThat(second.getOwners()).extracting(OwnerSummary::getLastName).containsExactly("Escobito", "Estaban",
+				"Franklin", "McTavish");
+
+		OwnerPage last = this.ownerFinder.findPage("", second.getNext(), null, 4);
+		assertThat(last.getOwners()).extracting(OwnerSummary::getLastName).containsExactly("Rodriquez", "Schroeder");
+		assertThat(last.getNext()).isNull();
+
+		OwnerPage back = this.ownerFinder.findPage("", null, last.getPrevious(), 4);
+		assertThat(back.getOwners()).extracting(OwnerSummary::getLastName).containsExactly("Escobito", "Estaban",
+				"Franklin", "McTavish");
+		assertThat(back.getPrevious()).isNotNull();
+		assertThat(back.getNext()).isNotNull();
+	}
+
+	@Test
+	void shouldFetchPetNamesForPagedOwners() {
+		OwnerPage page = this.ownerFinder.findPage("Davis", null, null, 1);
+		assertThat(page.getOwners()).hasSize(1);
+		assertThat(page.getOwners().get(0).getPetNames()).hasSize(1);
+		assertThat(page.getNext()).isNotNull();
+	}
+
 	@Test
 	void shouldFindSingleOwnerWithPet() {
 		Owner owner = this.owners.findById(1);
@@ -121,6 +162,28 @@ class ClinicServiceTests {
 		assertThat(owners.size()).isEqualTo(found + 1);
 	}
 
+	@Test
+	@Transactional
+	void shouldInsertPetsWithIdsFromTheirSequence() {
+		Owner owner = this.owners.findById(6);
+		PetType type = EntityUtils.getById(this.pets.findPetTypes(), PetType.class, 2);
+		Pet first = new Pet();
+		first.setName("first");
+		first.setType(type);
+		owner.addPet(first);
+		Pet second = new Pet();
+		second.setName("second");
+		second.setType(type);
+		owner.addPet(second);
+		this.owners.save(owner);
+		this.pets.save(first);
+		this.pets.save(second);
+
+		// ids below 100 belong to the sample data, later ones are allocated in blocks
+		assertThat(first.getId()).isGreaterThanOrEqualTo(100);
+		assertThat(second.getId()).isEqualTo(first.getId() + 1);
+	}
+
 	@Test
 	@Transactional
 	void shouldUpdateOwner() {
@@ -202,6 +265,16 @@ class ClinicServiceTests {
 		assertThat(vet.getSpecialties().get(1).getName()).isEqualTo("surgery");
 	}
 
+	@Test
+	void shouldFindVetSummaries() {
+		List<VetSummary> vets = VetSummary.fromRows(this.vets.findAllSummaryRows());
+
+		assertThat(vets).extracting(VetSummary::getLastName).containsExactly("Carter", "Leary", "Douglas", "Ortega",
+				"Stevens", "Jenkins");
+		assertThat(vets.get(0).getSpecialties()).isEmpty();
+		assertThat(vets.get(2).getSpecialties()).containsExactly("dentistry", "surgery");
+	}
+
 	@Test
 	@Transactional
 	void shouldAddNewVisitForPet() {
@@ -218,6 +291,19 @@ class ClinicServiceTests {
 		assertThat(visit.getId()).isNotNull();
 	}
 
+	@Test
+	void shouldFindVisitsByPetIdAndDate() {
+		Pet pet7 = this.pets.findById(7);
+		assertThat(this.visits.findByPetIdBetween(7, LocalDate.of(2013, 1, 1), LocalDate.of(2013, 1, 5)))
+				.extracting(Visit::getId).containsExactly(4);
+		assertThat(this.visits.findByPetIdBetween(7, LocalDate.of(2012, 12, 31), LocalDate.of(2013, 1, 5)))
+				.extracting(Visit::getId).containsExactly(4, 1);
+		assertThat(this.visits.findByPetIdBefore(7, pet7.getBirthday(1))).extracting(Visit::getId)
+				.containsExactly(4, 1);
+		assertThat(this.visits.findByPetIdBefore(7, LocalDate.of(2013, 1, 4))).extracting(Visit::getId)
+				.containsExactly(1);
+	}
+
 	@Test
 	void shouldFindVisitsByPetId() throws Exception {
 		Collection<Visit> visits = this.visits.findByPetId(7);
@@ -227,4 +313,20 @@ class ClinicServiceTests {
 		assertThat(visitArr[0].getPetId()).isEqualTo(7);
 	}
 
+	/**
+	 * Test slices do not pick up the application's cache configuration, so enable
+	 * caching here to give {@link PetTypeDictionary} a cache manager. The JPA slice has
+	 * no bean validation either, which {@link ClinicImporter} needs.
+	 */
+	@TestConfiguration
+	@EnableCaching
+	static class CachingConfig {
+
+		@Bean
+		LocalValidatorFactoryBean validator() {
+			return new LocalValidatorFactoryBean();
+		}
+
+	}
+
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.owner.PetTypeDictionary;
+import org.springframework.samples.petclinic.owner.PetTypeRepository;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Checks that reference data is served from the Hibernate second-level cache and the
+ * {@link PetTypeDictionary} without any SQL once it has been loaded. The tests run outside of a test transaction
+ * because cached entries only become visible to later transactions.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true",
+		includeFilters = @ComponentScan.Filter(value = PetTypeDictionary.class, type = FilterType.ASSIGNABLE_TYPE))
+@AutoConfigureCache(cacheProvider = CacheType.SIMPLE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTests {
+
+	@Autowired
+	private PetTypeDictionary petTypes;
+
+	@Autowired
+	private PetTypeRepository petTypeRepository;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private VetRepository vets;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setup() {
+		this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	void shouldServeRepeatedPetTypeLookupsFromDictionary() {
+		Collection<PetType> first = this.petTypes.findAll();
+
+		long statements = this.statistics.getPrepareStatementCount();
+		Collection<PetType> second = this.petTypes.findAll();
+		PetType dog = this.petTypes.findByName("dog");
+
+		assertThat(this.statistics.getPrepareStatementCount()).isEqualTo(statements);
+		assertThat(second).containsExactlyElementsOf(first);
+		assertThat(dog.getId()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldEvictDictionaryWhenPetTypeIsWritten() {
+		assertThat(this.petTypes.findByName("ferret")).isNull();
+
+		PetType ferret = new PetType();
+		ferret.setName("ferret");
+		this.petTypeRepository.save(ferret);
+		try {
+			assertThat(this.petTypes.findByName("ferret")).isNotNull();
+		}
+		finally {
+			this.petTypeRepository.delete(ferret);
+		}
+		assertThat(this.petTypes.findByName("ferret")).isNull();
+	}
+
+	@Test
+	void shouldLoadReferenceEntitiesByIdFromCache() {
+		find(PetType.class, 2);
+		find(Vet.class, 3);
+
+		long statements = this.statistics.getPrepareStatementCount();
+		PetType type = find(PetType.class, 2);
+		Vet vet = find(Vet.class, 3);
+
+		assertThat(this.statistics.getPrepareStatementCount()).isEqualTo(statements);
+		assertThat(type.getName()).isEqualTo("dog");
+		assertThat(vet.getSpecialties()).extracting("name").containsExactly("dentistry", "surgery");
+	}
+
+	@Test
+	void shouldLoadVetSpecialtiesFromCache() {
+		this.vets.findAll();
+
+		// the vet list itself is cached by Spring too, so drop it to run the query again
+		this.cacheManager.getCache("vets").clear();
+		long statements = this.statistics.getPrepareStatementCount();
+		this.vets.findAll();
+
+		// only the query for the vets themselves, not one per vet for its specialties
+		assertThat(this.statistics.getPrepareStatementCount()).isEqualTo(statements + 1);
+	}
+
+	private <T> T find(Class<T> type, int id) {
+		EntityManager entityManager = this.entityManagerFactory.createEntityManager();
+		try {
+			return entityManager.find(type, id);
+		}
+		finally {
+			entityManager.close();
+		}
+	}
+
+	/**
+	 * Test slices do not pick up the application's cache configuration, so enable
+	 * caching here to give {@link PetTypeDictionary} a cache manager.
+	 */
+	@TestConfiguration
+	@EnableCaching
+	static class CachingConfig {
+
+	}
+
+}
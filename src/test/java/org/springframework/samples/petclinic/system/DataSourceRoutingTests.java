@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.system.DataSourceRoutingConfiguration.RoutingDataSourceProxy;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Runs the repositories against two embedded H2 databases standing in for a primary and
+ * a replica. Nothing replicates between them, so the replica shows which reads it served:
+ * it starts from the sample data with a different city for George Franklin.
+ */
+@DataJpaTest(properties = { "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+		"petclinic.datasource.replicas=" + DataSourceRoutingTests.REPLICA_URL,
+		"spring.datasource.hikari.maximum-pool-size=3" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(DataSourceRoutingConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DataSourceRoutingTests {
+
+	static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private RoutingDataSourceProxy dataSource;
+
+	@BeforeAll
+	static void createReplica() throws SQLException {
+		try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "")) {
+			ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/h2/schema.sql"));
+			ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/h2/data.sql"));
+			connection.createStatement().executeUpdate("UPDATE owners SET city = 'Replica' WHERE id = 1");
+		}
+	}
+
+	@Test
+	void shouldReadFromReplica() {
+		assertThat(this.owners.findById(1).getCity()).isEqualTo("Replica");
+		assertThat(this.owners.findByLastName("Franklin")).extracting(Owner::getCity).containsExactly("Replica");
+	}
+
+	@Test
+	void shouldConfigureEachPool() {
+		assertThat(this.dataSource.getPools()).extracting(HikariDataSource::getPoolName).containsExactly("petclinic",
+				"petclinic-replica-0");
+		assertThat(this.dataSource.getPools()).extracting(HikariDataSource::getMaximumPoolSize).containsOnly(3);
+		assertThat(this.dataSource.getPools()).extracting(HikariDataSource::getConnectionTimeout)
+				.containsExactly(30000L, 1000L);
+	}
+
+	@Test
+	void shouldReadOwnWritesFromPrimary() {
+		ReadYourWrites scope = ReadYourWrites.begin(false, null);
+		try {
+			Owner owner = this.owners.findById(2);
+			owner.setTelephone("6085550000");
+			this.owners.save(owner);
+
+			assertThat(this.owners.findById(2).getTelephone()).isEqualTo("6085550000");
+			assertThat(this.owners.findById(1).getCity()).isEqualTo("Madison");
+		}
+		finally {
+			scope.end();
+		}
+		// without replication the replica never sees the write
+		assertThat(this.owners.findById(2).getTelephone()).isEqualTo("6085551749");
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Test class for {@link FlightRecordingEndpoint} and the {@link MethodCallEvent}.
+ */
+class FlightRecordingEndpointTests {
+
+	private final FlightRecordingEndpoint endpoint = new FlightRecordingEndpoint(Duration.ofMinutes(1),
+			DataSize.ofMegabytes(10));
+
+	@AfterEach
+	void discardRecordings() {
+		for (FlightRecordingEndpoint.Description recording : this.endpoint.recordings()) {
+			this.endpoint.discard(recording.getId());
+		}
+	}
+
+	@Test
+	void shouldRecordBoundedByTheLimits() {
+		FlightRecordingEndpoint.Description recording = this.endpoint
+				.start(Duration.ofHours(1), DataSize.ofGigabytes(1), null).getBody();
+
+		assertThat(recording.getState()).isEqualTo("RUNNING");
+		assertThat(recording.getDuration()).isEqualTo(Duration.ofMinutes(1));
+		assertThat(recording.getMaxSize()).isEqualTo(DataSize.ofMegabytes(10).toBytes());
+		assertThat(this.endpoint.recordings()).extracting(FlightRecordingEndpoint.Description::getId)
+				.containsExactly(recording.getId());
+	}
+
+	@Test
+	void shouldRunOneRecordingAtATime() {
+		long id = this.endpoint.start(null, null, "profile").getBody().getId();
+
+		assertThat(this.endpoint.start(null, null, null).getStatus())
+				.isEqualTo(WebEndpointResponse.STATUS_TOO_MANY_REQUESTS);
+
+		assertThat(this.endpoint.stop(id).getBody().getState()).isEqualTo("STOPPED");
+		assertThat(this.endpoint.start(null, null, null).getStatus()).isEqualTo(WebEndpointResponse.STATUS_OK);
+	}
+
+	@Test
+	void shouldKeepTheLastRecordings() {
+		for (int i = 0; i <= FlightRecordingEndpoint.MAX_RECORDINGS; i++) {
+			this.endpoint.stop(this.endpoint.start(null, null, null).getBody().getId());
+		}
+
+		assertThat(this.endpoint.recordings()).hasSize(FlightRecordingEndpoint.MAX_RECORDINGS);
+	}
+
+	@Test
+	void shouldRejectUnknownSettingsAndRecordings() {
+		assertThat(this.endpoint.start(null, null, "nonsense").getStatus())
+				.isEqualTo(WebEndpointResponse.STATUS_BAD_REQUEST);
+		assertThat(this.endpoint.stop(-1).getStatus()).isEqualTo(WebEndpointResponse.STATUS_NOT_FOUND);
+		assertThat(this.endpoint.discard(-1).getStatus()).isEqualTo(WebEndpointResponse.STATUS_NOT_FOUND);
+	}
+
+	@Test
+	void shouldServeMethodCallsAsRecordingFile() throws Exception {
+		// the calls are recorded even when they are not timed
+		MethodTimer timer = MethodTimers.NONE.timer(OwnerService.class, "findOwner");
+		long id = this.endpoint.start(null, null, null).getBody().getId();
+		timer.record(timer.start(), timer.begin(), null);
+
+		Resource resource = this.endpoint.recording(id).getBody();
+		Path file = Files.createTempFile("recording", ".jfr");
+		try {
+			try (InputStream in = resource.getInputStream()) {
+				Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			assertThat(resource.getFile()).doesNotExist();
+			assertThat(RecordingFile.readAllEvents(file))
+					.filteredOn(event -> event.getEventType().getName()
+							.equals("org.springframework.samples.petclinic.MethodCall"))
+					.hasSize(1).first().satisfies(event -> {
+						assertThat(event.getString("type")).isEqualTo("OwnerService");
+						assertThat(event.getString("method")).isEqualTo("findOwner");
+						assertThat(event.getString("exception")).isEqualTo("none");
+					});
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	static class OwnerService {
+
+	}
+
+}
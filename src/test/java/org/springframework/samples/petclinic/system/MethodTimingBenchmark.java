@@ -0,0 +1,244 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.owner.PetService;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
+
+/**
+ * Latency of {@link PetService#findPet(int)} with and without timing the service, the
+ * loads of the {@link PetTimedCache} and the repository into timers with the percentile
+ * histogram and latency objectives of {@code application.properties}. The repository is
+ * a proxy either way, as Spring Data's are, with an interceptor of its own.
+ * {@code path=hit} serves every pet from a warm cache, while {@code path=miss} lets every
+ * entry expire at once so that each call loads the pet from an in-memory H2 database, and
+ * {@code path=remote} also waits out a {@value #ROUND_TRIP_MICROS} microsecond round trip
+ * for each load, as if the database were across the network.
+ * <p>
+ * Run through {@link #main(String[])}, it checks the results against the budget: timing
+ * must not allocate on a hit, and must add less than {@value #BUDGET_PERCENT}% of the
+ * latency of a {@code remote} call on any path. Reading the clock twice takes about as
+ * long as a hit, so the budget comes from a call that loads its pet from a database
+ * across the network, as it does in production. See the readme for how to run it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MethodTimingBenchmark {
+
+	static final double BUDGET_PERCENT = 1;
+
+	static final long ROUND_TRIP_MICROS = 100;
+
+	private static final int PETS = 1024;
+
+	@Param({ "off", "on" })
+	public String timing;
+
+	@Param({ "hit", "miss", "remote" })
+	public String path;
+
+	private SingleConnectionDataSource database;
+
+	private PetService petService;
+
+	private int next;
+
+	@Setup
+	public void setup() {
+		((LoggerContext) LoggerFactory.getILoggerFactory()).getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.INFO);
+		this.database = new SingleConnectionDataSource("jdbc:h2:mem:method-timing", true);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(this.database);
+		jdbcTemplate.execute("CREATE TABLE pets (id INT PRIMARY KEY, name VARCHAR(30))");
+		for (int i = 0; i < PETS; i++) {
+			jdbcTemplate.update("INSERT INTO pets VALUES (?, ?)", petId(i), "pet-" + i);
+		}
+
+		MethodTimers timers = "on".equals(this.timing) ? new MethodTimers(registry()) : MethodTimers.NONE;
+		long roundTrip = "remote".equals(this.path) ? TimeUnit.MICROSECONDS.toNanos(ROUND_TRIP_MICROS) : 0;
+		ProxyFactory proxyFactory = new ProxyFactory(new JdbcPetRepository(jdbcTemplate, roundTrip));
+		proxyFactory.addInterface(PetRepository.class);
+		proxyFactory.addAdvisor(ExposeInvocationInterceptor.ADVISOR);
+		PetRepository repository = (PetRepository) proxyFactory.getProxy();
+		if ("on".equals(this.timing)) {
+			new MethodTimingPostProcessor(() -> timers).postProcessAfterInitialization(repository, "petRepository");
+		}
+		long expiry = "hit".equals(this.path) ? TimeUnit.HOURS.toMillis(1) : 0;
+		PetTimedCache cache = new PetTimedCache(expiry, PETS, repository, timers);
+		this.petService = new PetService(cache, null, LoggerFactory.getLogger(PetService.class), timers);
+		for (int i = 0; i < PETS; i++) {
+			this.petService.findPet(petId(i));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.database.destroy();
+	}
+
+	@Benchmark
+	public Pet findPet() {
+		return this.petService.findPet(petId(this.next++ & (PETS - 1)));
+	}
+
+	// ids well outside the Integer cache, like production ids
+	private static int petId(int i) {
+		return 10_000 + i;
+	}
+
+	/**
+	 * Run the benchmark and fail unless timing adds no allocations to a hit, and adds less
+	 * than {@value #BUDGET_PERCENT}% of the latency of a {@code remote} call to any path.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(MethodTimingBenchmark.class.getName())
+				.addProfiler(GCProfiler.class).build();
+		Map<String, Result<?>> latency = new HashMap<>();
+		Map<String, Result<?>> allocation = new HashMap<>();
+		for (RunResult run : new Runner(options).run()) {
+			String key = run.getParams().getParam("timing") + "/" + run.getParams().getParam("path");
+			latency.put(key, run.getPrimaryResult());
+			allocation.put(key, run.getSecondaryResults().get("\u00b7gc.alloc.rate.norm"));
+		}
+		double budget = latency.get("off/remote").getScore() * BUDGET_PERCENT / 100;
+		List<String> failures = new ArrayList<>();
+		for (String path : Arrays.asList("hit", "miss", "remote")) {
+			double overhead = latency.get("on/" + path).getScore() - latency.get("off/" + path).getScore();
+			double allocated = allocation.get("on/" + path).getScore() - allocation.get("off/" + path).getScore();
+			System.out.printf("%s: timing adds %.1f ns/op (budget %.1f) and %.2f B/op%n", path, overhead, budget,
+					allocated);
+			if (overhead > budget) {
+				failures.add(String.format("timing a %s adds %.1f ns/op, over the budget of %.1f", path, overhead,
+						budget));
+			}
+			// the allocation rate is sampled, so it is off by a fraction of a byte; loads
+			// allocate thousands of bytes in JDBC and H2, and how many of them the compiler
+			// removes varies by tens of bytes from run to run, so only hits must show none
+			if ("hit".equals(path) && allocated >= 1) {
+				failures.add(String.format("timing a %s allocates %.2f B/op", path, allocated));
+			}
+		}
+		if (!failures.isEmpty()) {
+			throw new AssertionError(String.join("; ", failures));
+		}
+	}
+
+	/**
+	 * A registry with the distribution that {@code application.properties} configures for
+	 * {@value MethodTimer#METRIC_NAME}.
+	 */
+	private static MeterRegistry registry() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		registry.config().meterFilter(new MeterFilter() {
+
+			@Override
+			public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+				return DistributionStatisticConfig.builder().percentilesHistogram(true)
+						.serviceLevelObjectives(slo(1), slo(5), slo(25), slo(100), slo(500)).build().merge(config);
+			}
+
+		});
+		return registry;
+	}
+
+	private static double slo(long millis) {
+		return Duration.ofMillis(millis).toNanos();
+	}
+
+	private static class JdbcPetRepository implements PetRepository {
+
+		private final JdbcTemplate jdbcTemplate;
+
+		private final long roundTripNanos;
+
+		JdbcPetRepository(JdbcTemplate jdbcTemplate, long roundTripNanos) {
+			this.jdbcTemplate = jdbcTemplate;
+			this.roundTripNanos = roundTripNanos;
+		}
+
+		@Override
+		public List<PetType> findPetTypes() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Pet findById(Integer id) {
+			// spin rather than sleep, as sleeps overshoot by more than the budget
+			long deadline = System.nanoTime() + this.roundTripNanos;
+			while (System.nanoTime() - deadline < 0) {
+			}
+			return this.jdbcTemplate.queryForObject("SELECT id, name FROM pets WHERE id = ?", (rs, row) -> {
+				Pet pet = new Pet();
+				pet.setId(rs.getInt(1));
+				pet.setName(rs.getString(2));
+				return pet;
+			}, id);
+		}
+
+		@Override
+		public void save(Pet pet) {
+		}
+
+	}
+
+}
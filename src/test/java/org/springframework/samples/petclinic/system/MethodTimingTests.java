@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.data.repository.Repository;
+
+/**
+ * Test class for {@link MethodTimer}, {@link MethodTimingPostProcessor} and
+ * {@link MethodTimingInterceptor}.
+ */
+class MethodTimingTests {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	private final MethodTimers timers = new MethodTimers(this.registry);
+
+	private final MethodTimingPostProcessor postProcessor = new MethodTimingPostProcessor(() -> this.timers);
+
+	@Test
+	void shouldRegisterTheTimerWhenCreated() {
+		this.timers.timer(VisitService.class, "findVisit");
+
+		assertThat(timer("VisitService", "findVisit", "none").count()).isZero();
+	}
+
+	@Test
+	void shouldTimeCallsByOutcome() {
+		MethodTimer timer = this.timers.timer(VisitService.class, "findVisit");
+
+		timer.record(timer.start(), timer.begin(), null);
+		timer.record(timer.start(), timer.begin(), null);
+		timer.record(timer.start(), timer.begin(), new IllegalStateException());
+
+		assertThat(timer("VisitService", "findVisit", "none").count()).isEqualTo(2);
+		assertThat(timer("VisitService", "findVisit", "IllegalStateException").count()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldNotTimeWithoutARegistry() {
+		MethodTimer timer = MethodTimers.NONE.timer(VisitService.class, "findVisit");
+
+		assertThat(timer.start()).isZero();
+		timer.record(timer.start(), timer.begin(), null);
+	}
+
+	@Test
+	void shouldTagRepositoriesWithTheirInterface() {
+		ProxyFactory proxyFactory = new ProxyFactory(new InMemoryVisitRepository());
+		proxyFactory.addInterface(VisitRepository.class);
+		Object proxy = proxyFactory.getProxy();
+		VisitRepository repository = (VisitRepository) this.postProcessor.postProcessAfterInitialization(proxy,
+				"visitRepository");
+
+		repository.count();
+
+		assertThat(repository).isSameAs(proxy);
+		assertThat(timer("VisitRepository", "count", "none").count()).isEqualTo(1);
+		assertThat(((Advised) repository).getAdvisors()).hasSize(1);
+	}
+
+	@Test
+	void shouldRecordRepositoryCallsThatAreNotTimed() throws Exception {
+		MethodTimingPostProcessor postProcessor = new MethodTimingPostProcessor(() -> MethodTimers.NONE);
+		ProxyFactory proxyFactory = new ProxyFactory(new InMemoryVisitRepository());
+		proxyFactory.addInterface(VisitRepository.class);
+		VisitRepository repository = (VisitRepository) postProcessor
+				.postProcessAfterInitialization(proxyFactory.getProxy(), "visitRepository");
+		Path file = Files.createTempFile("recording", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				recording.start();
+				repository.count();
+				recording.stop();
+				recording.dump(file);
+			}
+			assertThat(RecordingFile.readAllEvents(file))
+					.filteredOn(event -> event.getEventType().getName()
+							.equals("org.springframework.samples.petclinic.MethodCall"))
+					.hasSize(1).first().satisfies(event -> {
+						assertThat(event.getString("type")).isEqualTo("VisitRepository");
+						assertThat(event.getString("method")).isEqualTo("count");
+					});
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void shouldNotProxyOtherBeans() {
+		VisitService service = new VisitService();
+
+		assertThat(this.postProcessor.postProcessAfterInitialization(service, "visitService")).isSameAs(service);
+	}
+
+	private Timer timer(String type, String method, String exception) {
+		return this.registry.get(MethodTimer.METRIC_NAME).tag("class", type).tag("method", method)
+				.tag("exception", exception).timer();
+	}
+
+	static class VisitService {
+
+	}
+
+	interface VisitRepository extends Repository<Object, Integer> {
+
+		long count();
+
+	}
+
+	static class InMemoryVisitRepository implements VisitRepository {
+
+		@Override
+		public long count() {
+			return 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test class for {@link ReplicaRoutingDataSource} and {@link ReadYourWritesFilter}. Each
+ * query reports the name of the in-memory database it ran on.
+ */
+class ReplicaRoutingDataSourceTests {
+
+	private final ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(database("primary"),
+			Arrays.asList(database("replica1"), database("replica2")), Duration.ofMinutes(1));
+
+	private final LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(this.routing);
+
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+
+	private final DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(
+			this.dataSource);
+
+	@Test
+	void shouldSendReadOnlyTransactionsToReplicasInTurn() {
+		assertThat(Arrays.asList(read(), read(), read(), read())).containsExactly("REPLICA1", "REPLICA2", "REPLICA1",
+				"REPLICA2");
+	}
+
+	@Test
+	void shouldSendOtherStatementsToPrimary() {
+		assertThat(write()).isEqualTo("PRIMARY");
+		assertThat(this.jdbcTemplate.queryForObject("SELECT DATABASE()", String.class)).isEqualTo("PRIMARY");
+	}
+
+	@Test
+	void shouldSkipUnavailableReplicas() {
+		ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(database("primary"),
+				Arrays.asList(unavailable(), database("replica2")), Duration.ofMinutes(1));
+
+		assertThat(Arrays.asList(read(routing), read(routing), read(routing))).containsOnly("REPLICA2");
+		assertThat(routing.getAvailableReplicas()).isEqualTo(1);
+
+		ReplicaRoutingDataSource noReplicas = new ReplicaRoutingDataSource(database("primary"),
+				Arrays.asList(unavailable()), Duration.ofMinutes(1));
+		assertThat(read(noReplicas)).isEqualTo("PRIMARY");
+	}
+
+	@Test
+	void shouldReadOwnWritesFromPrimary() {
+		ReadYourWrites scope = ReadYourWrites.begin(false, null);
+		try {
+			assertThat(read()).startsWith("REPLICA");
+			write();
+			assertThat(read()).isEqualTo("PRIMARY");
+		}
+		finally {
+			scope.end();
+		}
+		assertThat(read()).startsWith("REPLICA");
+	}
+
+	@Test
+	void shouldKeepClientOnPrimaryForRequestsAfterWrite() throws Exception {
+		ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofMinutes(1));
+		MockHttpServletResponse post = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("POST", "/owners/new"), post, (request, response) -> write());
+		Cookie cookie = post.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+		assertThat(cookie).isNotNull();
+
+		String[] database = new String[1];
+		MockHttpServletRequest get = new MockHttpServletRequest("GET", "/owners/1");
+		get.setCookies(cookie);
+		filter.doFilter(get, new MockHttpServletResponse(), (request, response) -> database[0] = read());
+		assertThat(database[0]).isEqualTo("PRIMARY");
+
+		MockHttpServletResponse other = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("GET", "/owners/1"), other,
+				(request, response) -> database[0] = read());
+		assertThat(database[0]).startsWith("REPLICA");
+		assertThat(other.getCookie(ReadYourWritesFilter.COOKIE_NAME)).isNull();
+	}
+
+	private String read() {
+		return read(this.routing);
+	}
+
+	/**
+	 * Name the database that a read-only transaction on the given data source runs on.
+	 */
+	private static String read(ReplicaRoutingDataSource routing) {
+		DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+		TransactionTemplate transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transactions.setReadOnly(true);
+		return transactions.execute(
+				status -> new JdbcTemplate(dataSource).queryForObject("SELECT DATABASE()", String.class));
+	}
+
+	private String write() {
+		return new TransactionTemplate(this.transactionManager)
+				.execute(status -> this.jdbcTemplate.queryForObject("SELECT DATABASE()", String.class));
+	}
+
+	private static DataSource database(String name) {
+		return new DriverManagerDataSource("jdbc:h2:mem:" + name);
+	}
+
+	private static DataSource unavailable() {
+		return new DriverManagerDataSource("jdbc:h2:mem:missing;IFEXISTS=TRUE");
+	}
+
+}
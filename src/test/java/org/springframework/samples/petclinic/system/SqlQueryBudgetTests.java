@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Test class for {@link SqlQueryCounter}, {@link SqlQueryCountingInspector} and
+ * {@link SqlQueryBudgetInterceptor}.
+ */
+class SqlQueryBudgetTests {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	private final SqlQueryBudgetInterceptor interceptor = new SqlQueryBudgetInterceptor(this.registry, 2);
+
+	@Test
+	void shouldCountStatementsOnlyWhileCounting() {
+		SqlQueryCountingInspector inspector = new SqlQueryCountingInspector();
+		String sql = "select id from pets";
+
+		SqlQueryCounter counter = SqlQueryCounter.start();
+		assertThat(inspector.inspect(sql)).isSameAs(sql);
+		inspector.inspect(sql);
+		assertThat(counter.stop()).isEqualTo(2);
+
+		inspector.inspect(sql);
+		assertThat(counter.getCount()).isEqualTo(2);
+		assertThat(SqlQueryCounter.current()).isNull();
+	}
+
+	@Test
+	void shouldRecordStatementsPerHandler() throws Exception {
+		MockHttpServletRequest request = handle("showVisits", 2);
+
+		assertThat(request.getAttribute(SqlQueryBudgetInterceptor.COUNT_ATTRIBUTE)).isEqualTo(2);
+		assertThat(request.getAttribute(SqlQueryBudgetInterceptor.BUDGET_ATTRIBUTE)).isEqualTo(2);
+		DistributionSummary queries = this.registry.get(SqlQueryBudgetInterceptor.METRIC_NAME)
+				.tag("handler", "VisitsController.showVisits").summary();
+		assertThat(queries.count()).isEqualTo(1);
+		assertThat(queries.totalAmount()).isEqualTo(2);
+		assertThat(overBudget("VisitsController.showVisits")).isZero();
+		assertThat(SqlQueryCounter.current()).isNull();
+	}
+
+	@Test
+	void shouldCountRequestsOverTheHandlersBudget() throws Exception {
+		handle("showVisit", 1);
+		handle("showVisit", 2);
+		handle("showVisits", 3);
+
+		assertThat(overBudget("VisitsController.showVisit")).isEqualTo(1);
+		assertThat(overBudget("VisitsController.showVisits")).isEqualTo(1);
+	}
+
+	private MockHttpServletRequest handle(String method, int statements) throws Exception {
+		HandlerMethod handler = new HandlerMethod(new VisitsController(), method);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/visits");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertThat(this.interceptor.preHandle(request, response, handler)).isTrue();
+		for (int i = 0; i < statements; i++) {
+			SqlQueryCounter.increment();
+		}
+		this.interceptor.afterCompletion(request, response, handler, null);
+		return request;
+	}
+
+	private double overBudget(String handler) {
+		return this.registry.get(SqlQueryBudgetInterceptor.OVER_BUDGET_METRIC_NAME).tag("handler", handler)
+				.counter().count();
+	}
+
+	static class VisitsController {
+
+		public String showVisits() {
+			return "visits";
+		}
+
+		@SqlQueryBudget(1)
+		public String showVisit() {
+			return "visit";
+		}
+
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+/**
+ * {@link ResultMatcher}s that pin the number of SQL statements a request executed, as
+ * counted by the {@link SqlQueryBudgetInterceptor}. They need the whole application
+ * rather than a test slice with mocked repositories, for example:
+ *
+ * <pre class="code">
+ * mockMvc.perform(get("/owners/1")).andExpect(sqlQueries().count(2));
+ * </pre>
+ */
+public final class SqlQueryResultMatchers {
+
+	private SqlQueryResultMatchers() {
+	}
+
+	public static SqlQueryResultMatchers sqlQueries() {
+		return new SqlQueryResultMatchers();
+	}
+
+	/**
+	 * Assert that the request executed exactly this many statements.
+	 */
+	public ResultMatcher count(int expected) {
+		return (result) -> assertThat(count(result)).as("SQL statements").isEqualTo(expected);
+	}
+
+	/**
+	 * Assert that the request executed at most this many statements.
+	 */
+	public ResultMatcher atMost(int max) {
+		return (result) -> assertThat(count(result)).as("SQL statements").isLessThanOrEqualTo(max);
+	}
+
+	/**
+	 * Assert that the request stayed within the {@link SqlQueryBudget} of its handler.
+	 */
+	public ResultMatcher withinBudget() {
+		return (result) -> assertThat(count(result)).as("SQL statements")
+				.isLessThanOrEqualTo(attribute(result, SqlQueryBudgetInterceptor.BUDGET_ATTRIBUTE));
+	}
+
+	private static int count(MvcResult result) {
+		return attribute(result, SqlQueryBudgetInterceptor.COUNT_ATTRIBUTE);
+	}
+
+	private static int attribute(MvcResult result, String name) {
+		Object value = result.getRequest().getAttribute(name);
+		assertThat(value).as("SQL statements were not counted, is the request handled by a controller?")
+				.isNotNull();
+		return (Integer) value;
+	}
+
+}
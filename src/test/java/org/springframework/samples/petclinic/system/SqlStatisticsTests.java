@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Test class for {@link SqlFingerprint}, {@link SqlStatistics} and
+ * {@link SqlProfilingDataSource}.
+ */
+class SqlStatisticsTests {
+
+	private final SingleConnectionDataSource database = new SingleConnectionDataSource("jdbc:h2:mem:sql-statistics",
+			true);
+
+	@AfterEach
+	void close() {
+		this.database.destroy();
+	}
+
+	@Test
+	void shouldFingerprintStatementsThatDifferOnlyInValues() {
+		assertThat(SqlFingerprint.of("SELECT * FROM owners WHERE id IN (1, 2, 3)"))
+				.isEqualTo("select * from owners where id in (?)");
+		assertThat(SqlFingerprint.of("select *\n  from owners where id in (?,?) -- by id"))
+				.isEqualTo("select * from owners where id in (?)");
+		assertThat(SqlFingerprint.of("/* owner by name */ select owner0_.id from owners owner0_ "
+				+ "where owner0_.last_name like 'O''Brien%' and owner0_.id > 10.5;"))
+						.isEqualTo("select owner0_.id from owners owner0_ where owner0_.last_name like ? and owner0_.id > ?");
+		assertThat(SqlFingerprint.of("insert into visits (id, pet_id) values (?, ?), (?, ?), (?, ?)"))
+				.isEqualTo("insert into visits (id, pet_id) values (?)");
+		assertThat(SqlFingerprint.of("select \"Id\" from \"Owners\"")).isEqualTo("select \"Id\" from \"Owners\"");
+	}
+
+	@Test
+	void shouldRecordCountsRowsAndLatencies() {
+		SqlStatistics statistics = new SqlStatistics(Duration.ofMinutes(1));
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(new SqlProfilingDataSource(this.database, statistics));
+		jdbcTemplate.execute("CREATE TABLE pets (id INT PRIMARY KEY, name VARCHAR(30))");
+		jdbcTemplate.batchUpdate("INSERT INTO pets VALUES (?, ?)",
+				Arrays.asList(new Object[] { 1, "Leo" }, new Object[] { 2, "Basil" }));
+		jdbcTemplate.update("INSERT INTO pets VALUES (?, ?)", 3, "Rosy");
+		jdbcTemplate.queryForList("SELECT name FROM pets WHERE id > ?", String.class, 0);
+		jdbcTemplate.queryForList("SELECT name FROM pets WHERE id > ?", String.class, 1);
+		jdbcTemplate.queryForList("SELECT name FROM pets WHERE id > 2", String.class);
+
+		SqlStatistics.Snapshot select = find(statistics.snapshot(), "select name from pets where id > ?");
+		assertThat(select.getCount()).isEqualTo(3);
+		assertThat(select.getRows()).isEqualTo(3 + 2 + 1);
+		assertThat(select.getHistogram().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(3);
+		assertThat(select.getMaxMillis()).isGreaterThan(0).isLessThanOrEqualTo(select.getTotalMillis());
+		assertThat(select.getSlow()).isZero();
+
+		SqlStatistics.Snapshot insert = find(statistics.snapshot(), "insert into pets values (?)");
+		// the batch counts once, with the rows of both inserts
+		assertThat(insert.getCount()).isEqualTo(2);
+		assertThat(insert.getRows()).isEqualTo(3);
+
+		statistics.reset();
+		assertThat(statistics.snapshot()).isEmpty();
+		jdbcTemplate.queryForList("SELECT name FROM pets WHERE id > ?", String.class, 0);
+		assertThat(find(statistics.snapshot(), "select name from pets where id > ?").getRows()).isEqualTo(3);
+	}
+
+	@Test
+	void shouldCountSlowStatements() {
+		SqlStatistics statistics = new SqlStatistics(Duration.ZERO);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(new SqlProfilingDataSource(this.database, statistics));
+		jdbcTemplate.queryForObject("SELECT ?", String.class, "a value that is not logged");
+
+		List<SqlStatistics.Snapshot> snapshot = new SqlStatisticsEndpoint(statistics).statements();
+		assertThat(snapshot).hasSize(1);
+		assertThat(snapshot.get(0).getSlow()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldUnwrapToTheTargetDataSource() throws Exception {
+		SqlProfilingDataSource dataSource = new SqlProfilingDataSource(this.database,
+				new SqlStatistics(Duration.ofMinutes(1)));
+
+		assertThat(dataSource.isWrapperFor(SingleConnectionDataSource.class)).isTrue();
+		assertThat(DataSourceUnwrapper.unwrap(dataSource, SingleConnectionDataSource.class)).isSameAs(this.database);
+	}
+
+	private static SqlStatistics.Snapshot find(List<SqlStatistics.Snapshot> snapshots, String fingerprint) {
+		return snapshots.stream().filter(snapshot -> snapshot.getFingerprint().equals(fingerprint)).findFirst()
+				.orElseThrow(() -> new AssertionError("no statistics for " + fingerprint + " in " + snapshots));
+	}
+
+}
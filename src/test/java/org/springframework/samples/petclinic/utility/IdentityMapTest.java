@@ -0,0 +1,108 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.Pet;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdentityMapTest {
+
+	private static final Comparator<Pet> BY_NAME = Comparator.comparing(Pet::getName);
+
+	@Test
+	void addingSameIdReplacesEntity() {
+		IdentityMap<Pet> pets = new IdentityMap<>();
+		Pet first = pet(1, "Leo");
+		Pet replacement = pet(1, "Basil");
+		assertTrue(pets.add(first));
+		assertTrue(pets.add(replacement));
+		assertFalse(pets.add(replacement));
+		assertEquals(1, pets.size());
+		assertSame(replacement, pets.get(1));
+		assertTrue(pets.contains(first));
+	}
+
+	@Test
+	void newEntitiesAreTrackedByIdentity() {
+		IdentityMap<Pet> pets = new IdentityMap<>();
+		Pet leo = pet(null, "Leo");
+		Pet basil = pet(null, "Basil");
+		pets.add(leo);
+		pets.add(basil);
+		assertEquals(2, pets.size());
+		assertTrue(pets.contains(leo));
+		assertFalse(pets.contains(pet(null, "Leo")));
+
+		// once saved, re-adding the entity moves it under its id instead of duplicating it
+		leo.setId(3);
+		assertTrue(pets.contains(leo));
+		pets.add(leo);
+		assertEquals(2, pets.size());
+		assertSame(leo, pets.get(3));
+		assertTrue(pets.remove(leo));
+		assertEquals(Arrays.asList(basil), pets.sorted());
+	}
+
+	@Test
+	void removeByIdAndThroughIterator() {
+		IdentityMap<Pet> pets = new IdentityMap<>(Arrays.asList(pet(1, "Leo"), pet(2, "Basil"), pet(3, "Rosy")));
+		assertTrue(pets.remove(pet(2, "whatever")));
+		assertFalse(pets.remove(pet(2, "Basil")));
+		assertFalse(pets.remove("Leo"));
+
+		Iterator<Pet> iterator = pets.iterator();
+		assertEquals("Leo", iterator.next().getName());
+		iterator.remove();
+		assertEquals(1, pets.size());
+		assertArrayEquals(new Object[] { pets.get(3) }, pets.toArray());
+	}
+
+	@Test
+	void sortedViewFollowsChanges() {
+		IdentityMap<Pet> pets = new IdentityMap<>(Arrays.asList(pet(1, "Leo"), pet(2, "Basil"), pet(3, "Rosy")));
+		assertEquals(Arrays.asList("Leo", "Basil", "Rosy"), names(pets.sorted()));
+
+		pets.sort(BY_NAME);
+		assertEquals(Arrays.asList("Basil", "Leo", "Rosy"), names(pets.sorted()));
+
+		pets.add(pet(4, "Max"));
+		pets.add(pet(3, "Iggy"));
+		pets.remove(pet(1, null));
+		pets.add(pet(null, "Jewel"));
+		pets.sort(BY_NAME);
+		assertEquals(Arrays.asList("Basil", "Iggy", "Jewel", "Max"), names(pets.sorted()));
+
+		pets.retainAll(Arrays.asList(pets.get(4)));
+		assertEquals(Arrays.asList("Max"), names(pets.sorted()));
+	}
+
+	@Test
+	void sortedViewCopesWithDuplicateSortKeys() {
+		IdentityMap<Pet> pets = new IdentityMap<>();
+		pets.sort(BY_NAME);
+		Pet first = pet(1, "Leo");
+		Pet second = pet(2, "Leo");
+		Pet third = pet(3, "Leo");
+		pets.addAll(Arrays.asList(first, second, third));
+		pets.remove(second);
+		assertEquals(2, pets.sorted().size());
+		assertFalse(pets.sorted().contains(second));
+	}
+
+	private static List<String> names(List<Pet> pets) {
+		return Arrays.asList(pets.stream().map(Pet::getName).toArray(String[]::new));
+	}
+
+	private static Pet pet(Integer id, String name) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName(name);
+		return pet;
+	}
+
+}
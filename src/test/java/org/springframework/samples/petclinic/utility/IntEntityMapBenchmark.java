@@ -0,0 +1,97 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.owner.Pet;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and replacements by pet id in an {@link IntEntityMap} compared with the
+ * {@code ConcurrentHashMap<Integer, ...>} it replaces. Ids start well above the range of
+ * the {@link Integer} cache, so every boxed lookup allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntEntityMapBenchmark {
+
+	private static final int FIRST_ID = 100_000;
+
+	@Param({ "1000", "100000" })
+	public int size;
+
+	private IntEntityMap<Pet> intMap;
+
+	private Map<Integer, Pet> boxedMap;
+
+	private int[] ids;
+
+	private Pet[] pets;
+
+	private int next;
+
+	@Setup
+	public void setup() {
+		this.intMap = new IntEntityMap<>();
+		this.boxedMap = new ConcurrentHashMap<>();
+		this.pets = new Pet[this.size];
+		for (int i = 0; i < this.size; i++) {
+			Pet pet = new Pet();
+			pet.setId(FIRST_ID + i);
+			this.pets[i] = pet;
+			this.intMap.put(FIRST_ID + i, pet);
+			this.boxedMap.put(FIRST_ID + i, pet);
+		}
+		// visit the ids in random order so the benchmark is not a sequential scan
+		Random random = new Random(42);
+		this.ids = new int[this.size];
+		for (int i = 0; i < this.size; i++) {
+			this.ids[i] = FIRST_ID + random.nextInt(this.size);
+		}
+	}
+
+	@Benchmark
+	public Pet intMapGet() {
+		return this.intMap.get(nextId());
+	}
+
+	@Benchmark
+	public Pet boxedMapGet() {
+		return this.boxedMap.get(nextId());
+	}
+
+	@Benchmark
+	public Pet intMapReplace() {
+		int id = nextId();
+		return this.intMap.put(id, this.pets[id - FIRST_ID]);
+	}
+
+	@Benchmark
+	public Pet boxedMapReplace() {
+		int id = nextId();
+		return this.boxedMap.put(id, this.pets[id - FIRST_ID]);
+	}
+
+	private int nextId() {
+		int index = this.next;
+		this.next = index + 1 == this.ids.length ? 0 : index + 1;
+		return this.ids[index];
+	}
+
+}
@@ -0,0 +1,94 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntEntityMapTest {
+
+	@Test
+	void putGetAndRemove() {
+		IntEntityMap<String> map = new IntEntityMap<>();
+		assertNull(map.put(0, "zero"));
+		assertNull(map.put(-7, "minus seven"));
+		assertNull(map.put(1000, "thousand"));
+		assertEquals("thousand", map.put(1000, "grand"));
+		assertEquals(3, map.size());
+		assertEquals("zero", map.get(0));
+		assertEquals("grand", map.get(1000));
+		assertTrue(map.containsKey(-7));
+		assertFalse(map.containsKey(7));
+
+		assertEquals("minus seven", map.remove(-7));
+		assertNull(map.remove(-7));
+		assertNull(map.get(-7));
+		assertEquals(2, map.size());
+		assertThrows(NullPointerException.class, () -> map.put(1, null));
+	}
+
+	@Test
+	void iteratesInInsertionOrderAndSupportsRemove() {
+		IntEntityMap<String> map = new IntEntityMap<>();
+		for (int id : new int[] { 300, 100, 200, 400 }) {
+			map.put(id, "pet-" + id);
+		}
+		map.remove(100);
+		Iterator<String> iterator = map.iterator();
+		assertEquals("pet-300", iterator.next());
+		assertEquals("pet-200", iterator.next());
+		iterator.remove();
+		assertEquals("pet-400", iterator.next());
+		assertFalse(iterator.hasNext());
+		assertEquals(Arrays.asList("pet-300", "pet-400"), values(map));
+
+		Iterator<String> stale = map.iterator();
+		map.put(500, "pet-500");
+		assertThrows(ConcurrentModificationException.class, stale::next);
+	}
+
+	@Test
+	void behavesLikeHashMapUnderRandomOperations() {
+		Random random = new Random(42);
+		IntEntityMap<Integer> map = new IntEntityMap<>();
+		Map<Integer, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 200_000; i++) {
+			int key = random.nextInt(2_000) * 16;
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			else {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (int key = 0; key < 2_000 * 16; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+		int iterated = 0;
+		for (Integer value : map) {
+			assertNotNull(value);
+			iterated++;
+		}
+		assertEquals(expected.size(), iterated);
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.iterator().hasNext());
+	}
+
+	private static List<String> values(IntEntityMap<String> map) {
+		List<String> values = new ArrayList<>();
+		map.forEach(values::add);
+		return values;
+	}
+
+}
@@ -0,0 +1,102 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapStoreTest {
+
+	@Test
+	void storedValueIsReadBack() {
+		OffHeapStore store = new OffHeapStore(64, 16);
+		assertTrue(store.put(1, bytes(10, 1)));
+		assertTrue(store.put(2, bytes(4, 2)));
+		assertArrayEquals(bytes(10, 1), store.get(1));
+		assertArrayEquals(bytes(4, 2), store.get(2));
+		assertNull(store.get(3));
+		assertEquals(14, store.getUsedBytes());
+	}
+
+	@Test
+	void valueIsReadInPlace() {
+		OffHeapStore store = new OffHeapStore(64, 16);
+		store.put(1, bytes(4, 1));
+		store.put(2, bytes(6, 2));
+		assertEquals(Integer.valueOf(6), store.read(2, ByteBuffer::remaining));
+		assertEquals(Byte.valueOf((byte) 2), store.read(2, ByteBuffer::get));
+		assertTrue(store.read(2, ByteBuffer::isReadOnly));
+		assertNull(store.read(3, ByteBuffer::remaining));
+	}
+
+	@Test
+	void replacedValueIsNotCountedTwice() {
+		OffHeapStore store = new OffHeapStore(64, 16);
+		store.put(1, bytes(10, 1));
+		store.put(1, bytes(6, 2));
+		assertArrayEquals(bytes(6, 2), store.get(1));
+		assertEquals(1, store.size());
+		assertEquals(6, store.getUsedBytes());
+	}
+
+	@Test
+	void oldestSlabIsReusedWhenFull() {
+		OffHeapStore store = new OffHeapStore(64, 16);
+		for (int key = 1; key <= 4; key++) {
+			store.put(key, bytes(10, key));
+		}
+		assertEquals(64, store.getAllocatedBytes());
+		assertEquals(0, store.getEvictionCount());
+
+		store.put(5, bytes(10, 5));
+		assertNull(store.get(1));
+		assertArrayEquals(bytes(10, 2), store.get(2));
+		assertArrayEquals(bytes(10, 5), store.get(5));
+		assertEquals(1, store.getEvictionCount());
+		assertEquals(40, store.getUsedBytes());
+		assertEquals(64, store.getAllocatedBytes());
+	}
+
+	@Test
+	void valueMovedOrRemovedBeforeItsSlabIsReusedIsNotEvicted() {
+		OffHeapStore store = new OffHeapStore(32, 16);
+		store.put(1, bytes(8, 1));
+		store.put(2, bytes(8, 2));
+		store.remove(2);
+		store.put(1, bytes(8, 3));
+		store.put(3, bytes(8, 4));
+		store.put(4, bytes(8, 5));
+		assertEquals(0, store.getEvictionCount());
+		assertArrayEquals(bytes(8, 3), store.get(1));
+		assertNull(store.get(2));
+		assertEquals(24, store.getUsedBytes());
+	}
+
+	@Test
+	void slabsAreAllocatedWhenFirstNeeded() {
+		OffHeapStore store = new OffHeapStore(1024, 256);
+		assertEquals(1024, store.getCapacity());
+		assertEquals(0, store.getAllocatedBytes());
+		store.put(1, bytes(10, 1));
+		assertEquals(256, store.getAllocatedBytes());
+	}
+
+	@Test
+	void valueLargerThanSlabIsNotStored() {
+		OffHeapStore store = new OffHeapStore(64, 16);
+		store.put(1, bytes(10, 1));
+		assertFalse(store.put(1, bytes(17, 2)));
+		assertNull(store.get(1));
+		assertEquals(0, store.getUsedBytes());
+	}
+
+	private static byte[] bytes(int length, int value) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (value + i);
+		}
+		return bytes;
+	}
+
+}
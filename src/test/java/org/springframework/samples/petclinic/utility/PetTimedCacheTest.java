@@ -1,7 +1,303 @@
 package org.springframework.samples.petclinic.utility;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.visit.Visit;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
 
-// todo
 class PetTimedCacheTest {
+
+	private PetRepository repository;
+
+	private AtomicLong now;
+
+	@BeforeEach
+	void setup() {
+		repository = mock(PetRepository.class);
+		when(repository.findById(anyInt())).thenAnswer(invocation -> pet(invocation.getArgument(0)));
+		now = new AtomicLong();
+	}
+
+	@Test
+	void secondGetIsServedFromCache() {
+		PetTimedCache cache = new PetTimedCache(1000, 10, repository, now::get);
+		Pet first = cache.get(1);
+		Pet second = cache.get(1);
+		assertSame(first, second);
+		verify(repository, times(1)).findById(1);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	void expiredEntryIsReloadedOnRead() {
+		PetTimedCache cache = new PetTimedCache(1000, 10, repository, now::get);
+		cache.get(1);
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001));
+		cache.get(1);
+		verify(repository, times(2)).findById(1);
+		assertEquals(2, cache.getMissCount());
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvictedWhenFull() {
+		PetTimedCache cache = new PetTimedCache(1000, 2, repository, now::get);
+		cache.get(1);
+		cache.get(2);
+		cache.get(1);
+		cache.get(3);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+
+		cache.get(1);
+		cache.get(2);
+		verify(repository, times(1)).findById(1);
+		verify(repository, times(2)).findById(2);
+	}
+
+	@Test
+	void saveInvalidatesCachedPet() {
+		PetTimedCache cache = new PetTimedCache(1000, 10, repository, now::get);
+		Pet pet = cache.get(1);
+		cache.save(pet);
+		cache.get(1);
+		verify(repository).save(pet);
+		verify(repository, times(2)).findById(1);
+	}
+
+	@Test
+	void petLoadedBeforeAConcurrentSaveIsNotCached() {
+		PetTimedCache[] cache = new PetTimedCache[1];
+		when(repository.findById(1)).thenAnswer(invocation -> {
+			// another thread saves the pet after this one has read it
+			Pet stale = pet(1);
+			cache[0].invalidate(1);
+			return stale;
+		});
+		cache[0] = new PetTimedCache(1000, 10, repository, now::get);
+		cache[0].get(1);
+		assertEquals(0, cache[0].size());
+		assertEquals(0, cache[0].getPutCount());
+	}
+
+	@Test
+	void missingPetIsNotCached() {
+		PetTimedCache cache = new PetTimedCache(1000, 10, repository, now::get);
+		when(repository.findById(42)).thenReturn(null);
+		assertNull(cache.get(42));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void concurrentMissesOnSameKeyLoadOnce() throws Exception {
+		int threads = 16;
+		CountDownLatch release = new CountDownLatch(1);
+		when(repository.findById(7)).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return pet(7);
+		});
+		PetTimedCache cache = new PetTimedCache(1000, 10, repository, now::get);
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Pet>> results = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				results.add(executor.submit(() -> {
+					start.await();
+					return cache.get(7);
+				}));
+			}
+			start.countDown();
+			// give every caller the chance to miss before the single loader returns
+			Thread.sleep(200);
+			release.countDown();
+
+			Pet loaded = results.get(0).get(5, TimeUnit.SECONDS);
+			for (Future<Pet> result : results) {
+				assertSame(loaded, result.get(5, TimeUnit.SECONDS));
+			}
+			verify(repository, times(1)).findById(7);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void failedLoadIsPropagatedAndNotCached() {
+		PetTimedCache cache = new PetTimedCache(1000, 10, repository, now::get);
+		when(repository.findById(5)).thenThrow(new IllegalStateException("database down")).thenReturn(pet(5));
+		assertThrows(IllegalStateException.class, () -> cache.get(5));
+		assertNotNull(cache.get(5));
+		verify(repository, times(2)).findById(5);
+	}
+
+	@Test
+	void petEvictedFromHeapIsPromotedFromOffHeap() {
+		PetTimedCache cache = new PetTimedCache(1000, 1, repository, new OffHeapStore(4096, 4096), now::get);
+		Pet first = cache.get(1);
+		cache.get(2);
+		assertEquals(1, cache.getOffHeapSize());
+
+		Pet promoted = cache.get(1);
+		assertNotSame(first, promoted);
+		assertEquals("pet-1", promoted.getName());
+		assertEquals(first.getVisits().get(0).getDescription(), promoted.getVisits().get(0).getDescription());
+		verify(repository, times(1)).findById(1);
+		assertEquals(1, cache.getOffHeapHitCount());
+		assertEquals(1, cache.getHitCount());
+		assertTrue(cache.getOffHeapUsedBytes() > 0);
+
+		// both pets now have a copy off-heap, so moving them down again serializes nothing
+		cache.get(2);
+		assertEquals(2, cache.getOffHeapSize());
+		cache.get(1);
+		verify(repository, times(1)).findById(1);
+		verify(repository, times(1)).findById(2);
+	}
+
+	@Test
+	void promotedPetKeepsItsExpiry() {
+		PetTimedCache cache = new PetTimedCache(1000, 1, repository, new OffHeapStore(4096, 4096), now::get);
+		cache.get(1);
+		cache.get(2);
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+		cache.get(1);
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+		cache.get(1);
+		verify(repository, times(2)).findById(1);
+	}
+
+	@Test
+	void invalidateRemovesOffHeapCopy() {
+		PetTimedCache cache = new PetTimedCache(1000, 1, repository, new OffHeapStore(4096, 4096), now::get);
+		cache.get(1);
+		cache.get(2);
+		cache.invalidate(1);
+		assertEquals(0, cache.getOffHeapSize());
+		cache.get(1);
+		verify(repository, times(2)).findById(1);
+	}
+
+	@Test
+	void petInvalidatedWhilePromotedIsReloaded() {
+		AtomicReference<Runnable> onTick = new AtomicReference<>();
+		PetTimedCache cache = new PetTimedCache(1000, 1, repository, new OffHeapStore(4096, 4096), () -> {
+			Runnable action = onTick.getAndSet(null);
+			if (action != null) {
+				action.run();
+			}
+			return now.get();
+		});
+		cache.get(1);
+		cache.get(2);
+		// the pet is saved while its off-heap copy is being decoded
+		onTick.set(() -> cache.invalidate(1));
+		cache.get(1);
+		verify(repository, times(2)).findById(1);
+		assertEquals(0, cache.getOffHeapHitCount());
+		assertEquals(3, cache.getMissCount());
+	}
+
+	@Test
+	void petInvalidatedWhileEvictedIsNotMovedOffHeap() {
+		AtomicInteger ticks = new AtomicInteger(-1);
+		PetTimedCache[] cache = new PetTimedCache[1];
+		cache[0] = new PetTimedCache(1000, 1, repository, new OffHeapStore(4096, 4096), () -> {
+			// the pet is saved while it is being moved off-heap, after pet 2 has been put
+			if (ticks.get() >= 0 && ticks.incrementAndGet() == 2) {
+				cache[0].invalidate(1);
+			}
+			return now.get();
+		});
+		cache[0].get(1);
+		ticks.set(0);
+		cache[0].get(2);
+		assertEquals(0, cache[0].getOffHeapSize());
+		cache[0].get(1);
+		verify(repository, times(2)).findById(1);
+	}
+
+	@Test
+	void largeCacheEvictsWithinEachSegment() {
+		PetTimedCache cache = new PetTimedCache(1000, 1000, repository, now::get);
+		for (int id = 0; id < 2000; id++) {
+			cache.get(id);
+		}
+		assertTrue(cache.size() <= 1000 + 15, () -> "size " + cache.size());
+		assertTrue(cache.size() >= 1000 - 15, () -> "size " + cache.size());
+		// the most recent pets are still held
+		cache.get(1999);
+		verify(repository, times(1)).findById(1999);
+	}
+
+	@Test
+	void lookupsLoadsAndEvictionsAreRecordedAsFlightRecorderEvents() throws Exception {
+		PetTimedCache cache = new PetTimedCache(1000, 1, repository, new OffHeapStore(1024, 1024), now::get);
+		Path file = Files.createTempFile("pet-cache", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("org.springframework.samples.petclinic.PetCache*");
+			recording.start();
+			cache.get(1);
+			cache.get(1);
+			cache.get(2);
+			recording.stop();
+			recording.dump(file);
+
+			List<String> events = new ArrayList<>();
+			for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+				String name = event.getEventType().getName();
+				// the timed loads are recorded as method calls too
+				if (!name.startsWith("org.springframework.samples.petclinic.PetCache")) {
+					continue;
+				}
+				events.add(name.substring(name.lastIndexOf('.') + 1) + " " + event.getInt("petId"));
+				if (event.hasField("movedOffHeap")) {
+					assertTrue(event.getBoolean("movedOffHeap"));
+				}
+			}
+			// pet 2 is loaded before it is put in, which evicts pet 1
+			assertEquals(Arrays.asList("PetCacheMiss 1", "PetCacheLoad 1", "PetCacheHit 1", "PetCacheMiss 2",
+					"PetCacheLoad 2", "PetCacheEviction 1"), events);
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	private static Pet pet(int id) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName("pet-" + id);
+		Visit visit = new Visit();
+		visit.setDate(LocalDate.of(2020, 1, 1));
+		visit.setDescription("check-up");
+		pet.addVisit(visit);
+		return pet;
+	}
+
 }
@@ -0,0 +1,138 @@
+package org.springframework.samples.petclinic.utility;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.visit.Visit;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained reads from a {@link PetTimedCache} holding {@value #PETS} pets, each with its
+ * owner and {@value #VISITS} visits. {@code tier=heap} keeps every pet on the heap, while
+ * {@code tier=offheap} keeps the default {@value PetTimedCache#DEFAULT_MAXIMUM_SIZE} on the
+ * heap and the rest off-heap. Nine reads in ten go to the hottest {@value #HOT_PETS} pets
+ * and the rest are spread over all of them, and every read also allocates
+ * {@value #REQUEST_GARBAGE} bytes of garbage standing in for the rest of the request, so
+ * that both tiers keep the collector busy.
+ * <p>
+ * Run it with {@code -prof gc} to compare the number and total time of the collections;
+ * both runs get the same fixed heap, and the heap the cache retains is printed after
+ * setup. See the readme for how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g", "-XX:MaxDirectMemorySize=1g" })
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+public class PetTimedCacheTierBenchmark {
+
+	private static final int PETS = 200_000;
+
+	private static final int HOT_PETS = 500;
+
+	private static final int VISITS = 5;
+
+	private static final int REQUEST_GARBAGE = 4096;
+
+	@Param({ "heap", "offheap" })
+	public String tier;
+
+	private PetTimedCache cache;
+
+	@Setup
+	public void setup() {
+		((LoggerContext) LoggerFactory.getILoggerFactory()).getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.INFO);
+		PetRepository repository = new GeneratingPetRepository();
+		long expiry = TimeUnit.HOURS.toMillis(1);
+		this.cache = "heap".equals(this.tier) ? new PetTimedCache(expiry, PETS, repository)
+				: new PetTimedCache(expiry, PetTimedCache.DEFAULT_MAXIMUM_SIZE, 512L * 1024 * 1024, repository);
+		for (int id = 1; id <= PETS; id++) {
+			this.cache.get(id);
+		}
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		memory.gc();
+		System.out.printf("%n%d pets on the heap, %d MB of heap in use, %d pets off-heap in %d MB%n", this.cache.size(),
+				memory.getHeapMemoryUsage().getUsed() >> 20, this.cache.getOffHeapSize(),
+				this.cache.getOffHeapUsedBytes() >> 20);
+	}
+
+	@Benchmark
+	public void findPet(Blackhole blackhole) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int id = random.nextInt(10) == 0 ? random.nextInt(PETS) : random.nextInt(HOT_PETS);
+		blackhole.consume(this.cache.get(id + 1));
+		blackhole.consume(new byte[REQUEST_GARBAGE]);
+	}
+
+	private static class GeneratingPetRepository implements PetRepository {
+
+		private final PetType type = new PetType();
+
+		GeneratingPetRepository() {
+			this.type.setId(1);
+			this.type.setName("dog");
+		}
+
+		@Override
+		public List<PetType> findPetTypes() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Pet findById(Integer id) {
+			Owner owner = new Owner();
+			owner.setId(id);
+			owner.setFirstName("Owner");
+			owner.setLastName("Number " + id);
+			owner.setAddress(id + " W. Liberty St.");
+			owner.setCity("Madison");
+			owner.setTelephone("6085551023");
+			Pet pet = new Pet();
+			pet.setId(id);
+			pet.setName("pet-" + id);
+			pet.setBirthDate(LocalDate.of(2015, 1, 1).plusDays(id % 1000));
+			pet.setType(this.type);
+			owner.addPet(pet);
+			for (int i = 0; i < VISITS; i++) {
+				Visit visit = new Visit();
+				visit.setId(id * VISITS + i);
+				visit.setDate(LocalDate.of(2020, 1, 1).plusDays(i * 30));
+				visit.setDescription("visit " + i + " of pet " + id);
+				pet.addVisit(visit);
+			}
+			return pet;
+		}
+
+		@Override
+		public void save(Pet pet) {
+		}
+
+	}
+
+}
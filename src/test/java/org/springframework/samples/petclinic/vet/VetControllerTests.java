@@ -16,6 +16,7 @@
 
 package org.springframework.samples.petclinic.vet;
 
+import static org.hamcrest.Matchers.contains;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -24,6 +25,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
+import java.util.Collections;
+
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -61,11 +64,16 @@ class VetControllerTests {
 		radiology.setName("radiology");
 		helen.addSpecialty(radiology);
 		given(this.vets.findAll()).willReturn(Lists.newArrayList(james, helen));
+		given(this.vets.findAllSummaryRows()).willReturn(Lists.newArrayList(new Object[] { 1, "James", "Carter", null },
+				new Object[] { 2, "Helen", "Leary", "radiology" }));
 	}
 
 	@Test
 	void testShowVetListHtml() throws Exception {
-		mockMvc.perform(get("/vets.html")).andExpect(status().isOk()).andExpect(model().attributeExists("vets"))
+		mockMvc.perform(get("/vets.html")).andExpect(status().isOk())
+				.andExpect(model().attribute("vets",
+						contains(new VetSummary(1, "James", "Carter", Collections.emptyList()),
+								new VetSummary(2, "Helen", "Leary", Collections.singletonList("radiology")))))
 				.andExpect(view().name("vets/vetList"));
 	}
 
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visit;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+/**
+ * Wall-clock time to insert {@value #VISITS} visits into the H2 schema over a local TCP
+ * connection, issuing the statements Hibernate issues for each id strategy:
+ * <ul>
+ * <li>{@code identity}: one insert per visit, reading back the generated key (the
+ * former {@code GenerationType.IDENTITY} mapping, which cannot batch);</li>
+ * <li>{@code pooled}: one {@code Visit_seq} call per {@link BaseEntity#ID_ALLOCATION_SIZE}
+ * visits and inserts sent in JDBC batches of the same size.</li>
+ * </ul>
+ * The server runs in the benchmark JVM, so a round trip costs less than it would against
+ * a remote database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class VisitInsertBenchmark {
+
+	private static final int VISITS = 100_000;
+
+	private static final int PETS = 13;
+
+	@Param({ "identity", "pooled" })
+	public String strategy;
+
+	private Server server;
+
+	private DriverManagerDataSource database;
+
+	private int iteration;
+
+	@Setup(Level.Trial)
+	public void startServer() throws SQLException, IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		this.server = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+	}
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		// a fresh database per iteration so every run inserts into the same table size
+		this.database = new DriverManagerDataSource(
+				"jdbc:h2:" + this.server.getURL() + "/mem:visits-" + this.iteration++ + ";DB_CLOSE_DELAY=-1", "sa", "");
+		new ResourceDatabasePopulator(new ClassPathResource("db/h2/schema.sql"), new ClassPathResource("db/h2/data.sql"))
+				.execute(this.database);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws SQLException {
+		try (Connection connection = this.database.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute("SHUTDOWN");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void stopServer() {
+		this.server.stop();
+	}
+
+	@Benchmark
+	public int insertVisits() throws SQLException {
+		try (Connection connection = this.database.getConnection()) {
+			connection.setAutoCommit(false);
+			int inserted = "pooled".equals(this.strategy) ? insertPooled(connection) : insertIdentity(connection);
+			connection.commit();
+			return inserted;
+		}
+	}
+
+	private int insertIdentity(Connection connection) throws SQLException {
+		int inserted = 0;
+		try (PreparedStatement insert = connection.prepareStatement(
+				"insert into visits (id, pet_id, visit_date, description) values (null, ?, ?, ?)",
+				Statement.RETURN_GENERATED_KEYS)) {
+			for (int i = 0; i < VISITS; i++) {
+				bind(insert, i);
+				inserted += insert.executeUpdate();
+				try (ResultSet keys = insert.getGeneratedKeys()) {
+					keys.next();
+				}
+			}
+		}
+		return inserted;
+	}
+
+	private int insertPooled(Connection connection) throws SQLException {
+		int inserted = 0;
+		try (PreparedStatement nextId = connection.prepareStatement("call next value for Visit_seq");
+				PreparedStatement insert = connection
+						.prepareStatement("insert into visits (pet_id, visit_date, description, id) values (?, ?, ?, ?)")) {
+			int id = 0;
+			int hi = 0;
+			for (int i = 0; i < VISITS; i++) {
+				if (id == hi) {
+					try (ResultSet value = nextId.executeQuery()) {
+						value.next();
+						hi = value.getInt(1);
+					}
+					id = hi - BaseEntity.ID_ALLOCATION_SIZE;
+				}
+				bind(insert, i);
+				insert.setInt(4, ++id);
+				insert.addBatch();
+				if ((i + 1) % BaseEntity.ID_ALLOCATION_SIZE == 0) {
+					inserted += insert.executeBatch().length;
+				}
+			}
+			inserted += insert.executeBatch().length;
+		}
+		return inserted;
+	}
+
+	private static void bind(PreparedStatement insert, int visit) throws SQLException {
+		insert.setInt(1, visit % PETS + 1);
+		insert.setDate(2, Date.valueOf(LocalDate.of(2020, 1, 1).plusDays(visit % 365)));
+		insert.setString(3, "check-up " + visit);
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visit;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link VisitRollups}. The rollups count committed visits, so the tests
+ * run outside of a transaction, and each one adds visits of its own pet type and month.
+ */
+@DataJpaTest
+@Import({ VisitRollups.class, VisitRollupsConfiguration.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VisitRollupsTests {
+
+	@Autowired
+	private VisitRollups rollups;
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void shouldBackfillFromTheTable() {
+		// the sample data has four visits of cats in January 2013
+		assertThat(this.rollups.getVisitsByMonth()).containsEntry(YearMonth.of(2013, 1), 4L);
+		assertThat(this.rollups.getVisits("cat")).isEqualTo(4);
+		assertThat(this.rollups.getVisits(YearMonth.of(2013, 2))).isZero();
+	}
+
+	@Test
+	void shouldCountVisitsOnceTheyCommit() {
+		YearMonth month = YearMonth.of(2031, 1);
+		Visit first = visit(3, month.atDay(5));
+		this.visits.save(first);
+		assertThat(this.rollups.getVisits(month)).isEqualTo(1);
+		assertThat(this.rollups.getVisits("dog")).isEqualTo(1);
+
+		TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+		transaction.executeWithoutResult(status -> {
+			this.visits.save(visit(3, month.atDay(6)));
+			this.visits.save(visit(4, month.atDay(7)));
+			assertThat(this.rollups.getVisits(month)).isEqualTo(1);
+		});
+		assertThat(this.rollups.getVisits(month)).isEqualTo(3);
+		assertThat(this.rollups.getVisits("dog")).isEqualTo(3);
+
+		transaction.executeWithoutResult(status -> {
+			this.visits.save(visit(4, month.atDay(8)));
+			status.setRollbackOnly();
+		});
+		first.setDescription("updated");
+		this.visits.save(first);
+		assertThat(this.rollups.getVisits(month)).isEqualTo(3);
+	}
+
+	@Test
+	void shouldReportDifferencesFromTheTable() {
+		Visit visit = visit(5, LocalDate.of(2032, 2, 1));
+		this.visits.save(visit);
+		assertThat(this.rollups.check().isConsistent()).isTrue();
+
+		// changes made behind the rollups' back are not counted
+		this.jdbcTemplate.update("UPDATE visits SET visit_date = '2032-03-01' WHERE id = ?", visit.getId());
+		VisitRollups.Check check = this.rollups.check();
+		assertThat(check.getDifferences()).containsExactlyInAnyOrder("2032-02: 1 counted, 0 in the table",
+				"2032-03: 0 counted, 1 in the table");
+		assertThat(this.rollups.getLastCheck()).isSameAs(check);
+	}
+
+	private static Visit visit(int petId, LocalDate date) {
+		Visit visit = new Visit();
+		visit.setPetId(petId);
+		visit.setDate(date);
+		visit.setDescription("check-up");
+		return visit;
+	}
+
+}